@@ -0,0 +1,45 @@
+package com.vfcash.tracker;
+
+import android.os.SystemClock;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Cold-starts MainActivity on a device and fails if the main thread's work
+// before the first frame goes over StartupTracer.FIRST_FRAME_BUDGET_MS. The
+// tracer only counts the first activity in the process, so this must stay
+// the only test that launches it.
+@RunWith(AndroidJUnit4.class)
+public class StartupBudgetTest {
+    private static final long FIRST_FRAME_TIMEOUT_MS = 10000;
+
+    @Test
+    public void firstFrameIsWithinBudget() {
+        StartupTracer tracer = StartupTracer.getInstance();
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+            while (tracer.getFirstFrameMillis() < 0 && SystemClock.uptimeMillis() < deadline) {
+                SystemClock.sleep(20);
+            }
+            String breakdown = tracer.format();
+            assertTrue("No frame drawn within " + FIRST_FRAME_TIMEOUT_MS + " ms\n" + breakdown,
+                    tracer.getFirstFrameMillis() >= 0);
+
+            assertTrue("onCreate ran " + tracer.getMainThreadMillis(StartupTracer.Section.ACTIVITY_CREATE) +
+                            " ms on the main thread\n" + breakdown,
+                    tracer.getMainThreadMillis(StartupTracer.Section.ACTIVITY_CREATE) <=
+                            StartupTracer.FIRST_FRAME_BUDGET_MS);
+            assertTrue(breakdown, !tracer.isOverBudget());
+
+            // History parsing belongs to MainScreenLoader's thread, never the UI thread
+            assertEquals(breakdown, 0, tracer.getMainThreadMillis(StartupTracer.Section.TRANSACTION_MANAGER));
+            assertEquals(breakdown, 0, tracer.getMainThreadMillis(StartupTracer.Section.LIMITS_MANAGER));
+        }
+    }
+}
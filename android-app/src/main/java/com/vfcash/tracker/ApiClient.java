@@ -5,15 +5,7 @@ import android.content.SharedPreferences;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import com.google.gson.Gson;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class ApiClient {
@@ -24,93 +16,97 @@ public class ApiClient {
     
     private static ApiClient instance;
     private SharedPreferences prefs;
-    private Gson gson;
-    private String baseUrl;
+    private SyncTransport transport;
 
     private ApiClient(Context context) {
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
-        baseUrl = prefs.getString(KEY_BASE_URL, DEFAULT_BASE_URL);
+        transport = new SyncTransport(prefs.getString(KEY_BASE_URL, DEFAULT_BASE_URL),
+                JsonCodec.gson(), SyncMetrics.getInstance());
     }
 
     public static synchronized ApiClient getInstance(Context context) {
         if (instance == null) {
+            long start = StartupTracer.getInstance().begin();
             instance = new ApiClient(context.getApplicationContext());
+            StartupTracer.getInstance().end(StartupTracer.Section.API_CLIENT, start);
         }
         return instance;
     }
 
     public void setBaseUrl(String url) {
-        this.baseUrl = url;
+        transport.setBaseUrl(url);
         prefs.edit().putString(KEY_BASE_URL, url).apply();
         Log.d(TAG, "Base URL set to: " + url);
     }
 
     public String getBaseUrl() {
-        return baseUrl;
+        return transport.getBaseUrl();
+    }
+
+    public SyncMetrics.Snapshot getSyncMetrics() {
+        return SyncMetrics.getInstance().snapshot();
     }
 
     // Sync single transaction
     public void syncTransaction(Transaction transaction) {
-        new SyncTransactionTask().execute(transaction);
+        syncTransaction(transaction, 0, 0);
+    }
+
+    // Sync a transaction that came in through SmsReceiver, recording the
+    // queue wait, the upload and the whole trip under its ingest trace
+    public void syncTransaction(Transaction transaction, long trace, long receivedAt) {
+        new SyncTransactionTask(trace, receivedAt).execute(transaction);
     }
 
-    // Sync all transactions
+    // Sync every wallet's transactions the dashboard has not acknowledged yet
     public void syncAllTransactions(Context context) {
-        TransactionManager transactionManager = TransactionManager.getInstance(context);
-        List<Transaction> transactions = transactionManager.getAllTransactions();
-        new SyncAllTransactionsTask().execute(transactions.toArray(new Transaction[0]));
+        List<String> wallets = WalletRegistry.getInstance(context).getWallets();
+        new SyncAllTransactionsTask(context.getApplicationContext()).execute(wallets.toArray(new String[0]));
     }
 
     // Sync limits
     public void syncLimits(Context context) {
-        LimitsManager limitsManager = LimitsManager.getInstance(context);
+        LimitsConfig limits = LimitsManager.getInstance(context).getLimits();
         LimitsData limitsData = new LimitsData(
-            limitsManager.getDailyTransferLimit(),
-            limitsManager.getMonthlyTransferLimit(),
-            limitsManager.getDailyReceiveLimit(),
-            limitsManager.getMonthlyReceiveLimit()
+            limits.getDailyTransferLimit(),
+            limits.getMonthlyTransferLimit(),
+            limits.getDailyReceiveLimit(),
+            limits.getMonthlyReceiveLimit()
         );
         new SyncLimitsTask().execute(limitsData);
     }
 
     // AsyncTask for syncing single transaction
     private class SyncTransactionTask extends AsyncTask<Transaction, Void, Boolean> {
+        private final long trace; // 0 when not traced
+        private final long receivedAt;
+        private final long enqueuedAt = IngestTracer.getInstance().begin();
+
+        SyncTransactionTask(long trace, long receivedAt) {
+            this.trace = trace;
+            this.receivedAt = receivedAt;
+        }
+
         @Override
         protected Boolean doInBackground(Transaction... transactions) {
             if (transactions.length == 0) return false;
             
+            IngestTracer tracer = IngestTracer.getInstance();
+            long start = tracer.begin();
+            if (trace != 0) tracer.record(trace, IngestTracer.Stage.SYNC_ENQUEUE, start - enqueuedAt);
             try {
-                Transaction transaction = transactions[0];
-                String jsonData = gson.toJson(transaction);
-                
-                URL url = new URL(baseUrl + "/api/transactions");
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
-                
-                // Send data
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = jsonData.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
+                SyncTransport.Response response = transport.postTransactions(
+                        SyncMetrics.Endpoint.TRANSACTIONS, false, transactions[0]);
+                if (trace != 0) {
+                    tracer.end(trace, IngestTracer.Stage.SYNC_ACK, start);
+                    tracer.end(trace, IngestTracer.Stage.TOTAL, receivedAt);
                 }
                 
-                int responseCode = connection.getResponseCode();
+                int responseCode = response.getCode();
                 Log.d(TAG, "Sync response code: " + responseCode);
                 
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    // Read response
-                    try (BufferedReader br = new BufferedReader(
-                            new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                        StringBuilder response = new StringBuilder();
-                        String responseLine;
-                        while ((responseLine = br.readLine()) != null) {
-                            response.append(responseLine.trim());
-                        }
-                        Log.d(TAG, "Sync response: " + response.toString());
-                    }
+                if (response.isOk()) {
+                    Log.d(TAG, "Sync response: " + response.getBody().trim());
                     return true;
                 } else {
                     Log.e(TAG, "Sync failed with response code: " + responseCode);
@@ -133,35 +129,51 @@ public class ApiClient {
         }
     }
 
-    // AsyncTask for syncing all transactions
-    private class SyncAllTransactionsTask extends AsyncTask<Transaction, Void, Boolean> {
+    // AsyncTask for syncing all transactions. Each wallet keeps its own sync
+    // cursor, which only moves once the dashboard accepts the upload.
+    private class SyncAllTransactionsTask extends AsyncTask<String, Void, Boolean> {
+        private final Context context;
+
+        SyncAllTransactionsTask(Context context) {
+            this.context = context;
+        }
+
         @Override
-        protected Boolean doInBackground(Transaction... transactions) {
-            try {
-                String jsonData = gson.toJson(transactions);
-                
-                URL url = new URL(baseUrl + "/api/transactions/bulk");
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
+        protected Boolean doInBackground(String... wallets) {
+            boolean success = true;
+            for (String wallet : wallets) {
+                TransactionManager transactionManager = TransactionManager.getInstance(context, wallet);
+                List<Transaction> transactions = transactionManager.getUnsyncedTransactions();
+                if (transactions.isEmpty()) continue;
                 
-                // Send data
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = jsonData.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
+                try {
+                    SyncTransport.Response response = transport.postTransactions(
+                            SyncMetrics.Endpoint.BULK, true, transactions.toArray(new Transaction[0]));
+                    Log.d(TAG, "Bulk sync of " + transactions.size() + " transactions for wallet " +
+                            wallet + ", response code: " + response.getCode());
+                    
+                    if (response.isOk()) {
+                        // Rejected rows failed validation and would fail again
+                        // if resent, so they do not hold the cursor back
+                        for (SyncTransport.Rejection rejection : response.getRejected()) {
+                            Log.w(TAG, "Dashboard rejected transaction " + rejection.getId() + " (row " +
+                                    rejection.getIndex() + ") for wallet " + wallet + ": " + rejection.getError());
+                        }
+                        long highest = 0;
+                        for (Transaction transaction : transactions) {
+                            highest = Math.max(highest, transaction.getId());
+                        }
+                        transactionManager.advanceSyncCursor(highest);
+                    } else {
+                        success = false;
+                    }
+                    
+                } catch (IOException e) {
+                    Log.e(TAG, "Error syncing transactions for wallet " + wallet + ": " + e.getMessage(), e);
+                    success = false;
                 }
-                
-                int responseCode = connection.getResponseCode();
-                Log.d(TAG, "Bulk sync response code: " + responseCode);
-                
-                return responseCode == HttpURLConnection.HTTP_OK;
-                
-            } catch (IOException e) {
-                Log.e(TAG, "Error syncing all transactions: " + e.getMessage(), e);
-                return false;
             }
+            return success;
         }
 
         @Override
@@ -181,25 +193,10 @@ public class ApiClient {
             if (limitsData.length == 0) return false;
             
             try {
-                String jsonData = gson.toJson(limitsData[0]);
-                
-                URL url = new URL(baseUrl + "/api/limits");
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
+                SyncTransport.Response response = transport.postLimits(limitsData[0]);
+                Log.d(TAG, "Limits sync response code: " + response.getCode());
                 
-                // Send data
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = jsonData.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                }
-                
-                int responseCode = connection.getResponseCode();
-                Log.d(TAG, "Limits sync response code: " + responseCode);
-                
-                return responseCode == HttpURLConnection.HTTP_OK;
+                return response.isOk();
                 
             } catch (IOException e) {
                 Log.e(TAG, "Error syncing limits: " + e.getMessage(), e);
@@ -259,18 +256,12 @@ public class ApiClient {
         @Override
         protected String doInBackground(Void... voids) {
             try {
-                URL url = new URL(baseUrl + "/api/health");
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
-                
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
+                SyncTransport.Response response = transport.checkHealth();
+                if (response.isOk()) {
                     success = true;
                     return "Connection successful";
                 } else {
-                    return "Server responded with code: " + responseCode;
+                    return "Server responded with code: " + response.getCode();
                 }
                 
             } catch (IOException e) {
@@ -0,0 +1,290 @@
+package com.vfcash.tracker;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Immutable, compressed segment files holding one closed month of
+// transactions each. A segment starts with an uncompressed header carrying
+// the month's totals, its daily rollups and its per-counterparty aggregates,
+// followed by the rows in TransactionWireFormat, gzipped. Reading the header
+// never touches the rows, so archived months cost a few hundred bytes of
+// memory until someone actually scrolls or exports into them.
+//
+// Layout: "VFSG", version, header length, header, body length, body.
+// Version 2 headers add the largest row id after the row count; version 1
+// segments still load, with that id unknown.
+public class ArchiveStore {
+    private static final String TAG = "ArchiveStore";
+
+    private static final int MAGIC = 0x56465347; // "VFSG"
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".seg";
+
+    private final File dir;
+
+    public ArchiveStore(File dir) {
+        this.dir = dir;
+    }
+
+    // Headers of every segment, oldest month first. Unreadable files are skipped.
+    public List<Segment> load() {
+        List<Segment> segments = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) return segments;
+
+        for (File file : files) {
+            try {
+                segments.add(readHeader(file));
+            } catch (IOException e) {
+                Log.e(TAG, "Skipping unreadable segment " + file.getName(), e);
+            }
+        }
+        Collections.sort(segments, (a, b) -> Integer.compare(a.monthKey, b.monthKey));
+        return segments;
+    }
+
+    // Writes (or replaces) the segment for a month; rows must be oldest first
+    public Segment write(int year, int month, List<Transaction> rows) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        // Aggregates come from the same code paths that serve hot data
+        RollupEngine rollup = new RollupEngine();
+        RollupEngine.Columns columns = new RollupEngine.Columns(rows.size());
+        CounterpartyAggregates counterparties = new CounterpartyAggregates();
+        for (int i = 0; i < rows.size(); i++) {
+            columns.set(i, rows.get(i));
+            counterparties.add(rows.get(i));
+        }
+        rollup.rebuild(columns);
+        long now = System.currentTimeMillis();
+        List<RollupEngine.RollupPoint> months = rollup.series(RollupEngine.Granularity.MONTHLY, now);
+        List<RollupEngine.RollupPoint> days = rollup.series(RollupEngine.Granularity.DAILY, now);
+        List<CounterpartyAggregates.Counterparty> parties = counterparties.top(Integer.MAX_VALUE);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeShort(year);
+        header.writeByte(month);
+        header.writeInt(rows.size());
+        long maxId = 0;
+        for (Transaction row : rows) {
+            maxId = Math.max(maxId, row.getId());
+        }
+        header.writeLong(maxId);
+        header.writeBoolean(!months.isEmpty());
+        if (!months.isEmpty()) {
+            writePoint(header, months.get(0));
+        }
+        header.writeInt(days.size());
+        for (RollupEngine.RollupPoint day : days) {
+            writePoint(header, day);
+        }
+        header.writeInt(parties.size());
+        for (CounterpartyAggregates.Counterparty party : parties) {
+            header.writeUTF(party.getPhoneNumber());
+            header.writeBoolean(party.getSenderName() != null);
+            if (party.getSenderName() != null) header.writeUTF(party.getSenderName());
+            header.writeInt(party.getTransferCount());
+            header.writeDouble(party.getTransferTotal());
+            header.writeInt(party.getReceivedCount());
+            header.writeDouble(party.getReceivedTotal());
+            header.writeLong(party.getLastSeen());
+        }
+        header.flush();
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bodyBytes)) {
+            gzip.write(TransactionWireFormat.encode(rows.toArray(new Transaction[0])));
+        }
+
+        File file = new File(dir, String.format("%04d-%02d%s", year, month + 1, SUFFIX));
+        File partial = new File(dir, file.getName() + ".part");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(partial))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            out.writeInt(bodyBytes.size());
+            bodyBytes.writeTo(out);
+        }
+        if (file.exists() && !file.delete() || !partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Could not write segment " + file.getName());
+        }
+
+        Log.d(TAG, "Sealed " + rows.size() + " transactions into " + file.getName() +
+                " (" + file.length() + " bytes)");
+        return readHeader(file);
+    }
+
+    public void deleteAll() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete " + file.getName());
+            }
+        }
+    }
+
+    private static Segment readHeader(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a segment file");
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported segment version " + version);
+            int headerLength = in.readInt();
+
+            int year = in.readShort();
+            int month = in.readUnsignedByte();
+            int rowCount = in.readInt();
+            long maxId = version >= 2 ? in.readLong() : Segment.UNKNOWN_ID;
+            RollupEngine.RollupPoint totals = in.readBoolean() ? readPoint(in) : null;
+
+            int dayCount = in.readInt();
+            List<RollupEngine.RollupPoint> days = new ArrayList<>(dayCount);
+            for (int i = 0; i < dayCount; i++) {
+                days.add(readPoint(in));
+            }
+
+            int monthKey = year * 12 + month;
+            int partyCount = in.readInt();
+            List<CounterpartyAggregates.Counterparty> parties = new ArrayList<>(partyCount);
+            for (int i = 0; i < partyCount; i++) {
+                String phone = in.readUTF();
+                String senderName = in.readBoolean() ? in.readUTF() : null;
+                int transferCount = in.readInt();
+                double transferTotal = in.readDouble();
+                int receivedCount = in.readInt();
+                double receivedTotal = in.readDouble();
+                long lastSeen = in.readLong();
+                parties.add(CounterpartyAggregates.Counterparty.forMonth(phone, senderName,
+                        transferCount, transferTotal, receivedCount, receivedTotal, lastSeen, monthKey));
+            }
+
+            // magic + version + header length + header + body length
+            long bodyOffset = 4 + 1 + 4 + headerLength + 4;
+            return new Segment(file, year, month, rowCount, maxId, totals,
+                    Collections.unmodifiableList(days), Collections.unmodifiableList(parties), bodyOffset);
+        }
+    }
+
+    private static void writePoint(DataOutputStream out, RollupEngine.RollupPoint point) throws IOException {
+        out.writeLong(point.getStart());
+        out.writeLong(point.getEnd());
+        out.writeDouble(point.getTransferred());
+        out.writeDouble(point.getReceived());
+        out.writeDouble(point.getFees());
+        out.writeInt(point.getTransferCount());
+        out.writeInt(point.getReceivedCount());
+        out.writeDouble(point.getOpeningBalance());
+        out.writeDouble(point.getClosingBalance());
+    }
+
+    private static RollupEngine.RollupPoint readPoint(DataInputStream in) throws IOException {
+        return new RollupEngine.RollupPoint(in.readLong(), in.readLong(),
+                in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readInt(), in.readDouble(), in.readDouble());
+    }
+
+    public static final class Segment {
+        // Max id of a version 1 segment, which did not record it
+        static final long UNKNOWN_ID = Long.MAX_VALUE;
+
+        private final File file;
+        private final int year;
+        private final int month;
+        private final int monthKey;
+        private final int rowCount;
+        private final long maxId;
+        private final RollupEngine.RollupPoint totals; // null for an empty segment
+        private final List<RollupEngine.RollupPoint> days;
+        private final List<CounterpartyAggregates.Counterparty> counterparties;
+        private final long bodyOffset;
+
+        Segment(File file, int year, int month, int rowCount, long maxId, RollupEngine.RollupPoint totals,
+                List<RollupEngine.RollupPoint> days,
+                List<CounterpartyAggregates.Counterparty> counterparties, long bodyOffset) {
+            this.file = file;
+            this.year = year;
+            this.month = month;
+            this.monthKey = year * 12 + month;
+            this.rowCount = rowCount;
+            this.maxId = maxId;
+            this.totals = totals;
+            this.days = days;
+            this.counterparties = counterparties;
+            this.bodyOffset = bodyOffset;
+        }
+
+        public int getYear() { return year; }
+        public int getMonth() { return month; }
+        public int getRowCount() { return rowCount; }
+        // Sealing merges late rows into older months, so ids are not ordered
+        // across segments; this bounds the ids inside one
+        public long getMaxId() { return maxId; }
+        public List<RollupEngine.RollupPoint> getDays() { return days; }
+        public List<CounterpartyAggregates.Counterparty> getCounterparties() { return counterparties; }
+
+        public boolean isMonth(int year, int month) {
+            return monthKey == year * 12 + month;
+        }
+
+        public double getTransferred() { return totals != null ? totals.getTransferred() : 0; }
+        public double getReceived() { return totals != null ? totals.getReceived() : 0; }
+
+        // The daily rollup covering a time, or null if nothing happened that day
+        public RollupEngine.RollupPoint getDay(long time) {
+            for (RollupEngine.RollupPoint day : days) {
+                if (time >= day.getStart() && time < day.getEnd()) return day;
+            }
+            return null;
+        }
+
+        // Decompresses the rows, oldest first
+        public Transaction[] readRows() throws IOException {
+            try (InputStream in = new FileInputStream(file)) {
+                long skipped = 0;
+                while (skipped < bodyOffset) {
+                    long n = in.skip(bodyOffset - skipped);
+                    if (n <= 0) throw new IOException("Truncated segment " + file.getName());
+                    skipped += n;
+                }
+                ByteArrayOutputStream rows = new ByteArrayOutputStream(rowCount * 32);
+                try (GZIPInputStream gzip = new GZIPInputStream(new BufferedInputStream(in))) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = gzip.read(buffer)) > 0) {
+                        rows.write(buffer, 0, n);
+                    }
+                }
+                Transaction[] decoded = TransactionWireFormat.decode(rows.toByteArray());
+                if (decoded.length != rowCount) {
+                    throw new IOException("Segment " + file.getName() + " holds " + decoded.length +
+                            " rows, header says " + rowCount);
+                }
+                return decoded;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + " (" + rowCount + " rows)";
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Checks the balance chain: every transaction's balance before should equal
+// the balance after of the one just before it in time. A mismatch means an
+// SMS in between was lost (or arrived but did not parse), so it is kept in a
+// gap index until a transaction that explains it shows up.
+//
+// Links are ordered by date, then id, in a TreeSet, so adding a transaction
+// only compares it with its two neighbours and re-checks the pair it split:
+// O(log n) whether it is the newest or arrived late. Balances are held in
+// piasters so equal amounts compare equal. Not thread-safe; TransactionManager
+// guards it with its own lock.
+public class BalanceReconciler {
+
+    private final TreeSet<Link> links = new TreeSet<>();
+    // Unexplained jumps, keyed by the later link of the pair
+    private final TreeMap<Link, Gap> gaps = new TreeMap<>();
+
+    public void add(Transaction transaction) {
+        if (transaction.getDate() == null) return;
+        Link link = new Link(transaction);
+        if (!links.add(link)) return;
+
+        Link previous = links.lower(link);
+        Link next = links.higher(link);
+        // The new link sits between the two, so their gap (if any) is now two checks
+        if (next != null) {
+            gaps.remove(next);
+            check(link, next);
+        }
+        if (previous != null) {
+            check(previous, link);
+        }
+    }
+
+    public void clear() {
+        links.clear();
+        gaps.clear();
+    }
+
+    public int getGapCount() {
+        return gaps.size();
+    }
+
+    // Oldest first
+    public List<Gap> getGaps() {
+        return Collections.unmodifiableList(new ArrayList<>(gaps.values()));
+    }
+
+    private void check(Link earlier, Link later) {
+        if (earlier.balanceAfter != later.balanceBefore) {
+            gaps.put(later, new Gap(earlier, later));
+        }
+    }
+
+    private static final class Link implements Comparable<Link> {
+        final long time;
+        final long id;
+        final long balanceBefore;
+        final long balanceAfter;
+
+        Link(Transaction transaction) {
+            this.time = transaction.getDate().getTime();
+            this.id = transaction.getId();
+            this.balanceBefore = Math.round(transaction.getBalanceBefore() * 100);
+            this.balanceAfter = Math.round(transaction.getBalanceAfter() * 100);
+        }
+
+        @Override
+        public int compareTo(Link other) {
+            if (time != other.time) return time < other.time ? -1 : 1;
+            return Long.compare(id, other.id);
+        }
+    }
+
+    // A jump between two consecutive transactions that no stored SMS explains
+    public static final class Gap {
+        private final long fromId;
+        private final long toId;
+        private final Date from;
+        private final Date to;
+        private final double expectedBalance;
+        private final double actualBalance;
+
+        Gap(Link earlier, Link later) {
+            this.fromId = earlier.id;
+            this.toId = later.id;
+            this.from = new Date(earlier.time);
+            this.to = new Date(later.time);
+            this.expectedBalance = earlier.balanceAfter / 100.0;
+            this.actualBalance = later.balanceBefore / 100.0;
+        }
+
+        public long getFromId() { return fromId; }
+        public long getToId() { return toId; }
+        public Date getFrom() { return from; }
+        public Date getTo() { return to; }
+
+        // Balance after the earlier transaction
+        public double getExpectedBalance() { return expectedBalance; }
+
+        // Balance before the later one
+        public double getActualBalance() { return actualBalance; }
+
+        // Net amount the missing messages moved: positive means money came in
+        public double getDifference() { return actualBalance - expectedBalance; }
+    }
+}
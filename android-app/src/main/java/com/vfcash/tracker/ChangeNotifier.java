@@ -0,0 +1,90 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+// Fans change events out to registered listeners. Each listener has its own
+// pending batch: events published while a delivery is already queued on the
+// listener's executor are folded into that delivery instead of scheduling
+// another one, so a burst of inserts costs the listener a single callback.
+public class ChangeNotifier {
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    public void addListener(DataChangeListener listener, Executor executor) {
+        registrations.add(new Registration(listener, executor));
+    }
+
+    public void removeListener(DataChangeListener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) {
+                registration.cancel();
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    public void publish(DataChangeEvent event) {
+        publishAll(Collections.singletonList(event));
+    }
+
+    // Events of one batch always reach a listener in the same callback
+    public void publishAll(List<DataChangeEvent> events) {
+        if (events.isEmpty()) return;
+        for (Registration registration : registrations) {
+            registration.enqueue(events);
+        }
+    }
+
+    private static final class Registration implements Runnable {
+        final DataChangeListener listener;
+        final Executor executor;
+        private List<DataChangeEvent> pending = new ArrayList<>();
+        private boolean scheduled;
+        private boolean cancelled;
+
+        Registration(DataChangeListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void enqueue(List<DataChangeEvent> events) {
+            boolean schedule;
+            synchronized (this) {
+                if (cancelled) return;
+                for (DataChangeEvent event : events) {
+                    if (event.getType() == DataChangeEvent.Type.CLEARED) {
+                        // Nothing queued before a clear matters to the listener any more
+                        pending.clear();
+                    }
+                    pending.add(event);
+                }
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) {
+                executor.execute(this);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            pending.clear();
+        }
+
+        @Override
+        public void run() {
+            List<DataChangeEvent> batch;
+            synchronized (this) {
+                scheduled = false;
+                if (cancelled || pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            listener.onDataChanged(batch);
+        }
+    }
+}
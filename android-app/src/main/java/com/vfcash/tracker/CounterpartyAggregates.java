@@ -0,0 +1,195 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Running totals per counterparty phone number, updated as transactions are
+// added. Aggregates are immutable and replaced on every update; a TreeSet
+// keeps them ordered by all-time volume so the top k come out in O(log n + k)
+// without grouping the history. Not thread-safe; TransactionManager guards it
+// with its own lock.
+public class CounterpartyAggregates {
+
+    // Largest all-time volume first; phone number breaks ties so the set keeps every entry
+    private static final Comparator<Counterparty> BY_VOLUME = (a, b) -> {
+        int byVolume = Double.compare(b.getTotalVolume(), a.getTotalVolume());
+        return byVolume != 0 ? byVolume : a.getPhoneNumber().compareTo(b.getPhoneNumber());
+    };
+
+    private final Map<String, Counterparty> byPhone = new HashMap<>();
+    private final TreeSet<Counterparty> byVolume = new TreeSet<>(BY_VOLUME);
+    private final Calendar calendar = Calendar.getInstance();
+
+    public void add(Transaction transaction) {
+        String phone = transaction.getPhoneNumber();
+        if (phone == null || phone.isEmpty()) return;
+
+        Counterparty previous = byPhone.get(phone);
+        if (previous != null) {
+            byVolume.remove(previous);
+        }
+        calendar.setTime(transaction.getDate());
+        Counterparty updated = Counterparty.with(previous, phone, transaction, monthKey(calendar));
+        byPhone.put(phone, updated);
+        byVolume.add(updated);
+    }
+
+    // Folds in an aggregate built elsewhere, e.g. read from an archive segment
+    public void merge(Counterparty counterparty) {
+        Counterparty previous = byPhone.get(counterparty.getPhoneNumber());
+        if (previous != null) {
+            byVolume.remove(previous);
+        }
+        Counterparty merged = previous != null ? Counterparty.combine(previous, counterparty) : counterparty;
+        byPhone.put(merged.getPhoneNumber(), merged);
+        byVolume.add(merged);
+    }
+
+    public void clear() {
+        byPhone.clear();
+        byVolume.clear();
+    }
+
+    public Counterparty get(String phoneNumber) {
+        return byPhone.get(phoneNumber);
+    }
+
+    public int size() {
+        return byPhone.size();
+    }
+
+    public List<Counterparty> top(int limit) {
+        List<Counterparty> top = new ArrayList<>(Math.min(limit, byVolume.size()));
+        Iterator<Counterparty> it = byVolume.iterator();
+        while (it.hasNext() && top.size() < limit) {
+            top.add(it.next());
+        }
+        return top;
+    }
+
+    static int monthKey(Calendar calendar) {
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    public static final class Counterparty {
+        private final String phoneNumber;
+        private final String senderName;
+        private final int transferCount;
+        private final double transferTotal;
+        private final int receivedCount;
+        private final double receivedTotal;
+        private final long lastSeen;
+        // Totals for the latest month seen; stale once the calendar moves on
+        private final int monthKey;
+        private final double monthTransferred;
+        private final double monthReceived;
+
+        private Counterparty(String phoneNumber, String senderName,
+                             int transferCount, double transferTotal,
+                             int receivedCount, double receivedTotal, long lastSeen,
+                             int monthKey, double monthTransferred, double monthReceived) {
+            this.phoneNumber = phoneNumber;
+            this.senderName = senderName;
+            this.transferCount = transferCount;
+            this.transferTotal = transferTotal;
+            this.receivedCount = receivedCount;
+            this.receivedTotal = receivedTotal;
+            this.lastSeen = lastSeen;
+            this.monthKey = monthKey;
+            this.monthTransferred = monthTransferred;
+            this.monthReceived = monthReceived;
+        }
+
+        static Counterparty with(Counterparty previous, String phoneNumber,
+                                 Transaction transaction, int transactionMonth) {
+            boolean transfer = "transfer".equals(transaction.getType());
+            boolean received = "received".equals(transaction.getType());
+            double amount = transaction.getAmount();
+            long time = transaction.getDate().getTime();
+
+            if (previous == null) {
+                return new Counterparty(phoneNumber, transaction.getSenderName(),
+                        transfer ? 1 : 0, transfer ? amount : 0,
+                        received ? 1 : 0, received ? amount : 0, time,
+                        transactionMonth, transfer ? amount : 0, received ? amount : 0);
+            }
+
+            // Late arrivals from an older month only count towards all-time totals
+            int monthKey = previous.monthKey;
+            double monthTransferred = previous.monthTransferred;
+            double monthReceived = previous.monthReceived;
+            if (transactionMonth > monthKey) {
+                monthKey = transactionMonth;
+                monthTransferred = 0;
+                monthReceived = 0;
+            }
+            if (transactionMonth == monthKey) {
+                if (transfer) monthTransferred += amount;
+                if (received) monthReceived += amount;
+            }
+
+            String senderName = transaction.getSenderName();
+            if (senderName == null || senderName.isEmpty() || time < previous.lastSeen) {
+                senderName = previous.senderName;
+            }
+
+            return new Counterparty(phoneNumber, senderName,
+                    previous.transferCount + (transfer ? 1 : 0),
+                    previous.transferTotal + (transfer ? amount : 0),
+                    previous.receivedCount + (received ? 1 : 0),
+                    previous.receivedTotal + (received ? amount : 0),
+                    Math.max(previous.lastSeen, time),
+                    monthKey, monthTransferred, monthReceived);
+        }
+
+        // An aggregate covering a single month, as stored in archive segments
+        static Counterparty forMonth(String phoneNumber, String senderName,
+                                     int transferCount, double transferTotal,
+                                     int receivedCount, double receivedTotal,
+                                     long lastSeen, int monthKey) {
+            return new Counterparty(phoneNumber, senderName, transferCount, transferTotal,
+                    receivedCount, receivedTotal, lastSeen, monthKey, transferTotal, receivedTotal);
+        }
+
+        static Counterparty combine(Counterparty a, Counterparty b) {
+            Counterparty later = b.lastSeen >= a.lastSeen ? b : a;
+            Counterparty earlier = later == b ? a : b;
+            String senderName = later.senderName != null && !later.senderName.isEmpty()
+                    ? later.senderName : earlier.senderName;
+
+            int monthKey = Math.max(a.monthKey, b.monthKey);
+            double monthTransferred = (a.monthKey == monthKey ? a.monthTransferred : 0) +
+                    (b.monthKey == monthKey ? b.monthTransferred : 0);
+            double monthReceived = (a.monthKey == monthKey ? a.monthReceived : 0) +
+                    (b.monthKey == monthKey ? b.monthReceived : 0);
+
+            return new Counterparty(a.phoneNumber, senderName,
+                    a.transferCount + b.transferCount, a.transferTotal + b.transferTotal,
+                    a.receivedCount + b.receivedCount, a.receivedTotal + b.receivedTotal,
+                    later.lastSeen, monthKey, monthTransferred, monthReceived);
+        }
+
+        public String getPhoneNumber() { return phoneNumber; }
+        public String getSenderName() { return senderName; }
+        public int getTransferCount() { return transferCount; }
+        public double getTransferTotal() { return transferTotal; }
+        public int getReceivedCount() { return receivedCount; }
+        public double getReceivedTotal() { return receivedTotal; }
+        public long getLastSeen() { return lastSeen; }
+        public double getTotalVolume() { return transferTotal + receivedTotal; }
+
+        public double getTransferredInMonth(int year, int month) {
+            return monthKey == year * 12 + month ? monthTransferred : 0;
+        }
+
+        public double getReceivedInMonth(int year, int month) {
+            return monthKey == year * 12 + month ? monthReceived : 0;
+        }
+    }
+}
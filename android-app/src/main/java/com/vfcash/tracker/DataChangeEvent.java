@@ -0,0 +1,50 @@
+package com.vfcash.tracker;
+
+// A single change published by TransactionManager or LimitsManager. The
+// version is the publishing manager's version right after the change, so
+// listeners can skip events already reflected in a snapshot they hold.
+public final class DataChangeEvent {
+
+    public enum Type {
+        INSERTED,
+        CLEARED,
+        LIMITS_CHANGED
+    }
+
+    private final Type type;
+    private final long version;
+    private final Transaction transaction; // only set for INSERTED
+    private final LimitsConfig limits; // only set for LIMITS_CHANGED
+
+    private DataChangeEvent(Type type, long version, Transaction transaction, LimitsConfig limits) {
+        this.type = type;
+        this.version = version;
+        this.transaction = transaction;
+        this.limits = limits;
+    }
+
+    public static DataChangeEvent inserted(Transaction transaction, long version) {
+        return new DataChangeEvent(Type.INSERTED, version, transaction, null);
+    }
+
+    public static DataChangeEvent cleared(long version) {
+        return new DataChangeEvent(Type.CLEARED, version, null, null);
+    }
+
+    public static DataChangeEvent limitsChanged(LimitsConfig limits) {
+        return new DataChangeEvent(Type.LIMITS_CHANGED, limits.getVersion(), null, limits);
+    }
+
+    public Type getType() { return type; }
+    public long getVersion() { return version; }
+    public Transaction getTransaction() { return transaction; }
+    public LimitsConfig getLimits() { return limits; }
+
+    @Override
+    public String toString() {
+        return "DataChangeEvent{" +
+                "type=" + type +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,9 @@
+package com.vfcash.tracker;
+
+import java.util.List;
+
+public interface DataChangeListener {
+    // Called on the executor the listener was registered with, with every
+    // event published since the previous call, oldest first
+    void onDataChanged(List<DataChangeEvent> events);
+}
@@ -0,0 +1,199 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Single writer for parsed SMS transactions. A burst of messages (bulk
+// payouts, redelivered SMS) is collected for up to BATCH_WINDOW_MS or
+// MAX_BATCH rows and handed to TransactionManager.addTransactions, so the
+// batch costs one serialization, one disk commit and one listener callback
+// instead of one of each per message.
+//
+// A submission is only acknowledged once its batch is on disk. A commit that
+// fails is retried with backoff, and rows still not on disk after
+// MAX_COMMIT_ATTEMPTS are reported as failed rather than committed. The
+// queue is bounded: when it is full, submit() blocks the caller for up to
+// SUBMIT_TIMEOUT_MS and then writes the row itself, so a stalled writer slows
+// SmsReceiver down rather than losing messages.
+public class IngestQueue {
+    private static final String TAG = "IngestQueue";
+
+    static final int CAPACITY = 256;
+    static final int MAX_BATCH = 32;
+    static final long BATCH_WINDOW_MS = 50;
+    private static final long SUBMIT_TIMEOUT_MS = 2000;
+    static final int MAX_COMMIT_ATTEMPTS = 4;
+    // Doubles after each failed attempt: 100, 200, 400 ms
+    private static final long RETRY_DELAY_MS = 100;
+
+    // Exactly one of the two is called per submitted row: on the writer
+    // thread, or on the submitting thread if it had to write directly
+    public interface Callback {
+        void onCommitted(Transaction transaction);
+
+        // The row is not on disk. It may still be in the hot set, and goes
+        // out with the next successful save if the process lives that long.
+        void onFailed(Transaction transaction);
+    }
+
+    private static IngestQueue instance;
+
+    private final Context context;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(CAPACITY);
+
+    private IngestQueue(Context context) {
+        this.context = context;
+        Thread writer = new Thread(this::runWriter, "IngestQueue");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized IngestQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new IngestQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Blocks while the queue is full (see the class comment); the callback
+    // runs once the transaction is durable
+    public void submit(String wallet, Transaction transaction, long trace, Callback callback) {
+        Entry entry = new Entry(wallet, transaction, trace, callback);
+        try {
+            if (queue.offer(entry, SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            Log.w(TAG, "Queue still full after " + SUBMIT_TIMEOUT_MS + " ms, writing directly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Entry> single = new ArrayList<>(1);
+        single.add(entry);
+        commit(wallet, single);
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                // Give the rest of a burst a short window to join this batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MS);
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, MAX_BATCH - batch.size());
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Daemon thread; only an interrupted process ends up here
+                return;
+            }
+
+            try {
+                commitByWallet(batch);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to finish a batch of " + batch.size() + " transactions", e);
+            }
+            batch.clear();
+        }
+    }
+
+    // Each wallet has its own store, so a mixed batch is one commit per wallet
+    private void commitByWallet(List<Entry> batch) {
+        Map<String, List<Entry>> byWallet = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            List<Entry> entries = byWallet.get(entry.wallet);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                byWallet.put(entry.wallet, entries);
+            }
+            entries.add(entry);
+        }
+        for (Map.Entry<String, List<Entry>> wallet : byWallet.entrySet()) {
+            commit(wallet.getKey(), wallet.getValue());
+        }
+    }
+
+    private void commit(String wallet, List<Entry> entries) {
+        IngestTracer tracer = IngestTracer.getInstance();
+        List<Transaction> transactions = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            transactions.add(entry.transaction);
+        }
+
+        TransactionManager transactionManager = TransactionManager.getInstance(context, wallet);
+        boolean durable = false;
+        try {
+            durable = transactionManager.addTransactions(transactions);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to add " + transactions.size() + " transactions", e);
+        }
+        // A failed commit leaves the rows in memory; writing them again often
+        // works once the storage hiccup has passed
+        for (int attempt = 1; !durable && attempt < MAX_COMMIT_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(RETRY_DELAY_MS << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                durable = transactionManager.commitPending();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to commit " + transactions.size() + " transactions", e);
+            }
+        }
+        long committedAt = tracer.begin();
+
+        if (!durable) {
+            Log.e(TAG, "Gave up committing " + entries.size() + " transactions after " +
+                    MAX_COMMIT_ATTEMPTS + " attempts");
+            for (Entry entry : entries) {
+                entry.callback.onFailed(entry.transaction);
+            }
+            return;
+        }
+        if (entries.size() > 1) {
+            Log.d(TAG, "Committed " + entries.size() + " transactions in one batch");
+        }
+
+        long limitsStart = tracer.begin();
+        LimitsManager.getInstance(context, wallet).updateLimitsAfterTransactions(transactions);
+        long limitsNanos = tracer.begin() - limitsStart;
+        for (Entry entry : entries) {
+            // Persist covers the wait for the batch as well as the write; the
+            // batch's one limits check counts against each of its rows
+            tracer.record(entry.trace, IngestTracer.Stage.PERSIST, committedAt - entry.submittedAt);
+            tracer.record(entry.trace, IngestTracer.Stage.LIMITS, limitsNanos);
+            entry.callback.onCommitted(entry.transaction);
+        }
+    }
+
+    private static final class Entry {
+        final String wallet;
+        final Transaction transaction;
+        final long trace;
+        final Callback callback;
+        final long submittedAt = System.nanoTime();
+
+        Entry(String wallet, Transaction transaction, long trace, Callback callback) {
+            this.wallet = wallet;
+            this.transaction = transaction;
+            this.trace = trace;
+            this.callback = callback;
+        }
+    }
+}
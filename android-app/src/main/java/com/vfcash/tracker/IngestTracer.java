@@ -0,0 +1,208 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Spans for each stage an SMS goes through, from the SMS_RECEIVED broadcast
+// to the dashboard acknowledging the upload. Every SMS gets a trace id and
+// each stage records one span under it, timed with System.nanoTime.
+//
+// Spans go into a preallocated ring that keeps the last CAPACITY of them, so
+// recording never allocates or locks. Each slot carries a sequence number
+// that is cleared while the slot is being written; readers skip slots whose
+// sequence changed under them, so a report never mixes two spans (short of
+// a writer being lapped by a whole ring mid-write, which SMS rates never get
+// near).
+public final class IngestTracer {
+
+    public enum Stage {
+        RECEIVE("receive"),             // onReceive until the PDU is decoded
+        PARSE("parse"),
+        PERSIST("persist"),
+        LIMITS("limits check"),
+        NOTIFY("notify"),
+        SYNC_ENQUEUE("sync enqueue"),   // sync requested until the upload starts
+        SYNC_ACK("sync ack"),           // upload until the dashboard answers
+        TOTAL("end to end");            // receive until sync ack
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    // A power of two so the slot is a mask of the sequence
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final int RECENT_TRACES = 5;
+
+    private static final IngestTracer instance = new IngestTracer();
+
+    private final AtomicLong nextTrace = new AtomicLong(1);
+    private final AtomicLong nextSpan = new AtomicLong();
+    // Sequence + 1 of the span in each slot, 0 while it is being written
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray traces = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray stages = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray durations = new AtomicLongArray(CAPACITY);
+
+    private IngestTracer() {
+    }
+
+    public static IngestTracer getInstance() {
+        return instance;
+    }
+
+    // Id to tag every span of one SMS with
+    public long newTrace() {
+        return nextTrace.getAndIncrement();
+    }
+
+    // Start time to pass to end()
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    public void end(long trace, Stage stage, long start) {
+        record(trace, stage, System.nanoTime() - start);
+    }
+
+    public void record(long trace, Stage stage, long durationNanos) {
+        long sequence = nextSpan.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        sequences.set(slot, 0);
+        traces.set(slot, trace);
+        stages.set(slot, stage.ordinal());
+        durations.set(slot, durationNanos);
+        sequences.set(slot, sequence + 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, 0);
+        }
+    }
+
+    public Report report() {
+        Stage[] stageValues = Stage.values();
+        long[][] byStage = new long[stageValues.length][CAPACITY];
+        int[] counts = new int[stageValues.length];
+        List<long[]> spans = new ArrayList<>();
+
+        long end = nextSpan.get();
+        for (long sequence = Math.max(0, end - CAPACITY); sequence < end; sequence++) {
+            int slot = (int) (sequence & MASK);
+            if (sequences.get(slot) != sequence + 1) continue;
+            long trace = traces.get(slot);
+            int stage = (int) stages.get(slot);
+            long duration = durations.get(slot);
+            // Overwritten while we read it
+            if (sequences.get(slot) != sequence + 1) continue;
+
+            byStage[stage][counts[stage]++] = duration;
+            spans.add(new long[]{trace, stage, duration});
+        }
+
+        StageStats[] stats = new StageStats[stageValues.length];
+        for (int i = 0; i < stageValues.length; i++) {
+            long[] sorted = Arrays.copyOf(byStage[i], counts[i]);
+            Arrays.sort(sorted);
+            stats[i] = new StageStats(stageValues[i], sorted);
+        }
+        return new Report(stats, recentTraces(spans));
+    }
+
+    // Spans of the newest few traces, grouped by trace and in stage order
+    private static List<List<long[]>> recentTraces(List<long[]> spans) {
+        List<List<long[]>> recent = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        for (int i = spans.size() - 1; i >= 0 && ids.size() < RECENT_TRACES; i--) {
+            Long trace = spans.get(i)[0];
+            if (!ids.contains(trace)) ids.add(trace);
+        }
+        for (Long trace : ids) {
+            List<long[]> traceSpans = new ArrayList<>();
+            for (long[] span : spans) {
+                if (span[0] == trace) traceSpans.add(span);
+            }
+            Collections.sort(traceSpans, (a, b) -> Long.compare(a[1], b[1]));
+            recent.add(traceSpans);
+        }
+        return recent;
+    }
+
+    // Percentiles of one stage over the spans still in the ring
+    public static final class StageStats {
+        private final Stage stage;
+        private final long[] sortedNanos;
+
+        StageStats(Stage stage, long[] sortedNanos) {
+            this.stage = stage;
+            this.sortedNanos = sortedNanos;
+        }
+
+        public Stage getStage() { return stage; }
+        public int getCount() { return sortedNanos.length; }
+
+        // Nearest-rank percentile, in milliseconds
+        public double getPercentileMillis(double percentile) {
+            if (sortedNanos.length == 0) return 0;
+            int rank = (int) Math.ceil(sortedNanos.length * percentile / 100.0);
+            return sortedNanos[Math.max(0, rank - 1)] / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return sortedNanos.length > 0 ? sortedNanos[sortedNanos.length - 1] / 1e6 : 0;
+        }
+    }
+
+    public static final class Report {
+        private final StageStats[] stages;
+        private final List<List<long[]>> recentTraces;
+
+        Report(StageStats[] stages, List<List<long[]>> recentTraces) {
+            this.stages = stages;
+            this.recentTraces = recentTraces;
+        }
+
+        public StageStats get(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        // Human-readable report used by the diagnostics dialog and its export
+        public String format() {
+            StringBuilder out = new StringBuilder("Stage: n, p50 / p95 / p99 / max ms\n");
+            for (StageStats stats : stages) {
+                if (stats.getCount() == 0) continue;
+                out.append(String.format(Locale.US, "%s: %d, %.1f / %.1f / %.1f / %.1f\n",
+                        stats.getStage().getLabel(), stats.getCount(),
+                        stats.getPercentileMillis(50), stats.getPercentileMillis(95),
+                        stats.getPercentileMillis(99), stats.getMaxMillis()));
+            }
+            if (recentTraces.isEmpty()) {
+                out.append("No SMS traced yet\n");
+                return out.toString();
+            }
+
+            out.append("\nRecent SMS\n");
+            Stage[] stageValues = Stage.values();
+            for (List<long[]> trace : recentTraces) {
+                out.append('#').append(trace.get(0)[0]).append(':');
+                for (long[] span : trace) {
+                    out.append(String.format(Locale.US, " %s %.1f",
+                            stageValues[(int) span[1]].getLabel(), span[2] / 1e6));
+                }
+                out.append('\n');
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+// The one Gson instance used for stored histories and dashboard uploads.
+// Transaction, Date and ApiClient.LimitsData get streaming adapters instead of
+// Gson's reflection: fields are written in a fixed order and dates as epoch
+// millis, which unlike Gson's default textual form do not depend on the
+// device locale or JDK version.
+//
+// Readers still accept everything older versions wrote: ids as strings or
+// numbers, dates as millis or in Gson's textual format, unknown fields.
+public final class JsonCodec {
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Transaction.class, new TransactionAdapter().nullSafe())
+            .registerTypeAdapter(Date.class, new DateAdapter().nullSafe())
+            .registerTypeAdapter(ApiClient.LimitsData.class, new LimitsDataAdapter().nullSafe())
+            .create();
+
+    // Stored rows average about 185 chars
+    private static final int CHARS_PER_ROW = 192;
+
+    private JsonCodec() {}
+
+    public static Gson gson() {
+        return gson;
+    }
+
+    // Writes `value`, a list or array of `rows` transactions, into a
+    // StringBuilder sized for it up front. Gson's toJson(Object) goes through
+    // a StringWriter, whose synchronized StringBuffer starts at 16 chars and
+    // keeps growing; for a long history that costs more than the adapters.
+    public static String toJson(Gson gson, Object value, int rows) {
+        StringBuilder out = new StringBuilder(rows * CHARS_PER_ROW + 16);
+        gson.toJson(value, out);
+        return out.toString();
+    }
+
+    static final class TransactionAdapter extends TypeAdapter<Transaction> {
+        private final DateAdapter dates = new DateAdapter();
+
+        // Nulls are left out, as Gson's reflective adapter did
+        @Override
+        public void write(JsonWriter out, Transaction transaction) throws IOException {
+            out.beginObject();
+            // Ids were written as JSON strings and the dashboard still expects that
+            out.name("id").value(String.valueOf(transaction.getId()));
+            if (transaction.getType() != null) {
+                out.name("type").value(transaction.getType());
+            }
+            out.name("amount").value(transaction.getAmount());
+            if (transaction.getPhoneNumber() != null) {
+                out.name("phoneNumber").value(transaction.getPhoneNumber());
+            }
+            if (transaction.getDate() != null) {
+                out.name("date");
+                dates.write(out, transaction.getDate());
+            }
+            out.name("balanceBefore").value(transaction.getBalanceBefore());
+            out.name("balanceAfter").value(transaction.getBalanceAfter());
+            if (transaction.getSenderName() != null) {
+                out.name("senderName").value(transaction.getSenderName());
+            }
+            if (transaction.getTransactionNumber() != null) {
+                out.name("transactionNumber").value(transaction.getTransactionNumber());
+            }
+            out.name("serviceFees").value(transaction.getServiceFees());
+            out.endObject();
+        }
+
+        // Rows being decoded must not draw ids from the generator, so they
+        // start blank; missing or non-numeric ids read as 0 and are replaced
+        // by TransactionManager at load
+        @Override
+        public Transaction read(JsonReader in) throws IOException {
+            Transaction transaction = Transaction.blank();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        transaction.setId(parseId(in.nextString()));
+                        break;
+                    case "type":
+                        transaction.setType(in.nextString());
+                        break;
+                    case "amount":
+                        transaction.setAmount(in.nextDouble());
+                        break;
+                    case "phoneNumber":
+                        transaction.setPhoneNumber(in.nextString());
+                        break;
+                    case "date":
+                        transaction.setDate(dates.read(in));
+                        break;
+                    case "balanceBefore":
+                        transaction.setBalanceBefore(in.nextDouble());
+                        break;
+                    case "balanceAfter":
+                        transaction.setBalanceAfter(in.nextDouble());
+                        break;
+                    case "senderName":
+                        transaction.setSenderName(in.nextString());
+                        break;
+                    case "transactionNumber":
+                        transaction.setTransactionNumber(in.nextString());
+                        break;
+                    case "serviceFees":
+                        transaction.setServiceFees(in.nextDouble());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return transaction;
+        }
+
+        private static long parseId(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    static final class DateAdapter extends TypeAdapter<Date> {
+        // Gson's own date adapter, only built if a history from before the
+        // switch to epoch millis is read
+        private TypeAdapter<Date> legacy;
+
+        @Override
+        public void write(JsonWriter out, Date date) throws IOException {
+            out.value(date.getTime());
+        }
+
+        @Override
+        public Date read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NUMBER) {
+                return new Date(in.nextLong());
+            }
+            return readLegacy(in.nextString());
+        }
+
+        private synchronized Date readLegacy(String value) throws IOException {
+            if (legacy == null) {
+                legacy = new Gson().getAdapter(Date.class);
+            }
+            return legacy.fromJsonTree(new JsonPrimitive(value));
+        }
+    }
+
+    static final class LimitsDataAdapter extends TypeAdapter<ApiClient.LimitsData> {
+        @Override
+        public void write(JsonWriter out, ApiClient.LimitsData limits) throws IOException {
+            out.beginObject();
+            out.name("dailyTransferLimit").value(limits.getDailyTransferLimit());
+            out.name("monthlyTransferLimit").value(limits.getMonthlyTransferLimit());
+            out.name("dailyReceiveLimit").value(limits.getDailyReceiveLimit());
+            out.name("monthlyReceiveLimit").value(limits.getMonthlyReceiveLimit());
+            out.endObject();
+        }
+
+        @Override
+        public ApiClient.LimitsData read(JsonReader in) throws IOException {
+            double dailyTransfer = 0;
+            double monthlyTransfer = 0;
+            double dailyReceive = 0;
+            double monthlyReceive = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "dailyTransferLimit":
+                        dailyTransfer = in.nextDouble();
+                        break;
+                    case "monthlyTransferLimit":
+                        monthlyTransfer = in.nextDouble();
+                        break;
+                    case "dailyReceiveLimit":
+                        dailyReceive = in.nextDouble();
+                        break;
+                    case "monthlyReceiveLimit":
+                        monthlyReceive = in.nextDouble();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ApiClient.LimitsData(dailyTransfer, monthlyTransfer, dailyReceive, monthlyReceive);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vfcash.tracker;
+
+// Immutable set of limit amounts, in EGP. LimitsManager swaps in a new
+// instance on every change, so a reader that grabs one reference always sees
+// the four limits and the version they were saved under together.
+public final class LimitsConfig {
+
+    // What the "daily" and "monthly" limits are measured over
+    public enum Window {
+        CALENDAR,   // today and this calendar month
+        ROLLING     // the last 24 hours and the last 30 days
+    }
+
+    private final double dailyTransferLimit;
+    private final double monthlyTransferLimit;
+    private final double dailyReceiveLimit;
+    private final double monthlyReceiveLimit;
+    private final Window window;
+    private final long version;
+
+    public LimitsConfig(double dailyTransferLimit, double monthlyTransferLimit,
+                        double dailyReceiveLimit, double monthlyReceiveLimit) {
+        this(dailyTransferLimit, monthlyTransferLimit, dailyReceiveLimit, monthlyReceiveLimit, Window.CALENDAR);
+    }
+
+    public LimitsConfig(double dailyTransferLimit, double monthlyTransferLimit,
+                        double dailyReceiveLimit, double monthlyReceiveLimit, Window window) {
+        this(dailyTransferLimit, monthlyTransferLimit, dailyReceiveLimit, monthlyReceiveLimit, window, 0);
+    }
+
+    private LimitsConfig(double dailyTransferLimit, double monthlyTransferLimit,
+                         double dailyReceiveLimit, double monthlyReceiveLimit, Window window, long version) {
+        this.dailyTransferLimit = dailyTransferLimit;
+        this.monthlyTransferLimit = monthlyTransferLimit;
+        this.dailyReceiveLimit = dailyReceiveLimit;
+        this.monthlyReceiveLimit = monthlyReceiveLimit;
+        this.window = window;
+        this.version = version;
+    }
+
+    public LimitsConfig withDailyTransferLimit(double limit) {
+        return new LimitsConfig(limit, monthlyTransferLimit, dailyReceiveLimit, monthlyReceiveLimit, window, version);
+    }
+
+    public LimitsConfig withMonthlyTransferLimit(double limit) {
+        return new LimitsConfig(dailyTransferLimit, limit, dailyReceiveLimit, monthlyReceiveLimit, window, version);
+    }
+
+    public LimitsConfig withDailyReceiveLimit(double limit) {
+        return new LimitsConfig(dailyTransferLimit, monthlyTransferLimit, limit, monthlyReceiveLimit, window, version);
+    }
+
+    public LimitsConfig withMonthlyReceiveLimit(double limit) {
+        return new LimitsConfig(dailyTransferLimit, monthlyTransferLimit, dailyReceiveLimit, limit, window, version);
+    }
+
+    public LimitsConfig withWindow(Window window) {
+        return new LimitsConfig(dailyTransferLimit, monthlyTransferLimit, dailyReceiveLimit, monthlyReceiveLimit, window, version);
+    }
+
+    LimitsConfig withVersion(long version) {
+        return new LimitsConfig(dailyTransferLimit, monthlyTransferLimit, dailyReceiveLimit, monthlyReceiveLimit, window, version);
+    }
+
+    public double getDailyTransferLimit() { return dailyTransferLimit; }
+    public double getMonthlyTransferLimit() { return monthlyTransferLimit; }
+    public double getDailyReceiveLimit() { return dailyReceiveLimit; }
+    public double getMonthlyReceiveLimit() { return monthlyReceiveLimit; }
+    public Window getWindow() { return window; }
+    public boolean isRolling() { return window == Window.ROLLING; }
+
+    // Bumped by LimitsManager on every saved change
+    public long getVersion() { return version; }
+
+    boolean hasSameLimits(LimitsConfig other) {
+        return other != null &&
+                dailyTransferLimit == other.dailyTransferLimit &&
+                monthlyTransferLimit == other.monthlyTransferLimit &&
+                dailyReceiveLimit == other.dailyReceiveLimit &&
+                monthlyReceiveLimit == other.monthlyReceiveLimit &&
+                window == other.window;
+    }
+
+    @Override
+    public String toString() {
+        return "LimitsConfig{" +
+                "dailyTransfer=" + dailyTransferLimit +
+                ", monthlyTransfer=" + monthlyTransferLimit +
+                ", dailyReceive=" + dailyReceiveLimit +
+                ", monthlyReceive=" + monthlyReceiveLimit +
+                ", window=" + window +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -5,7 +5,12 @@ import android.content.SharedPreferences;
 import android.util.Log;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class LimitsManager {
     private static final String TAG = "LimitsManager";
@@ -16,6 +21,7 @@ public class LimitsManager {
     private static final String KEY_MONTHLY_TRANSFER_LIMIT = "monthly_transfer_limit";
     private static final String KEY_DAILY_RECEIVE_LIMIT = "daily_receive_limit";
     private static final String KEY_MONTHLY_RECEIVE_LIMIT = "monthly_receive_limit";
+    private static final String KEY_LIMIT_WINDOW = "limit_window";
     
     // Usage tracking keys
     private static final String KEY_LAST_RESET_DATE = "last_reset_date";
@@ -27,98 +33,204 @@ public class LimitsManager {
     private static final double DEFAULT_DAILY_RECEIVE_LIMIT = 10000.0;
     private static final double DEFAULT_MONTHLY_RECEIVE_LIMIT = 100000.0;
     
-    private static LimitsManager instance;
+    // One set of limits per wallet, each built on first use
+    private static final Map<String, LimitsManager> instances = new HashMap<>();
     private SharedPreferences prefs;
     private TransactionManager transactionManager;
+    // Read once from prefs; every change swaps in a new immutable config
+    private volatile LimitsConfig limits;
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
 
-    private LimitsManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        transactionManager = TransactionManager.getInstance(context);
-        initializeDefaultLimits();
+    private LimitsManager(Context context, String wallet) {
+        prefs = context.getSharedPreferences(PREFS_NAME + WalletRegistry.storageSuffix(wallet), Context.MODE_PRIVATE);
+        transactionManager = TransactionManager.getInstance(context, wallet);
+        loadLimits();
     }
 
-    public static synchronized LimitsManager getInstance(Context context) {
+    // The limits of the wallet currently shown in the UI
+    public static LimitsManager getInstance(Context context) {
+        return getInstance(context, WalletRegistry.getInstance(context).getActiveWallet());
+    }
+
+    public static synchronized LimitsManager getInstance(Context context, String wallet) {
+        LimitsManager instance = instances.get(wallet);
         if (instance == null) {
-            instance = new LimitsManager(context.getApplicationContext());
+            long start = StartupTracer.getInstance().begin();
+            instance = new LimitsManager(context.getApplicationContext(), wallet);
+            instances.put(wallet, instance);
+            StartupTracer.getInstance().end(StartupTracer.Section.LIMITS_MANAGER, start);
         }
         return instance;
     }
 
-    private void initializeDefaultLimits() {
-        if (!prefs.contains(KEY_DAILY_TRANSFER_LIMIT)) {
-            setDailyTransferLimit(DEFAULT_DAILY_TRANSFER_LIMIT);
+    // Limits used to be stored as floats; they are now stored as the raw bits
+    // of the double. Missing or legacy values are filled in and written back
+    // in a single commit.
+    private void loadLimits() {
+        long start = StartupTracer.getInstance().begin();
+        Map<String, ?> stored = prefs.getAll();
+        StartupTracer.getInstance().end(StartupTracer.Section.LIMITS_PREFS, start);
+        boolean dirty = false;
+        double[] values = {
+                DEFAULT_DAILY_TRANSFER_LIMIT, DEFAULT_MONTHLY_TRANSFER_LIMIT,
+                DEFAULT_DAILY_RECEIVE_LIMIT, DEFAULT_MONTHLY_RECEIVE_LIMIT
+        };
+        String[] keys = {
+                KEY_DAILY_TRANSFER_LIMIT, KEY_MONTHLY_TRANSFER_LIMIT,
+                KEY_DAILY_RECEIVE_LIMIT, KEY_MONTHLY_RECEIVE_LIMIT
+        };
+        for (int i = 0; i < keys.length; i++) {
+            Object value = stored.get(keys[i]);
+            if (value instanceof Long) {
+                values[i] = Double.longBitsToDouble((Long) value);
+            } else {
+                if (value instanceof Float) values[i] = (Float) value;
+                dirty = true;
+            }
         }
-        if (!prefs.contains(KEY_MONTHLY_TRANSFER_LIMIT)) {
-            setMonthlyTransferLimit(DEFAULT_MONTHLY_TRANSFER_LIMIT);
+
+        LimitsConfig.Window window = LimitsConfig.Window.CALENDAR;
+        Object storedWindow = stored.get(KEY_LIMIT_WINDOW);
+        if (storedWindow instanceof String) {
+            try {
+                window = LimitsConfig.Window.valueOf((String) storedWindow);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unknown limit window " + storedWindow);
+            }
         }
-        if (!prefs.contains(KEY_DAILY_RECEIVE_LIMIT)) {
-            setDailyReceiveLimit(DEFAULT_DAILY_RECEIVE_LIMIT);
+
+        limits = new LimitsConfig(values[0], values[1], values[2], values[3], window);
+        if (dirty) {
+            persist(limits);
+            Log.d(TAG, "Initialized limits: " + limits);
         }
-        if (!prefs.contains(KEY_MONTHLY_RECEIVE_LIMIT)) {
-            setMonthlyReceiveLimit(DEFAULT_MONTHLY_RECEIVE_LIMIT);
+    }
+
+    private void persist(LimitsConfig config) {
+        prefs.edit()
+                .putLong(KEY_DAILY_TRANSFER_LIMIT, Double.doubleToRawLongBits(config.getDailyTransferLimit()))
+                .putLong(KEY_MONTHLY_TRANSFER_LIMIT, Double.doubleToRawLongBits(config.getMonthlyTransferLimit()))
+                .putLong(KEY_DAILY_RECEIVE_LIMIT, Double.doubleToRawLongBits(config.getDailyReceiveLimit()))
+                .putLong(KEY_MONTHLY_RECEIVE_LIMIT, Double.doubleToRawLongBits(config.getMonthlyReceiveLimit()))
+                .putString(KEY_LIMIT_WINDOW, config.getWindow().name())
+                .apply();
+    }
+
+    // The current limits; a plain field read, safe from any thread
+    public LimitsConfig getLimits() {
+        return limits;
+    }
+
+    // Saves all four limits in one commit and notifies listeners once.
+    // Returns the config as stored, carrying its new version.
+    public synchronized LimitsConfig updateLimits(LimitsConfig config) {
+        LimitsConfig current = limits;
+        if (current.hasSameLimits(config)) {
+            return current;
         }
+        LimitsConfig updated = config.withVersion(current.getVersion() + 1);
+        limits = updated;
+        persist(updated);
+        changeNotifier.publish(DataChangeEvent.limitsChanged(updated));
+        Log.d(TAG, "Limits set to: " + updated);
+        return updated;
     }
 
     // Getters for limits
     public double getDailyTransferLimit() {
-        return prefs.getFloat(KEY_DAILY_TRANSFER_LIMIT, (float) DEFAULT_DAILY_TRANSFER_LIMIT);
+        return limits.getDailyTransferLimit();
     }
 
     public double getMonthlyTransferLimit() {
-        return prefs.getFloat(KEY_MONTHLY_TRANSFER_LIMIT, (float) DEFAULT_MONTHLY_TRANSFER_LIMIT);
+        return limits.getMonthlyTransferLimit();
     }
 
     public double getDailyReceiveLimit() {
-        return prefs.getFloat(KEY_DAILY_RECEIVE_LIMIT, (float) DEFAULT_DAILY_RECEIVE_LIMIT);
+        return limits.getDailyReceiveLimit();
     }
 
     public double getMonthlyReceiveLimit() {
-        return prefs.getFloat(KEY_MONTHLY_RECEIVE_LIMIT, (float) DEFAULT_MONTHLY_RECEIVE_LIMIT);
+        return limits.getMonthlyReceiveLimit();
+    }
+
+    // Setters for limits; prefer updateLimits when changing several at once
+    public synchronized void setDailyTransferLimit(double limit) {
+        updateLimits(limits.withDailyTransferLimit(limit));
+    }
+
+    public synchronized void setMonthlyTransferLimit(double limit) {
+        updateLimits(limits.withMonthlyTransferLimit(limit));
+    }
+
+    public synchronized void setDailyReceiveLimit(double limit) {
+        updateLimits(limits.withDailyReceiveLimit(limit));
+    }
+
+    public synchronized void setMonthlyReceiveLimit(double limit) {
+        updateLimits(limits.withMonthlyReceiveLimit(limit));
+    }
+
+    public synchronized void setWindow(LimitsConfig.Window window) {
+        updateLimits(limits.withWindow(window));
+    }
+
+    public long getVersion() {
+        return limits.getVersion();
+    }
+
+    // Usage measured over the configured window: today / this month, or the
+    // last 24 hours / 30 days. The rolling figures are constant-time reads.
+    public double getDailyTransferUsed() {
+        return limits.isRolling() ? transactionManager.getTotalTransferredLast24Hours()
+                : transactionManager.getTotalTransferredToday();
     }
 
-    // Setters for limits
-    public void setDailyTransferLimit(double limit) {
-        prefs.edit().putFloat(KEY_DAILY_TRANSFER_LIMIT, (float) limit).apply();
-        Log.d(TAG, "Daily transfer limit set to: " + limit);
+    public double getMonthlyTransferUsed() {
+        return limits.isRolling() ? transactionManager.getTotalTransferredLast30Days()
+                : transactionManager.getTotalTransferredThisMonth();
     }
 
-    public void setMonthlyTransferLimit(double limit) {
-        prefs.edit().putFloat(KEY_MONTHLY_TRANSFER_LIMIT, (float) limit).apply();
-        Log.d(TAG, "Monthly transfer limit set to: " + limit);
+    public double getDailyReceiveUsed() {
+        return limits.isRolling() ? transactionManager.getTotalReceivedLast24Hours()
+                : transactionManager.getTotalReceivedToday();
     }
 
-    public void setDailyReceiveLimit(double limit) {
-        prefs.edit().putFloat(KEY_DAILY_RECEIVE_LIMIT, (float) limit).apply();
-        Log.d(TAG, "Daily receive limit set to: " + limit);
+    public double getMonthlyReceiveUsed() {
+        return limits.isRolling() ? transactionManager.getTotalReceivedLast30Days()
+                : transactionManager.getTotalReceivedThisMonth();
     }
 
-    public void setMonthlyReceiveLimit(double limit) {
-        prefs.edit().putFloat(KEY_MONTHLY_RECEIVE_LIMIT, (float) limit).apply();
-        Log.d(TAG, "Monthly receive limit set to: " + limit);
+    // Listeners receive LIMITS_CHANGED events, batched, on the given executor
+    public void addChangeListener(DataChangeListener listener, Executor executor) {
+        changeNotifier.addListener(listener, executor);
+    }
+
+    public void removeChangeListener(DataChangeListener listener) {
+        changeNotifier.removeListener(listener);
     }
 
     // Calculate remaining limits
     public double getRemainingDailyTransferLimit() {
         double limit = getDailyTransferLimit();
-        double used = transactionManager.getTotalTransferredToday();
+        double used = getDailyTransferUsed();
         return Math.max(0, limit - used);
     }
 
     public double getRemainingMonthlyTransferLimit() {
         double limit = getMonthlyTransferLimit();
-        double used = transactionManager.getTotalTransferredThisMonth();
+        double used = getMonthlyTransferUsed();
         return Math.max(0, limit - used);
     }
 
     public double getRemainingDailyReceiveLimit() {
         double limit = getDailyReceiveLimit();
-        double used = transactionManager.getTotalReceivedToday();
+        double used = getDailyReceiveUsed();
         return Math.max(0, limit - used);
     }
 
     public double getRemainingMonthlyReceiveLimit() {
         double limit = getMonthlyReceiveLimit();
-        double used = transactionManager.getTotalReceivedThisMonth();
+        double used = getMonthlyReceiveUsed();
         return Math.max(0, limit - used);
     }
 
@@ -140,25 +252,38 @@ public class LimitsManager {
     // Update limits after transaction (for tracking purposes)
     public void updateLimitsAfterTransaction(Transaction transaction) {
         if (transaction == null) return;
+        updateLimitsAfterTransactions(Collections.singletonList(transaction));
+    }
+
+    // Logs what a committed batch leaves of the limits and warns when it goes
+    // over, reading the remaining limits once per type instead of once per row
+    public void updateLimitsAfterTransactions(List<Transaction> transactions) {
+        double transferred = 0;
+        double received = 0;
+        for (Transaction transaction : transactions) {
+            if ("transfer".equals(transaction.getType())) {
+                transferred += transaction.getAmount();
+            } else if ("received".equals(transaction.getType())) {
+                received += transaction.getAmount();
+            }
+        }
         
-        String type = transaction.getType();
-        double amount = transaction.getAmount();
-        
-        if ("transfer".equals(type)) {
+        if (transferred > 0) {
             double remaining = getRemainingDailyTransferLimit();
-            Log.d(TAG, String.format("Transfer of %.2f EGP. Daily remaining: %.2f EGP", 
-                    amount, remaining - amount));
+            Log.d(TAG, String.format("Transferred %.2f EGP. Daily remaining: %.2f EGP",
+                    transferred, remaining - transferred));
             
-            if (!isTransferWithinLimits(amount)) {
-                Log.w(TAG, "Transfer exceeds daily or monthly limits!");
+            if (!isTransferWithinLimits(transferred)) {
+                Log.w(TAG, "Transfers exceed daily or monthly limits!");
             }
-        } else if ("received".equals(type)) {
+        }
+        if (received > 0) {
             double remaining = getRemainingDailyReceiveLimit();
-            Log.d(TAG, String.format("Received %.2f EGP. Daily remaining: %.2f EGP", 
-                    amount, remaining - amount));
+            Log.d(TAG, String.format("Received %.2f EGP. Daily remaining: %.2f EGP",
+                    received, remaining - received));
             
-            if (!isReceiveWithinLimits(amount)) {
-                Log.w(TAG, "Received amount exceeds daily or monthly limits!");
+            if (!isReceiveWithinLimits(received)) {
+                Log.w(TAG, "Received amounts exceed daily or monthly limits!");
             }
         }
     }
@@ -166,25 +291,25 @@ public class LimitsManager {
     // Get usage percentages
     public double getDailyTransferUsagePercentage() {
         double limit = getDailyTransferLimit();
-        double used = transactionManager.getTotalTransferredToday();
+        double used = getDailyTransferUsed();
         return limit > 0 ? (used / limit) * 100 : 0;
     }
 
     public double getMonthlyTransferUsagePercentage() {
         double limit = getMonthlyTransferLimit();
-        double used = transactionManager.getTotalTransferredThisMonth();
+        double used = getMonthlyTransferUsed();
         return limit > 0 ? (used / limit) * 100 : 0;
     }
 
     public double getDailyReceiveUsagePercentage() {
         double limit = getDailyReceiveLimit();
-        double used = transactionManager.getTotalReceivedToday();
+        double used = getDailyReceiveUsed();
         return limit > 0 ? (used / limit) * 100 : 0;
     }
 
     public double getMonthlyReceiveUsagePercentage() {
         double limit = getMonthlyReceiveLimit();
-        double used = transactionManager.getTotalReceivedThisMonth();
+        double used = getMonthlyReceiveUsed();
         return limit > 0 ? (used / limit) * 100 : 0;
     }
 
@@ -201,25 +326,31 @@ public class LimitsManager {
 
     // Get limit status summary
     public String getLimitsSummary() {
+        String daily = limits.isRolling() ? "24h" : "Daily";
+        String monthly = limits.isRolling() ? "30-day" : "Monthly";
         return String.format(
-            "Daily Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Monthly Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Daily Receive: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Monthly Receive: %.0f/%.0f EGP (%.1f%%)",
+            "%s Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Receive: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Receive: %.0f/%.0f EGP (%.1f%%)",
             
-            transactionManager.getTotalTransferredToday(),
+            daily,
+            getDailyTransferUsed(),
             getDailyTransferLimit(),
             getDailyTransferUsagePercentage(),
             
-            transactionManager.getTotalTransferredThisMonth(),
+            monthly,
+            getMonthlyTransferUsed(),
             getMonthlyTransferLimit(),
             getMonthlyTransferUsagePercentage(),
             
-            transactionManager.getTotalReceivedToday(),
+            daily,
+            getDailyReceiveUsed(),
             getDailyReceiveLimit(),
             getDailyReceiveUsagePercentage(),
             
-            transactionManager.getTotalReceivedThisMonth(),
+            monthly,
+            getMonthlyReceiveUsed(),
             getMonthlyReceiveLimit(),
             getMonthlyReceiveUsagePercentage()
         );
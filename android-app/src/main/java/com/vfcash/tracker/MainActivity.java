@@ -1,12 +1,19 @@
 package com.vfcash.tracker;
 
 import android.Manifest;
+import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -14,34 +21,55 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DefaultItemAnimator;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
 
 public class MainActivity extends AppCompatActivity {
     
+    private static final String TAG = "MainActivity";
     private static final int SMS_PERMISSION_REQUEST_CODE = 100;
+    private static final int TOP_CONTACTS_LIMIT = 20;
     
-    private ListView transactionsList;
+    private RecyclerView transactionsList;
+    private LinearLayoutManager transactionsLayout;
     private TextView limitsStatus;
+    private TextView balanceGapWarning;
+    private EditText searchBox;
     private Button syncButton;
     private Button editLimitsButton;
     private Button settingsButton;
     private Button testConnectionButton;
+    private Button topContactsButton;
+    private Button trendsButton;
+    private Button exportButton;
     
-    private TransactionManager transactionManager;
-    private LimitsManager limitsManager;
-    private ApiClient apiClient;
     private TransactionAdapter transactionAdapter;
+    private MainScreenLoader screenLoader;
+    private MainScreenState screenState;
+    private String searchQuery = "";
+    private volatile String shownWallet = WalletRegistry.DEFAULT_WALLET;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer tracer = StartupTracer.getInstance();
+        long start = tracer.activityCreateStarted();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        // Initialize managers
-        transactionManager = TransactionManager.getInstance(this);
-        limitsManager = LimitsManager.getInstance(this);
-        apiClient = ApiClient.getInstance(this);
+        // Transaction and limits data load in the background
+        screenLoader = new MainScreenLoader(this, this::render);
         
         // Initialize UI components
         initializeViews();
@@ -49,24 +77,89 @@ public class MainActivity extends AppCompatActivity {
         // Check and request SMS permissions
         checkSmsPermissions();
         
-        // Load data
-        loadTransactions();
-        updateLimitsDisplay();
+        // ApiClient is only needed once the user syncs; build it after the first frame
+        Context appContext = getApplicationContext();
+        WarmUpScheduler warmUp = new WarmUpScheduler()
+                .add(() -> ApiClient.getInstance(appContext));
+        // Replays only when unparsed SMS arrived since the last run, or the parser changed
+        SmsReparseJob reparseJob = new SmsReparseJob(appContext);
+        if (reparseJob.hasWork()) {
+            warmUp.add(reparseJob::run);
+        }
+        warmUp.scheduleAfterFirstFrame(getWindow().getDecorView());
+        
+        // Data is loaded in onResume
+        tracer.end(StartupTracer.Section.ACTIVITY_CREATE, start);
+    }
+
+    // Usually already built by the warm-up by the time anything needs it
+    private ApiClient apiClient() {
+        return ApiClient.getInstance(this);
     }
 
     private void initializeViews() {
         transactionsList = findViewById(R.id.transactions_list);
         limitsStatus = findViewById(R.id.limits_status);
+        balanceGapWarning = findViewById(R.id.balance_gap_warning);
+        searchBox = findViewById(R.id.search_box);
         syncButton = findViewById(R.id.sync_button);
         editLimitsButton = findViewById(R.id.edit_limits_button);
         settingsButton = findViewById(R.id.settings_button);
         testConnectionButton = findViewById(R.id.test_connection_button);
+        topContactsButton = findViewById(R.id.top_contacts_button);
+        trendsButton = findViewById(R.id.trends_button);
+        exportButton = findViewById(R.id.export_button);
+        
+        // Transactions list: one adapter for the activity's lifetime, paging from the store
+        transactionsLayout = new LinearLayoutManager(this);
+        transactionsList.setLayoutManager(transactionsLayout);
+        transactionsList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        
+        // Animate inserted rows only; changed rows are rebound in place
+        DefaultItemAnimator itemAnimator = new DefaultItemAnimator();
+        itemAnimator.setSupportsChangeAnimations(false);
+        transactionsList.setItemAnimator(itemAnimator);
+        
+        Context appContext = getApplicationContext();
+        // Pages come from the wallet of the state on screen, not whichever is
+        // active, so a wallet switch never mixes rows into the old count
+        TransactionPager.PageSource storeSource = (from, to) ->
+                TransactionManager.getInstance(appContext, shownWallet).getTransactionsBySequence(from, to);
+        transactionAdapter = new TransactionAdapter(this, storeSource);
+        transactionAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                // Keep new transactions in view if the user was already at the top
+                if (positionStart == 0 && transactionsLayout.findFirstCompletelyVisibleItemPosition() == 0) {
+                    transactionsList.scrollToPosition(0);
+                }
+            }
+        });
+        transactionsList.setAdapter(transactionAdapter);
+        
+        searchBox.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchQueryChanged(s.toString().trim());
+            }
+        });
         
         // Set click listeners
         syncButton.setOnClickListener(v -> syncAllData());
         editLimitsButton.setOnClickListener(v -> showEditLimitsDialog());
         settingsButton.setOnClickListener(v -> showSettingsDialog());
         testConnectionButton.setOnClickListener(v -> testConnection());
+        topContactsButton.setOnClickListener(v ->
+                screenLoader.loadTopCounterparties(TOP_CONTACTS_LIMIT, this::showTopContactsDialog));
+        trendsButton.setOnClickListener(v -> showTrendsPicker());
+        exportButton.setOnClickListener(v -> showExportDialog());
+        balanceGapWarning.setOnClickListener(v -> showBalanceGapsDialog());
     }
 
     private void checkSmsPermissions() {
@@ -96,37 +189,67 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void loadTransactions() {
-        List<Transaction> transactions = transactionManager.getAllTransactions();
-        transactionAdapter = new TransactionAdapter(this, transactions);
-        transactionsList.setAdapter(transactionAdapter);
+    private void render(MainScreenState state) {
+        screenState = state;
+        shownWallet = state.getWallet();
+        if (searchQuery.isEmpty()) {
+            transactionAdapter.submitCount(state.getTransactionCount(), state.getEpoch());
+        } else {
+            // New transactions may match the active search
+            screenLoader.search(searchQuery, this::showSearchResults);
+        }
+        limitsStatus.setText(state.getLimitsText());
+        
+        int gaps = state.getBalanceGaps().size();
+        if (gaps > 0) {
+            balanceGapWarning.setText(gaps == 1 ? "⚠ 1 break in the balance history, SMS may be missing" :
+                    "⚠ " + gaps + " breaks in the balance history, SMS may be missing");
+            balanceGapWarning.setVisibility(View.VISIBLE);
+        } else {
+            balanceGapWarning.setVisibility(View.GONE);
+        }
     }
 
-    private void updateLimitsDisplay() {
-        String limitsText = String.format(
-            "Daily Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Monthly Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Daily Receive: %.0f/%.0f EGP (%.1f%%)\n" +
-            "Monthly Receive: %.0f/%.0f EGP (%.1f%%)",
-            
-            transactionManager.getTotalTransferredToday(),
-            limitsManager.getDailyTransferLimit(),
-            limitsManager.getDailyTransferUsagePercentage(),
-            
-            transactionManager.getTotalTransferredThisMonth(),
-            limitsManager.getMonthlyTransferLimit(),
-            limitsManager.getMonthlyTransferUsagePercentage(),
-            
-            transactionManager.getTotalReceivedToday(),
-            limitsManager.getDailyReceiveLimit(),
-            limitsManager.getDailyReceiveUsagePercentage(),
-            
-            transactionManager.getTotalReceivedThisMonth(),
-            limitsManager.getMonthlyReceiveLimit(),
-            limitsManager.getMonthlyReceiveUsagePercentage()
-        );
+    private void showBalanceGapsDialog() {
+        if (screenState == null) return;
+        List<BalanceReconciler.Gap> gaps = screenState.getBalanceGaps();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
+        
+        StringBuilder message = new StringBuilder();
+        for (BalanceReconciler.Gap gap : gaps) {
+            if (message.length() > 0) message.append("\n\n");
+            message.append(String.format(Locale.getDefault(),
+                    "Between %s and %s\nBalance went from EGP %.2f to EGP %.2f (%+.2f)",
+                    dateFormat.format(gap.getFrom()), dateFormat.format(gap.getTo()),
+                    gap.getExpectedBalance(), gap.getActualBalance(), gap.getDifference()));
+        }
         
-        limitsStatus.setText(limitsText);
+        new AlertDialog.Builder(this)
+                .setTitle("Missing transactions")
+                .setMessage(message.toString())
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    private void onSearchQueryChanged(String query) {
+        if (query.equals(searchQuery)) return;
+        searchQuery = query;
+        
+        if (query.isEmpty()) {
+            if (screenState != null) {
+                transactionAdapter.submitCount(screenState.getTransactionCount(), screenState.getEpoch());
+            }
+        } else {
+            screenLoader.search(query, this::showSearchResults);
+        }
+    }
+
+    private void showSearchResults(String query, List<Transaction> results) {
+        // Results for an older query may still arrive after the box changed
+        if (query.equals(searchQuery)) {
+            transactionAdapter.submitResults(results);
+            transactionsList.scrollToPosition(0);
+        }
     }
 
     private void syncAllData() {
@@ -136,10 +259,10 @@ public class MainActivity extends AppCompatActivity {
         Toast.makeText(this, "Syncing data to web dashboard...", Toast.LENGTH_SHORT).show();
         
         // Sync transactions
-        apiClient.syncAllTransactions(this);
+        apiClient().syncAllTransactions(this);
         
         // Sync limits
-        apiClient.syncLimits(this);
+        apiClient().syncLimits(this);
         
         // Re-enable button after a delay
         syncButton.postDelayed(() -> {
@@ -156,12 +279,16 @@ public class MainActivity extends AppCompatActivity {
         EditText monthlyTransferEdit = dialogView.findViewById(R.id.monthly_transfer_limit);
         EditText dailyReceiveEdit = dialogView.findViewById(R.id.daily_receive_limit);
         EditText monthlyReceiveEdit = dialogView.findViewById(R.id.monthly_receive_limit);
+        CheckBox rollingCheck = dialogView.findViewById(R.id.rolling_window_limits);
         
         // Set current values
-        dailyTransferEdit.setText(String.valueOf((int) limitsManager.getDailyTransferLimit()));
-        monthlyTransferEdit.setText(String.valueOf((int) limitsManager.getMonthlyTransferLimit()));
-        dailyReceiveEdit.setText(String.valueOf((int) limitsManager.getDailyReceiveLimit()));
-        monthlyReceiveEdit.setText(String.valueOf((int) limitsManager.getMonthlyReceiveLimit()));
+        if (screenState != null) {
+            dailyTransferEdit.setText(String.valueOf((int) screenState.getDailyTransferLimit()));
+            monthlyTransferEdit.setText(String.valueOf((int) screenState.getMonthlyTransferLimit()));
+            dailyReceiveEdit.setText(String.valueOf((int) screenState.getDailyReceiveLimit()));
+            monthlyReceiveEdit.setText(String.valueOf((int) screenState.getMonthlyReceiveLimit()));
+            rollingCheck.setChecked(screenState.getLimits().isRolling());
+        }
         
         new AlertDialog.Builder(this)
                 .setTitle("Edit Limits")
@@ -173,12 +300,12 @@ public class MainActivity extends AppCompatActivity {
                         double dailyReceive = Double.parseDouble(dailyReceiveEdit.getText().toString());
                         double monthlyReceive = Double.parseDouble(monthlyReceiveEdit.getText().toString());
                         
-                        limitsManager.setDailyTransferLimit(dailyTransfer);
-                        limitsManager.setMonthlyTransferLimit(monthlyTransfer);
-                        limitsManager.setDailyReceiveLimit(dailyReceive);
-                        limitsManager.setMonthlyReceiveLimit(monthlyReceive);
+                        // One commit and one change event; the loader picks it up
+                        LimitsConfig.Window window = rollingCheck.isChecked()
+                                ? LimitsConfig.Window.ROLLING : LimitsConfig.Window.CALENDAR;
+                        LimitsManager.getInstance(this).updateLimits(new LimitsConfig(
+                                dailyTransfer, monthlyTransfer, dailyReceive, monthlyReceive, window));
                         
-                        updateLimitsDisplay();
                         Toast.makeText(this, "Limits updated successfully", Toast.LENGTH_SHORT).show();
                         
                     } catch (NumberFormatException e) {
@@ -193,7 +320,18 @@ public class MainActivity extends AppCompatActivity {
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_settings, null);
         
         EditText serverUrlEdit = dialogView.findViewById(R.id.server_url);
-        serverUrlEdit.setText(apiClient.getBaseUrl());
+        serverUrlEdit.setText(apiClient().getBaseUrl());
+        
+        WalletRegistry walletRegistry = WalletRegistry.getInstance(this);
+        Button walletButton = dialogView.findViewById(R.id.wallet_button);
+        walletButton.setText(walletRegistry.getLabel(walletRegistry.getActiveWallet()));
+        walletButton.setOnClickListener(v -> showWalletPicker(walletButton));
+        
+        SenderFilter senderFilter = SenderFilter.getInstance(this);
+        EditText sendersEdit = dialogView.findViewById(R.id.trusted_senders);
+        sendersEdit.setText(TextUtils.join(", ", new TreeSet<>(senderFilter.getTrustedSenders())));
+        CheckBox learnSendersCheck = dialogView.findViewById(R.id.learn_senders);
+        learnSendersCheck.setChecked(senderFilter.isLearning());
         
         new AlertDialog.Builder(this)
                 .setTitle("Settings")
@@ -201,19 +339,251 @@ public class MainActivity extends AppCompatActivity {
                 .setPositiveButton("Save", (dialog, which) -> {
                     String newUrl = serverUrlEdit.getText().toString().trim();
                     if (!newUrl.isEmpty()) {
-                        apiClient.setBaseUrl(newUrl);
+                        apiClient().setBaseUrl(newUrl);
                         Toast.makeText(this, "Server URL updated", Toast.LENGTH_SHORT).show();
                     }
+                    senderFilter.setTrustedSenders(Arrays.asList(sendersEdit.getText().toString().split(",")));
+                    if (learnSendersCheck.isChecked() != senderFilter.isLearning()) {
+                        senderFilter.setLearning(learnSendersCheck.isChecked());
+                    }
+                })
+                .setNeutralButton("Diagnostics", (dialog, which) -> showDiagnosticsDialog())
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showWalletPicker(Button walletButton) {
+        WalletRegistry walletRegistry = WalletRegistry.getInstance(this);
+        List<String> wallets = walletRegistry.getWallets();
+        String[] labels = new String[wallets.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = walletRegistry.getLabel(wallets.get(i));
+        }
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Show wallet")
+                .setItems(labels, (dialog, which) -> {
+                    walletRegistry.setActiveWallet(wallets.get(which));
+                    walletButton.setText(labels[which]);
+                    // The loader notices the switch and loads that wallet's store
+                    screenLoader.load();
+                })
+                .show();
+    }
+
+    private String smsTemplatesSummary() {
+        SmsTemplates smsTemplates = SmsTemplates.getInstance(this);
+        SmsTemplateEngine engine = smsTemplates.getEngine();
+        if (engine == null) return "SMS templates: none loaded, using built-in patterns";
+        return "SMS templates: " + engine.getTemplateCount() + " (" + engine.getStateCount() + " states)" +
+                "\nOverride file: " + smsTemplates.getOverrideFile().getPath();
+    }
+
+    private void showDiagnosticsDialog() {
+        String report = apiClient().getSyncMetrics().format() +
+                "\n\nStartup\n" + StartupTracer.getInstance().format() +
+                "\nSMS ingest\n" + IngestTracer.getInstance().report().format() +
+                "\nUnparsed SMS kept for re-parsing: " + RawSmsLog.getInstance(this).size() / 1024 + " KB" +
+                "\n" + smsTemplatesSummary();
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Diagnostics")
+                .setMessage(report)
+                .setPositiveButton("Export", (dialog, which) -> {
+                    Intent shareIntent = new Intent(Intent.ACTION_SEND)
+                            .setType("text/plain")
+                            .putExtra(Intent.EXTRA_SUBJECT, "VF-Cash diagnostics")
+                            .putExtra(Intent.EXTRA_TEXT, report);
+                    startActivity(Intent.createChooser(shareIntent, "Export diagnostics"));
+                })
+                .setNeutralButton("Reset", (dialog, which) -> {
+                    SyncMetrics.getInstance().reset();
+                    IngestTracer.getInstance().reset();
+                    Toast.makeText(this, "Sync and ingest stats reset", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void showTopContactsDialog(List<CounterpartyAggregates.Counterparty> counterparties) {
+        if (counterparties.isEmpty()) {
+            Toast.makeText(this, "No transactions yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        Calendar now = Calendar.getInstance();
+        int year = now.get(Calendar.YEAR);
+        int month = now.get(Calendar.MONTH);
+        
+        String[] items = new String[counterparties.size()];
+        for (int i = 0; i < items.length; i++) {
+            CounterpartyAggregates.Counterparty c = counterparties.get(i);
+            String name = c.getSenderName() != null ? c.getSenderName() + " • " : "";
+            items[i] = String.format(
+                "%s%s\nSent EGP %.0f (%d) • Received EGP %.0f (%d)\nThis month: sent %.0f, received %.0f",
+                name, c.getPhoneNumber(),
+                c.getTransferTotal(), c.getTransferCount(),
+                c.getReceivedTotal(), c.getReceivedCount(),
+                c.getTransferredInMonth(year, month), c.getReceivedInMonth(year, month));
+        }
+        
+        // Picking a contact searches for its transactions
+        new AlertDialog.Builder(this)
+                .setTitle("Top Contacts")
+                .setItems(items, (dialog, which) ->
+                        searchBox.setText(counterparties.get(which).getPhoneNumber()))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void showTrendsPicker() {
+        String[] options = {"Daily", "Weekly", "Monthly"};
+        RollupEngine.Granularity[] granularities = {
+            RollupEngine.Granularity.DAILY,
+            RollupEngine.Granularity.WEEKLY,
+            RollupEngine.Granularity.MONTHLY
+        };
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Trends")
+                .setItems(options, (dialog, which) ->
+                        screenLoader.loadRollup(shownWallet, granularities[which], this::showTrendsDialog))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showTrendsDialog(RollupEngine.Granularity granularity, List<RollupEngine.RollupPoint> series) {
+        if (series.isEmpty()) {
+            Toast.makeText(this, "No transactions yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        String pattern = granularity == RollupEngine.Granularity.MONTHLY ? "MMMM yyyy" :
+                granularity == RollupEngine.Granularity.WEEKLY ? "'Week of' dd/MM/yyyy" : "EEE dd/MM/yyyy";
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.getDefault());
+        
+        // Newest first
+        String[] items = new String[series.size()];
+        for (int i = 0; i < items.length; i++) {
+            RollupEngine.RollupPoint point = series.get(series.size() - 1 - i);
+            items[i] = String.format(
+                "%s\nSent EGP %.0f (%d) • Received EGP %.0f (%d) • Fees %.2f\nBalance %.2f → %.2f",
+                dateFormat.format(new Date(point.getStart())),
+                point.getTransferred(), point.getTransferCount(),
+                point.getReceived(), point.getReceivedCount(),
+                point.getFees(),
+                point.getOpeningBalance(), point.getClosingBalance());
+        }
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Trends")
+                .setItems(items, null)
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void showExportDialog() {
+        String[] options = {
+            "CSV, this month",
+            "CSV, all time",
+            "JSON lines, this month",
+            "JSON lines, all time"
+        };
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Export Transactions")
+                .setItems(options, (dialog, which) -> {
+                    TransactionExporter.Format format = which < 2
+                            ? TransactionExporter.Format.CSV : TransactionExporter.Format.NDJSON;
+                    TransactionExporter exporter = new TransactionExporter(format);
+                    if (which % 2 == 0) {
+                        Calendar monthStart = Calendar.getInstance();
+                        monthStart.set(Calendar.DAY_OF_MONTH, 1);
+                        monthStart.set(Calendar.HOUR_OF_DAY, 0);
+                        monthStart.set(Calendar.MINUTE, 0);
+                        monthStart.set(Calendar.SECOND, 0);
+                        monthStart.set(Calendar.MILLISECOND, 0);
+                        exporter.setDateRange(monthStart.getTimeInMillis(), Long.MAX_VALUE);
+                    }
+                    
+                    // Null while shared storage is unmounted or unavailable
+                    File externalDir = getExternalFilesDir(null);
+                    if (externalDir == null) {
+                        Toast.makeText(this, "Storage is not available for exports", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    File dir = new File(externalDir, "exports");
+                    File target = new File(dir, "transactions-" +
+                            new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) +
+                            "." + format.getExtension());
+                    new ExportTask(exporter, shownWallet, target).execute();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    // Streams the export off the main thread, showing progress on the button
+    private class ExportTask extends AsyncTask<Void, Integer, Integer> {
+        private final TransactionExporter exporter;
+        private final String wallet;
+        private final File target;
+        private final Context appContext = getApplicationContext();
+        private String error;
+
+        // The wallet on screen when the export was asked for
+        ExportTask(TransactionExporter exporter, String wallet, File target) {
+            this.exporter = exporter;
+            this.wallet = wallet;
+            this.target = target;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            exportButton.setEnabled(false);
+            exportButton.setText("Exporting...");
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            TransactionManager transactionManager = TransactionManager.getInstance(appContext, wallet);
+            exporter.setProgressListener((scanned, total) ->
+                    publishProgress(total > 0 ? (int) ((long) scanned * 100 / total) : 100));
+            try {
+                File dir = target.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                return exporter.export(transactionManager::getTransactionsBySequence,
+                        transactionManager.getTransactionCount(), target);
+            } catch (IOException e) {
+                Log.e(TAG, "Export failed", e);
+                error = e.getMessage();
+                return -1;
+            }
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... percent) {
+            exportButton.setText("Exporting " + percent[0] + "%");
+        }
+
+        @Override
+        protected void onPostExecute(Integer written) {
+            exportButton.setEnabled(true);
+            exportButton.setText("Export");
+            
+            String message = written >= 0
+                    ? "Exported " + written + " transactions to " + target.getPath()
+                    : "Export failed: " + error;
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+        }
+    }
+
     private void testConnection() {
         testConnectionButton.setEnabled(false);
         testConnectionButton.setText("Testing...");
         
-        apiClient.testConnection((success, message) -> {
+        apiClient().testConnection((success, message) -> {
             runOnUiThread(() -> {
                 testConnectionButton.setEnabled(true);
                 testConnectionButton.setText("Test Connection");
@@ -227,15 +597,17 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh data when returning to the activity
-        loadTransactions();
-        updateLimitsDisplay();
+        // Refresh data when returning to the activity; a no-op if nothing changed
+        screenLoader.load();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        screenLoader.release();
     }
 
     public void refreshData() {
-        runOnUiThread(() -> {
-            loadTransactions();
-            updateLimitsDisplay();
-        });
+        screenLoader.load();
     }
 }
@@ -0,0 +1,241 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Loads MainActivity's data on a background thread and delivers immutable
+// MainScreenState objects on the main thread. The first load is also where
+// the TransactionManager and LimitsManager singletons get built, so history
+// parsing never happens on the UI thread. After that, change events from
+// both managers are applied to the last state as deltas.
+public class MainScreenLoader implements DataChangeListener {
+    private static final String TAG = "MainScreenLoader";
+
+    // Shared so recreated activities queue behind, rather than race, earlier loads
+    private static final ExecutorService LOAD_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface Listener {
+        void onStateLoaded(MainScreenState state);
+    }
+
+    public interface SearchListener {
+        void onSearchResults(String query, List<Transaction> results);
+    }
+
+    public interface CounterpartiesListener {
+        void onCounterpartiesLoaded(List<CounterpartyAggregates.Counterparty> counterparties);
+    }
+
+    public interface RollupListener {
+        void onRollupLoaded(RollupEngine.Granularity granularity, List<RollupEngine.RollupPoint> series);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Listener listener;
+    private volatile long searchToken;
+    // The fields below are only touched on LOAD_EXECUTOR
+    private MainScreenState delivered;
+    private String subscribedWallet; // null until the first reload
+
+    public MainScreenLoader(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    // Queues a reload; it is skipped if nothing changed since the last delivery
+    public void load() {
+        LOAD_EXECUTOR.execute(this::reload);
+    }
+
+    // Runs a search against the store's index and delivers the results on the
+    // main thread; results for a query that has since been replaced are dropped
+    public void search(String query, SearchListener searchListener) {
+        long token = ++searchToken;
+        LOAD_EXECUTOR.execute(() -> {
+            if (token != searchToken) return;
+            List<Transaction> results = TransactionManager.getInstance(context).searchTransactions(query);
+            mainHandler.post(() -> {
+                if (token == searchToken && listener != null) {
+                    searchListener.onSearchResults(query, results);
+                }
+            });
+        });
+    }
+
+    public void loadTopCounterparties(int limit, CounterpartiesListener counterpartiesListener) {
+        LOAD_EXECUTOR.execute(() -> {
+            List<CounterpartyAggregates.Counterparty> top =
+                    TransactionManager.getInstance(context).getTopCounterparties(limit);
+            mainHandler.post(() -> {
+                if (listener != null) {
+                    counterpartiesListener.onCounterpartiesLoaded(top);
+                }
+            });
+        });
+    }
+
+    public void loadRollup(String wallet, RollupEngine.Granularity granularity, RollupListener rollupListener) {
+        LOAD_EXECUTOR.execute(() -> {
+            List<RollupEngine.RollupPoint> series =
+                    TransactionManager.getInstance(context, wallet).getRollup(granularity);
+            mainHandler.post(() -> {
+                if (listener != null) {
+                    rollupListener.onRollupLoaded(granularity, series);
+                }
+            });
+        });
+    }
+
+    // Stops delivering states, e.g. once the activity is destroyed
+    public void release() {
+        listener = null;
+        LOAD_EXECUTOR.execute(() -> {
+            unsubscribe();
+        });
+    }
+
+    // Cancelled registrations drop anything still queued for them, so no
+    // event from a previous wallet's store reaches onDataChanged
+    private void unsubscribe() {
+        if (subscribedWallet == null) return;
+        TransactionManager.getInstance(context, subscribedWallet).removeChangeListener(this);
+        LimitsManager.getInstance(context, subscribedWallet).removeChangeListener(this);
+        subscribedWallet = null;
+    }
+
+    private void reload() {
+        if (listener == null) return;
+
+        String wallet = WalletRegistry.getInstance(context).getActiveWallet();
+        TransactionManager transactionManager = TransactionManager.getInstance(context, wallet);
+        LimitsManager limitsManager = LimitsManager.getInstance(context, wallet);
+
+        // Subscribe before reading versions so no change can slip between the
+        // two. A different wallet means a different store, so start over.
+        if (!wallet.equals(subscribedWallet)) {
+            unsubscribe();
+            transactionManager.addChangeListener(this, LOAD_EXECUTOR);
+            limitsManager.addChangeListener(this, LOAD_EXECUTOR);
+            subscribedWallet = wallet;
+            delivered = null;
+        }
+
+        long transactionsVersion = transactionManager.getVersion();
+        LimitsConfig limits = limitsManager.getLimits();
+        int dayKey = MainScreenState.dayKey(Calendar.getInstance());
+        if (delivered != null && delivered.isCurrent(transactionsVersion, limits.getVersion(), dayKey)) {
+            // Rolling windows may have moved on even though nothing was inserted
+            if (limits.isRolling()) {
+                MainScreenState state = withRollingUsage(delivered, transactionManager);
+                if (state != delivered) deliver(state);
+            }
+            return;
+        }
+
+        // Version is read before the snapshot, so a concurrent insert only causes an extra reload.
+        // Totals only need the hot months; archived ones just add to the row count.
+        List<Transaction> recent = transactionManager.getRecentTransactions();
+        int count = transactionManager.getArchivedCount() + recent.size();
+        Log.d(TAG, "Loaded screen state with " + count + " transactions");
+        MainScreenState state = MainScreenState.compute(wallet, transactionsVersion, recent, count, limits);
+        if (limits.isRolling()) {
+            state = withRollingUsage(state, transactionManager);
+        }
+        // The first gap check reads the whole archive, so show the totals
+        // (with the gaps known so far) before running it
+        if (delivered != null) {
+            state = state.withBalanceGaps(delivered.getBalanceGaps());
+        }
+        deliver(state);
+        state = state.withBalanceGaps(transactionManager.getBalanceGaps());
+        if (state != delivered) deliver(state);
+    }
+
+    private static MainScreenState withRollingUsage(MainScreenState state, TransactionManager transactionManager) {
+        return state.withRollingUsage(
+                transactionManager.getTotalTransferredLast24Hours(),
+                transactionManager.getTotalTransferredLast30Days(),
+                transactionManager.getTotalReceivedLast24Hours(),
+                transactionManager.getTotalReceivedLast30Days());
+    }
+
+    @Override
+    public void onDataChanged(List<DataChangeEvent> events) {
+        // Nothing rendered yet: the pending full load will pick these changes up
+        if (delivered == null || listener == null) return;
+
+        MainScreenState state = delivered;
+        long transactionsVersion = state.getTransactionsVersion();
+        LimitsConfig limits = state.getLimits();
+        List<Transaction> inserted = new ArrayList<>();
+        boolean cleared = false;
+
+        // Events at or below the state's versions are already in its snapshot
+        for (DataChangeEvent event : events) {
+            switch (event.getType()) {
+                case INSERTED:
+                    if (event.getVersion() > transactionsVersion) {
+                        inserted.add(event.getTransaction());
+                        transactionsVersion = event.getVersion();
+                    }
+                    break;
+                case CLEARED:
+                    if (event.getVersion() > transactionsVersion) {
+                        inserted.clear();
+                        cleared = true;
+                        transactionsVersion = event.getVersion();
+                    }
+                    break;
+                case LIMITS_CHANGED:
+                    if (event.getVersion() > limits.getVersion()) {
+                        limits = event.getLimits();
+                    }
+                    break;
+            }
+        }
+
+        if (cleared) {
+            state = MainScreenState.compute(subscribedWallet, transactionsVersion, new ArrayList<>(), 0, limits);
+        }
+        state = state.withInserted(inserted, transactionsVersion);
+        if (state == null) {
+            // The day rolled over since the last delivery
+            reload();
+            return;
+        }
+        if (limits != state.getLimits()) {
+            state = state.withLimits(limits);
+        }
+        TransactionManager transactionManager = TransactionManager.getInstance(context, subscribedWallet);
+        if (limits.isRolling()) {
+            state = withRollingUsage(state, transactionManager);
+        }
+        if (transactionsVersion != delivered.getTransactionsVersion()) {
+            state = state.withBalanceGaps(transactionManager.getBalanceGaps());
+        }
+
+        if (state != delivered) {
+            Log.d(TAG, "Applied " + events.size() + " change events");
+            deliver(state);
+        }
+    }
+
+    private void deliver(MainScreenState state) {
+        delivered = state;
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onStateLoaded(state);
+            }
+        });
+    }
+}
@@ -0,0 +1,237 @@
+package com.vfcash.tracker;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Immutable snapshot of everything MainActivity renders: the transaction count
+// plus the limit figures, computed together in a single pass over history.
+// The rows themselves are paged in by TransactionAdapter.
+public final class MainScreenState {
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    private final String wallet;
+    private final long transactionsVersion;
+    private final int dayKey;
+
+    // Changes whenever the count is not simply the previous one plus top inserts
+    private final long epoch;
+    private final int transactionCount;
+
+    private final double transferredToday;
+    private final double transferredThisMonth;
+    private final double receivedToday;
+    private final double receivedThisMonth;
+
+    // Last 24 hours / 30 days, read from TransactionManager's counters; only
+    // filled in while the limits use rolling windows
+    private final double transferredLast24Hours;
+    private final double transferredLast30Days;
+    private final double receivedLast24Hours;
+    private final double receivedLast30Days;
+
+    private final LimitsConfig limits;
+
+    // Breaks in the balance chain, read from TransactionManager's reconciler
+    private final List<BalanceReconciler.Gap> balanceGaps;
+
+    private MainScreenState(String wallet, long transactionsVersion, int dayKey,
+                            long epoch, int transactionCount,
+                            double transferredToday, double transferredThisMonth,
+                            double receivedToday, double receivedThisMonth,
+                            double transferredLast24Hours, double transferredLast30Days,
+                            double receivedLast24Hours, double receivedLast30Days,
+                            LimitsConfig limits, List<BalanceReconciler.Gap> balanceGaps) {
+        this.wallet = wallet;
+        this.transactionsVersion = transactionsVersion;
+        this.dayKey = dayKey;
+        this.epoch = epoch;
+        this.transactionCount = transactionCount;
+        this.transferredToday = transferredToday;
+        this.transferredThisMonth = transferredThisMonth;
+        this.receivedToday = receivedToday;
+        this.receivedThisMonth = receivedThisMonth;
+        this.transferredLast24Hours = transferredLast24Hours;
+        this.transferredLast30Days = transferredLast30Days;
+        this.receivedLast24Hours = receivedLast24Hours;
+        this.receivedLast30Days = receivedLast30Days;
+        this.limits = limits;
+        this.balanceGaps = balanceGaps;
+    }
+
+    // Builds state from a newest-first snapshot covering at least the current
+    // month, which is not retained; must not run on the main thread
+    static MainScreenState compute(String wallet, long transactionsVersion, List<Transaction> transactions,
+                                   int transactionCount, LimitsConfig limits) {
+        Calendar now = Calendar.getInstance();
+        int year = now.get(Calendar.YEAR);
+        int month = now.get(Calendar.MONTH);
+        int dayOfYear = now.get(Calendar.DAY_OF_YEAR);
+
+        double transferredToday = 0;
+        double transferredThisMonth = 0;
+        double receivedToday = 0;
+        double receivedThisMonth = 0;
+
+        Calendar transCal = Calendar.getInstance();
+        for (Transaction transaction : transactions) {
+            transCal.setTime(transaction.getDate());
+            if (transCal.get(Calendar.YEAR) != year || transCal.get(Calendar.MONTH) != month) {
+                continue;
+            }
+            boolean today = transCal.get(Calendar.DAY_OF_YEAR) == dayOfYear;
+
+            if ("transfer".equals(transaction.getType())) {
+                transferredThisMonth += transaction.getAmount();
+                if (today) transferredToday += transaction.getAmount();
+            } else if ("received".equals(transaction.getType())) {
+                receivedThisMonth += transaction.getAmount();
+                if (today) receivedToday += transaction.getAmount();
+            }
+        }
+
+        return new MainScreenState(wallet, transactionsVersion, dayKey(now),
+                EPOCHS.incrementAndGet(), transactionCount,
+                transferredToday, transferredThisMonth, receivedToday, receivedThisMonth,
+                0, 0, 0, 0, limits, Collections.<BalanceReconciler.Gap>emptyList());
+    }
+
+    // Applies transactions inserted since this state (oldest first) without
+    // rescanning history. Returns null if the day rolled over, since the
+    // today/month totals then need a full recompute.
+    MainScreenState withInserted(List<Transaction> inserted, long transactionsVersion) {
+        Calendar now = Calendar.getInstance();
+        if (dayKey(now) != dayKey) {
+            return null;
+        }
+        if (inserted.isEmpty()) {
+            return this;
+        }
+
+        int year = now.get(Calendar.YEAR);
+        int month = now.get(Calendar.MONTH);
+        int dayOfYear = now.get(Calendar.DAY_OF_YEAR);
+
+        double transferredToday = this.transferredToday;
+        double transferredThisMonth = this.transferredThisMonth;
+        double receivedToday = this.receivedToday;
+        double receivedThisMonth = this.receivedThisMonth;
+
+        Calendar transCal = Calendar.getInstance();
+        for (Transaction transaction : inserted) {
+            transCal.setTime(transaction.getDate());
+            if (transCal.get(Calendar.YEAR) != year || transCal.get(Calendar.MONTH) != month) {
+                continue;
+            }
+            boolean today = transCal.get(Calendar.DAY_OF_YEAR) == dayOfYear;
+
+            if ("transfer".equals(transaction.getType())) {
+                transferredThisMonth += transaction.getAmount();
+                if (today) transferredToday += transaction.getAmount();
+            } else if ("received".equals(transaction.getType())) {
+                receivedThisMonth += transaction.getAmount();
+                if (today) receivedToday += transaction.getAmount();
+            }
+        }
+        return new MainScreenState(wallet, transactionsVersion, dayKey,
+                epoch, transactionCount + inserted.size(),
+                transferredToday, transferredThisMonth, receivedToday, receivedThisMonth,
+                transferredLast24Hours, transferredLast30Days, receivedLast24Hours, receivedLast30Days, limits, balanceGaps);
+    }
+
+    MainScreenState withLimits(LimitsConfig limits) {
+        return new MainScreenState(wallet, transactionsVersion, dayKey, epoch, transactionCount,
+                transferredToday, transferredThisMonth, receivedToday, receivedThisMonth,
+                transferredLast24Hours, transferredLast30Days, receivedLast24Hours, receivedLast30Days, limits, balanceGaps);
+    }
+
+    // Rolling totals decay with time rather than with inserts, so they are
+    // re-read on every delivery instead of being updated incrementally
+    MainScreenState withRollingUsage(double transferredLast24Hours, double transferredLast30Days,
+                                     double receivedLast24Hours, double receivedLast30Days) {
+        if (transferredLast24Hours == this.transferredLast24Hours &&
+                transferredLast30Days == this.transferredLast30Days &&
+                receivedLast24Hours == this.receivedLast24Hours &&
+                receivedLast30Days == this.receivedLast30Days) {
+            return this;
+        }
+        return new MainScreenState(wallet, transactionsVersion, dayKey, epoch, transactionCount,
+                transferredToday, transferredThisMonth, receivedToday, receivedThisMonth,
+                transferredLast24Hours, transferredLast30Days, receivedLast24Hours, receivedLast30Days, limits, balanceGaps);
+    }
+
+    MainScreenState withBalanceGaps(List<BalanceReconciler.Gap> balanceGaps) {
+        if (balanceGaps.equals(this.balanceGaps)) {
+            return this;
+        }
+        return new MainScreenState(wallet, transactionsVersion, dayKey, epoch, transactionCount,
+                transferredToday, transferredThisMonth, receivedToday, receivedThisMonth,
+                transferredLast24Hours, transferredLast30Days, receivedLast24Hours, receivedLast30Days, limits, balanceGaps);
+    }
+
+    static int dayKey(Calendar calendar) {
+        return calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+    }
+
+    // True when nothing this state depends on has changed
+    boolean isCurrent(long transactionsVersion, long limitsVersion, int dayKey) {
+        return this.transactionsVersion == transactionsVersion &&
+                limits.getVersion() == limitsVersion &&
+                this.dayKey == dayKey;
+    }
+
+    public String getWallet() { return wallet; }
+    long getTransactionsVersion() { return transactionsVersion; }
+    long getLimitsVersion() { return limits.getVersion(); }
+
+    public long getEpoch() { return epoch; }
+    public int getTransactionCount() { return transactionCount; }
+
+    public double getTransferredToday() { return transferredToday; }
+    public double getTransferredThisMonth() { return transferredThisMonth; }
+    public double getReceivedToday() { return receivedToday; }
+    public double getReceivedThisMonth() { return receivedThisMonth; }
+
+    // Usage over the window the limits are measured in
+    public double getDailyTransferUsed() { return limits.isRolling() ? transferredLast24Hours : transferredToday; }
+    public double getMonthlyTransferUsed() { return limits.isRolling() ? transferredLast30Days : transferredThisMonth; }
+    public double getDailyReceiveUsed() { return limits.isRolling() ? receivedLast24Hours : receivedToday; }
+    public double getMonthlyReceiveUsed() { return limits.isRolling() ? receivedLast30Days : receivedThisMonth; }
+
+    public List<BalanceReconciler.Gap> getBalanceGaps() { return balanceGaps; }
+
+    public LimitsConfig getLimits() { return limits; }
+    public double getDailyTransferLimit() { return limits.getDailyTransferLimit(); }
+    public double getMonthlyTransferLimit() { return limits.getMonthlyTransferLimit(); }
+    public double getDailyReceiveLimit() { return limits.getDailyReceiveLimit(); }
+    public double getMonthlyReceiveLimit() { return limits.getMonthlyReceiveLimit(); }
+
+    public String getLimitsText() {
+        double dailyTransferLimit = limits.getDailyTransferLimit();
+        double monthlyTransferLimit = limits.getMonthlyTransferLimit();
+        double dailyReceiveLimit = limits.getDailyReceiveLimit();
+        double monthlyReceiveLimit = limits.getMonthlyReceiveLimit();
+        double dailyTransferUsed = getDailyTransferUsed();
+        double monthlyTransferUsed = getMonthlyTransferUsed();
+        double dailyReceiveUsed = getDailyReceiveUsed();
+        double monthlyReceiveUsed = getMonthlyReceiveUsed();
+        String daily = limits.isRolling() ? "24h" : "Daily";
+        String monthly = limits.isRolling() ? "30-day" : "Monthly";
+        return String.format(
+            "%s Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Transfer: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Receive: %.0f/%.0f EGP (%.1f%%)\n" +
+            "%s Receive: %.0f/%.0f EGP (%.1f%%)",
+
+            daily, dailyTransferUsed, dailyTransferLimit, percentage(dailyTransferUsed, dailyTransferLimit),
+            monthly, monthlyTransferUsed, monthlyTransferLimit, percentage(monthlyTransferUsed, monthlyTransferLimit),
+            daily, dailyReceiveUsed, dailyReceiveLimit, percentage(dailyReceiveUsed, dailyReceiveLimit),
+            monthly, monthlyReceiveUsed, monthlyReceiveLimit, percentage(monthlyReceiveUsed, monthlyReceiveLimit)
+        );
+    }
+
+    private static double percentage(double used, double limit) {
+        return limit > 0 ? (used / limit) * 100 : 0;
+    }
+}
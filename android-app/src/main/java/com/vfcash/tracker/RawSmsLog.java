@@ -0,0 +1,355 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Append-only log of SMS that looked like VF-Cash messages but did not
+// parse, kept so a later SmsParser can recover them (see SmsReparseJob).
+// The file is memory-mapped: appends are a copy into the map plus a force(),
+// and a replay walks the records straight out of the page cache.
+//
+// Layout: "VFRL", version, committed end, base offset, then records of
+//   length, receivedAt millis, wallet, sender, body
+// with strings as a length-prefixed UTF-8. A record only counts once the
+// header's end has moved past it. Record and header go out in one force(),
+// which does not order the pages, so opening the log cuts the end back to
+// the last record whose lengths add up; a torn append is dropped either way.
+//
+// Offsets handed out are logical: the base offset is the logical offset of
+// the first record, so they stay valid when records are removed from the
+// front. Recovered records are dropped by compact(); once the file reaches
+// MAX_SIZE, appends drop the oldest quarter instead of the new message.
+// Both rewrite the file next to the log and rename it into place.
+public class RawSmsLog {
+    private static final String TAG = "RawSmsLog";
+
+    private static final String FILE_NAME = "raw_sms.log";
+    private static final int MAGIC = 0x5646524C; // "VFRL"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int END_OFFSET = 8;
+    private static final int BASE_OFFSET = 16;
+    // Version 1 had no base offset; its file offsets are this version's logical ones
+    private static final int V1_HEADER_SIZE = 16;
+    private static final int INITIAL_SIZE = 64 * 1024;
+    // About 25k messages
+    private static final int MAX_SIZE = 8 * 1024 * 1024;
+
+    public interface Visitor {
+        void visit(long offset, long receivedAt, String wallet, String sender, String body);
+    }
+
+    private static RawSmsLog instance;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer map;
+
+    RawSmsLog(File file) {
+        this.file = file;
+    }
+
+    public static synchronized RawSmsLog getInstance(Context context) {
+        if (instance == null) {
+            instance = new RawSmsLog(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    // Returns the record's offset, or -1 if it could not be stored
+    public synchronized long append(long receivedAt, String wallet, String sender, String body) {
+        byte[] walletBytes = bytes(wallet);
+        byte[] senderBytes = bytes(sender);
+        byte[] bodyBytes = bytes(body);
+        int length = 8 + 4 + walletBytes.length + 4 + senderBytes.length + 4 + bodyBytes.length;
+        try {
+            open();
+            if (HEADER_SIZE + 4 + length > MAX_SIZE) {
+                Log.w(TAG, "SMS received at " + receivedAt + " is too large to keep");
+                return -1;
+            }
+            int offset = (int) map.getLong(END_OFFSET);
+            if (!ensureCapacity(offset + 4 + length)) {
+                dropOldest(MAX_SIZE / 4 + 4 + length);
+                offset = (int) map.getLong(END_OFFSET);
+                ensureCapacity(offset + 4 + length);
+            }
+            map.position(offset);
+            map.putInt(length);
+            map.putLong(receivedAt);
+            putBytes(walletBytes);
+            putBytes(senderBytes);
+            putBytes(bodyBytes);
+            map.putLong(END_OFFSET, offset + 4 + length);
+            map.force();
+            return logical(offset);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not append raw SMS", e);
+            return -1;
+        }
+    }
+
+    // Visits every committed record from `fromOffset` on, oldest first.
+    // Returns the offset to resume from next time.
+    public synchronized long scan(long fromOffset, Visitor visitor) {
+        try {
+            if (!file.exists()) return fromOffset;
+            open();
+            long end = map.getLong(END_OFFSET);
+            // Records before the base were dropped; start at the oldest left
+            int offset = Math.max(physical(fromOffset), HEADER_SIZE);
+            while (offset < end) {
+                map.position(offset);
+                int length = map.getInt();
+                long receivedAt = map.getLong();
+                String wallet = getString();
+                String sender = getString();
+                String body = getString();
+                visitor.visit(logical(offset), receivedAt, wallet, sender, body);
+                offset += 4 + length;
+            }
+            return logical(offset);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read raw SMS log", e);
+            return fromOffset;
+        }
+    }
+
+    // Removes the records at the given offsets, e.g. ones a newer parser has
+    // recovered. The end offset is kept, so a resume offset taken from the
+    // scan that found them still points past everything already visited.
+    public synchronized void compact(Set<Long> offsets) {
+        if (offsets.isEmpty()) return;
+        try {
+            if (!file.exists()) return;
+            open();
+            long end = map.getLong(END_OFFSET);
+            List<int[]> keep = new ArrayList<>();
+            long kept = 0;
+            for (int offset = HEADER_SIZE; offset < end; ) {
+                int recordSize = 4 + map.getInt(offset);
+                if (!offsets.contains(logical(offset))) {
+                    keep.add(new int[]{offset, recordSize});
+                    kept += recordSize;
+                }
+                offset += recordSize;
+            }
+            long before = end - HEADER_SIZE;
+            rewrite(keep, logical((int) end) - kept);
+            Log.d(TAG, "Compacted raw SMS log from " + before + " to " + kept + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not compact raw SMS log", e);
+        }
+    }
+
+    // True if a committed record starts at or after `offset`. Reads only the
+    // header, so it costs next to nothing before the log has been opened.
+    public synchronized boolean hasRecordsAfter(long offset) {
+        if (!file.exists()) return false;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < V1_HEADER_SIZE || in.readInt() != MAGIC) return false;
+            boolean v1 = in.readInt() == 1;
+            long end = in.readLong();
+            // Version 1 has no base; its offsets are file offsets
+            long base = v1 ? V1_HEADER_SIZE : in.readLong();
+            int headerSize = v1 ? V1_HEADER_SIZE : HEADER_SIZE;
+            return Math.max(offset - base + headerSize, headerSize) < end;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Bytes used by committed records
+    public synchronized long size() {
+        try {
+            if (!file.exists()) return 0;
+            open();
+            return map.getLong(END_OFFSET) - HEADER_SIZE;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void open() throws IOException {
+        if (map != null) return;
+        boolean created = !file.exists() || file.length() < V1_HEADER_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        if (created) {
+            raf.setLength(INITIAL_SIZE);
+        }
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        if (created) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putLong(END_OFFSET, HEADER_SIZE);
+            // Where version 1 started, so offset 0 still means "from the start"
+            map.putLong(BASE_OFFSET, V1_HEADER_SIZE);
+            map.force();
+        } else if (map.getInt(0) == MAGIC && map.getInt(4) == 1) {
+            migrateFromV1();
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            close();
+            throw new IOException("Unrecognised raw SMS log " + file);
+        } else {
+            dropTornTail();
+        }
+    }
+
+    // A crash during append's force() can leave the header pointing past a
+    // record whose pages never reached disk; they read back as zeros or stale
+    // bytes, so the first record whose lengths do not add up ends the log
+    private void dropTornTail() {
+        long end = map.getLong(END_OFFSET);
+        int offset = HEADER_SIZE;
+        while (offset < end && isWhole(offset, end)) {
+            offset += 4 + map.getInt(offset);
+        }
+        if (offset < end) {
+            map.putLong(END_OFFSET, offset);
+            map.force();
+            Log.w(TAG, "Dropped a torn record at " + logical(offset));
+        }
+    }
+
+    private boolean isWhole(int offset, long end) {
+        int length = map.getInt(offset);
+        if (length < 8 + 4 + 4 + 4 || offset + 4L + length > end) return false;
+        long used = 8;
+        int field = offset + 4 + 8;
+        for (int i = 0; i < 3; i++) {
+            if (used + 4 > length) return false;
+            int size = map.getInt(field);
+            if (size < 0) return false;
+            used += 4 + (long) size;
+            field += 4 + size;
+        }
+        return used == length;
+    }
+
+    // Same records behind a shorter header; a base of V1_HEADER_SIZE keeps
+    // resume offsets saved against the old file valid
+    private void migrateFromV1() throws IOException {
+        long end = map.getLong(END_OFFSET);
+        List<int[]> keep = new ArrayList<>();
+        for (int offset = V1_HEADER_SIZE; offset < end; ) {
+            int recordSize = 4 + map.getInt(offset);
+            keep.add(new int[]{offset, recordSize});
+            offset += recordSize;
+        }
+        rewrite(keep, V1_HEADER_SIZE);
+        Log.d(TAG, "Upgraded raw SMS log with " + keep.size() + " records");
+    }
+
+    // Grows the file (and the map) by doubling; false once MAX_SIZE is reached
+    private boolean ensureCapacity(long needed) throws IOException {
+        if (needed <= map.capacity()) return true;
+        if (needed > MAX_SIZE) return false;
+        long size = capacityFor(needed);
+        raf.setLength(size);
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return true;
+    }
+
+    // Drops records from the front until `needed` bytes are free. Later
+    // records keep their offsets, since the base moves up by what was dropped.
+    private void dropOldest(long needed) throws IOException {
+        long end = map.getLong(END_OFFSET);
+        int offset = HEADER_SIZE;
+        int dropped = 0;
+        while (offset < end && end - offset > MAX_SIZE - HEADER_SIZE - needed) {
+            offset += 4 + map.getInt(offset);
+            dropped++;
+        }
+        List<int[]> keep = new ArrayList<>();
+        for (int record = offset; record < end; ) {
+            int recordSize = 4 + map.getInt(record);
+            keep.add(new int[]{record, recordSize});
+            record += recordSize;
+        }
+        rewrite(keep, logical(offset));
+        Log.w(TAG, "Log is full, dropped the " + dropped + " oldest SMS");
+    }
+
+    // Writes the given records (file position, size) to a new file with the
+    // given base, then swaps it in for the log
+    private void rewrite(List<int[]> records, long base) throws IOException {
+        long used = 0;
+        for (int[] record : records) {
+            used += record[1];
+        }
+        File partial = new File(file.getPath() + ".part");
+        long size = capacityFor(HEADER_SIZE + used);
+        try (RandomAccessFile out = new RandomAccessFile(partial, "rw")) {
+            out.setLength(size);
+            MappedByteBuffer target = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            target.putInt(0, MAGIC);
+            target.putInt(4, VERSION);
+            target.putLong(END_OFFSET, HEADER_SIZE + used);
+            target.putLong(BASE_OFFSET, base);
+            target.position(HEADER_SIZE);
+            for (int[] record : records) {
+                ByteBuffer source = map.duplicate();
+                source.limit(record[0] + record[1]);
+                source.position(record[0]);
+                target.put(source);
+            }
+            target.force();
+        }
+        close();
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        open();
+    }
+
+    private void close() throws IOException {
+        map = null;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+
+    private static long capacityFor(long needed) {
+        long size = INITIAL_SIZE;
+        while (size < needed) {
+            size *= 2;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    private int physical(long offset) {
+        return (int) (offset - map.getLong(BASE_OFFSET) + HEADER_SIZE);
+    }
+
+    private long logical(int offset) {
+        return map.getLong(BASE_OFFSET) + offset - HEADER_SIZE;
+    }
+
+    private void putBytes(byte[] value) {
+        map.putInt(value.length);
+        map.put(value);
+    }
+
+    private String getString() {
+        byte[] value = new byte[map.getInt()];
+        map.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+}
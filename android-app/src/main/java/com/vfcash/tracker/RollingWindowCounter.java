@@ -0,0 +1,89 @@
+package com.vfcash.tracker;
+
+import java.util.Arrays;
+
+// Sum of amounts over a sliding time window, kept in a ring of fixed-width
+// buckets. Buckets that fall out of the window are zeroed as time advances
+// and a running total is maintained, so reading the sum costs at most one
+// pass over expired buckets and never allocates. Amounts are held in
+// piasters so the running total does not drift.
+//
+// The window is bucket-aligned: a read covers the current bucket plus the
+// previous (bucketCount - 1) ones, i.e. the window length to within one
+// bucket. Not thread-safe; TransactionManager guards it with its own lock.
+public class RollingWindowCounter {
+    private static final long MINUTE_MILLIS = 60L * 1000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private final long bucketMillis;
+    private final long[] buckets;
+    // Absolute index (time / bucketMillis) of the newest bucket in the ring
+    private long headBucket;
+    private long total;
+
+    public RollingWindowCounter(long windowMillis, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new long[(int) (windowMillis / bucketMillis)];
+    }
+
+    // Per-minute buckets over 24 hours
+    public static RollingWindowCounter last24Hours() {
+        return new RollingWindowCounter(DAY_MILLIS, MINUTE_MILLIS);
+    }
+
+    // Per-hour buckets over 30 days
+    public static RollingWindowCounter last30Days() {
+        return new RollingWindowCounter(30 * DAY_MILLIS, HOUR_MILLIS);
+    }
+
+    // Start of the oldest time still counted when read at `now`
+    public long windowStart(long now) {
+        return (now / bucketMillis - buckets.length + 1) * bucketMillis;
+    }
+
+    // A row dated after `now`, e.g. from an SMS centre whose clock runs ahead
+    // of the device's, counts in the current bucket. Moving the head to its
+    // bucket would expire rows still inside the window ahead of time.
+    public void add(long time, double amount, long now) {
+        long bucket = Math.min(time, now) / bucketMillis;
+        if (bucket > headBucket) {
+            advanceTo(bucket);
+        } else if (bucket <= headBucket - buckets.length) {
+            return; // already outside the window
+        }
+        long piasters = Math.round(amount * 100);
+        buckets[index(bucket)] += piasters;
+        total += piasters;
+    }
+
+    public double sum(long now) {
+        advanceTo(now / bucketMillis);
+        return total / 100.0;
+    }
+
+    public void clear() {
+        Arrays.fill(buckets, 0);
+        total = 0;
+        headBucket = 0;
+    }
+
+    private void advanceTo(long bucket) {
+        if (bucket <= headBucket) return;
+        if (bucket - headBucket >= buckets.length) {
+            Arrays.fill(buckets, 0);
+            total = 0;
+        } else {
+            for (long b = headBucket + 1; b <= bucket; b++) {
+                int i = index(b);
+                total -= buckets[i];
+                buckets[i] = 0;
+            }
+        }
+        headBucket = bucket;
+    }
+
+    private int index(long bucket) {
+        return (int) (bucket % buckets.length);
+    }
+}
@@ -0,0 +1,432 @@
+package com.vfcash.tracker;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Daily, weekly and monthly time series of transfers, receipts, fees and
+// balance. History is rolled up once, in parallel over column arrays when it
+// is large; after that every added transaction only updates the bucket it
+// falls in. Buckets that closed before the current one are cached as
+// immutable points, so a query only materializes the open bucket (and any
+// older bucket a late transaction landed in).
+//
+// Not thread-safe; TransactionManager guards it with its own lock.
+public class RollupEngine {
+    private static final String TAG = "RollupEngine";
+
+    // Rows per fork/join leaf; smaller histories are rolled up on the calling thread
+    private static final int PARALLEL_THRESHOLD = 16384;
+
+    private static final byte TYPE_OTHER = 0;
+    private static final byte TYPE_TRANSFER = 1;
+    private static final byte TYPE_RECEIVED = 2;
+
+    public enum Granularity { DAILY, WEEKLY, MONTHLY }
+
+    // ForkJoinPool.commonPool() is API 24+; this pool's threads are only
+    // started by the first history large enough to split
+    private static final class Pool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    private final Map<Granularity, TreeMap<Long, Bucket>> buckets = new EnumMap<>(Granularity.class);
+    private final Map<Granularity, Map<Long, RollupPoint>> sealed = new EnumMap<>(Granularity.class);
+    private final BucketClock clock = new BucketClock();
+
+    public RollupEngine() {
+        for (Granularity granularity : Granularity.values()) {
+            buckets.put(granularity, new TreeMap<>());
+            sealed.put(granularity, new HashMap<>());
+        }
+    }
+
+    // Replaces all buckets with a rollup of the given history
+    public void rebuild(Columns columns) {
+        long start = System.nanoTime();
+        Partial partial = columns.size > PARALLEL_THRESHOLD
+                ? Pool.INSTANCE.invoke(new RollupTask(columns, 0, columns.size))
+                : Partial.compute(columns, 0, columns.size);
+
+        for (Granularity granularity : Granularity.values()) {
+            buckets.get(granularity).clear();
+            buckets.get(granularity).putAll(partial.buckets.get(granularity));
+            sealed.get(granularity).clear();
+        }
+        Log.d(TAG, "Rolled up " + columns.size + " transactions in " +
+                (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    // Folds in daily rollups computed elsewhere, e.g. read from archive
+    // segments. Each day lands whole in its week and month buckets.
+    public void addDays(List<RollupPoint> days) {
+        for (RollupPoint day : days) {
+            for (Granularity granularity : Granularity.values()) {
+                long bucketStart = clock.startOf(granularity, day.getStart());
+                Bucket bucket = buckets.get(granularity).get(bucketStart);
+                if (bucket == null) {
+                    bucket = new Bucket(bucketStart, clock.endOf(granularity));
+                    buckets.get(granularity).put(bucketStart, bucket);
+                }
+                bucket.merge(Bucket.of(day));
+                sealed.get(granularity).remove(bucketStart);
+            }
+        }
+    }
+
+    public void add(Transaction transaction) {
+        Date date = transaction.getDate();
+        if (date == null) return;
+        long time = date.getTime();
+        byte type = typeOf(transaction);
+
+        for (Granularity granularity : Granularity.values()) {
+            long bucketStart = clock.startOf(granularity, time);
+            Bucket bucket = buckets.get(granularity).get(bucketStart);
+            if (bucket == null) {
+                bucket = new Bucket(bucketStart, clock.endOf(granularity));
+                buckets.get(granularity).put(bucketStart, bucket);
+            }
+            bucket.add(type, time, transaction.getAmount(), transaction.getServiceFees(),
+                    transaction.getBalanceBefore(), transaction.getBalanceAfter());
+            // Normally a no-op; only late transactions land in a closed bucket
+            sealed.get(granularity).remove(bucketStart);
+        }
+    }
+
+    public void clear() {
+        for (Granularity granularity : Granularity.values()) {
+            buckets.get(granularity).clear();
+            sealed.get(granularity).clear();
+        }
+    }
+
+    // Oldest first; buckets with no transactions are left out
+    public List<RollupPoint> series(Granularity granularity, long now) {
+        long openStart = clock.startOf(granularity, now);
+        Map<Long, RollupPoint> sealedPoints = sealed.get(granularity);
+
+        TreeMap<Long, Bucket> granularityBuckets = buckets.get(granularity);
+        List<RollupPoint> series = new ArrayList<>(granularityBuckets.size());
+        for (Bucket bucket : granularityBuckets.values()) {
+            if (bucket.end <= openStart) {
+                RollupPoint point = sealedPoints.get(bucket.start);
+                if (point == null) {
+                    point = bucket.toPoint();
+                    sealedPoints.put(bucket.start, point);
+                }
+                series.add(point);
+            } else {
+                series.add(bucket.toPoint());
+            }
+        }
+        return series;
+    }
+
+    private static byte typeOf(Transaction transaction) {
+        if ("transfer".equals(transaction.getType())) return TYPE_TRANSFER;
+        if ("received".equals(transaction.getType())) return TYPE_RECEIVED;
+        return TYPE_OTHER;
+    }
+
+    // History as parallel arrays in sequence order (oldest first), so the
+    // rollup pass touches primitives instead of chasing Transaction objects
+    public static final class Columns {
+        final int size;
+        final long[] times;
+        final byte[] types;
+        final double[] amounts;
+        final double[] fees;
+        final double[] balancesBefore;
+        final double[] balancesAfter;
+
+        public Columns(int size) {
+            this.size = size;
+            this.times = new long[size];
+            this.types = new byte[size];
+            this.amounts = new double[size];
+            this.fees = new double[size];
+            this.balancesBefore = new double[size];
+            this.balancesAfter = new double[size];
+        }
+
+        public void set(int sequence, Transaction transaction) {
+            // Rows without a date are marked with Long.MIN_VALUE and skipped
+            times[sequence] = transaction.getDate() != null ? transaction.getDate().getTime() : Long.MIN_VALUE;
+            types[sequence] = typeOf(transaction);
+            amounts[sequence] = transaction.getAmount();
+            fees[sequence] = transaction.getServiceFees();
+            balancesBefore[sequence] = transaction.getBalanceBefore();
+            balancesAfter[sequence] = transaction.getBalanceAfter();
+        }
+    }
+
+    public static final class RollupPoint {
+        private final long start;
+        private final long end;
+        private final double transferred;
+        private final double received;
+        private final double fees;
+        private final int transferCount;
+        private final int receivedCount;
+        private final double openingBalance;
+        private final double closingBalance;
+
+        RollupPoint(long start, long end, double transferred, double received, double fees,
+                    int transferCount, int receivedCount,
+                    double openingBalance, double closingBalance) {
+            this.start = start;
+            this.end = end;
+            this.transferred = transferred;
+            this.received = received;
+            this.fees = fees;
+            this.transferCount = transferCount;
+            this.receivedCount = receivedCount;
+            this.openingBalance = openingBalance;
+            this.closingBalance = closingBalance;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public double getTransferred() { return transferred; }
+        public double getReceived() { return received; }
+        public double getFees() { return fees; }
+        public int getTransferCount() { return transferCount; }
+        public int getReceivedCount() { return receivedCount; }
+        public double getOpeningBalance() { return openingBalance; }
+        public double getClosingBalance() { return closingBalance; }
+    }
+
+    // Mergeable accumulator for one time range
+    private static final class Bucket {
+        final long start;
+        final long end;
+        double transferred;
+        double received;
+        double fees;
+        int transferCount;
+        int receivedCount;
+        // Balance before the earliest and after the latest transaction
+        long firstTime = Long.MAX_VALUE;
+        double openingBalance;
+        long lastTime = Long.MIN_VALUE;
+        double closingBalance;
+
+        Bucket(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void add(byte type, long time, double amount, double fee,
+                 double balanceBefore, double balanceAfter) {
+            if (type == TYPE_TRANSFER) {
+                transferred += amount;
+                transferCount++;
+            } else if (type == TYPE_RECEIVED) {
+                received += amount;
+                receivedCount++;
+            }
+            fees += fee;
+            if (time < firstTime) {
+                firstTime = time;
+                openingBalance = balanceBefore;
+            }
+            // Ties go to the later sequence number
+            if (time >= lastTime) {
+                lastTime = time;
+                closingBalance = balanceAfter;
+            }
+        }
+
+        // Folds in a bucket built from later sequence numbers
+        void merge(Bucket later) {
+            transferred += later.transferred;
+            received += later.received;
+            fees += later.fees;
+            transferCount += later.transferCount;
+            receivedCount += later.receivedCount;
+            if (later.firstTime < firstTime) {
+                firstTime = later.firstTime;
+                openingBalance = later.openingBalance;
+            }
+            if (later.lastTime >= lastTime) {
+                lastTime = later.lastTime;
+                closingBalance = later.closingBalance;
+            }
+        }
+
+        // Exact times are not kept in a point, so the day's bounds stand in for them
+        static Bucket of(RollupPoint point) {
+            Bucket bucket = new Bucket(point.getStart(), point.getEnd());
+            bucket.transferred = point.getTransferred();
+            bucket.received = point.getReceived();
+            bucket.fees = point.getFees();
+            bucket.transferCount = point.getTransferCount();
+            bucket.receivedCount = point.getReceivedCount();
+            bucket.firstTime = point.getStart();
+            bucket.openingBalance = point.getOpeningBalance();
+            bucket.lastTime = point.getEnd() - 1;
+            bucket.closingBalance = point.getClosingBalance();
+            return bucket;
+        }
+
+        RollupPoint toPoint() {
+            return new RollupPoint(start, end, transferred, received, fees,
+                    transferCount, receivedCount, openingBalance, closingBalance);
+        }
+    }
+
+    // Buckets for a range of rows, per granularity
+    private static final class Partial {
+        final Map<Granularity, Map<Long, Bucket>> buckets = new EnumMap<>(Granularity.class);
+
+        Partial() {
+            for (Granularity granularity : Granularity.values()) {
+                buckets.put(granularity, new HashMap<>());
+            }
+        }
+
+        static Partial compute(Columns columns, int from, int to) {
+            Partial partial = new Partial();
+            BucketClock clock = new BucketClock();
+            Granularity[] granularities = Granularity.values();
+            // Rows are mostly chronological, so consecutive rows usually share a bucket
+            Bucket[] current = new Bucket[granularities.length];
+
+            for (int row = from; row < to; row++) {
+                long time = columns.times[row];
+                if (time == Long.MIN_VALUE) continue;
+
+                for (int g = 0; g < granularities.length; g++) {
+                    Bucket bucket = current[g];
+                    if (bucket == null || time < bucket.start || time >= bucket.end) {
+                        long start = clock.startOf(granularities[g], time);
+                        Map<Long, Bucket> map = partial.buckets.get(granularities[g]);
+                        bucket = map.get(start);
+                        if (bucket == null) {
+                            bucket = new Bucket(start, clock.endOf(granularities[g]));
+                            map.put(start, bucket);
+                        }
+                        current[g] = bucket;
+                    }
+                    bucket.add(columns.types[row], time, columns.amounts[row], columns.fees[row],
+                            columns.balancesBefore[row], columns.balancesAfter[row]);
+                }
+            }
+            return partial;
+        }
+
+        // Folds in a partial built from later rows
+        void merge(Partial later) {
+            for (Granularity granularity : Granularity.values()) {
+                Map<Long, Bucket> map = buckets.get(granularity);
+                for (Bucket bucket : later.buckets.get(granularity).values()) {
+                    Bucket existing = map.get(bucket.start);
+                    if (existing == null) {
+                        map.put(bucket.start, bucket);
+                    } else {
+                        existing.merge(bucket);
+                    }
+                }
+            }
+        }
+    }
+
+    // Splits the row range in half until it is small enough to roll up directly.
+    // Rows are stored roughly in time order, so each leaf covers a time range.
+    private static final class RollupTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final Columns columns;
+        private final int from;
+        private final int to;
+
+        RollupTask(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return Partial.compute(columns, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RollupTask older = new RollupTask(columns, from, mid);
+            older.fork();
+            Partial later = new RollupTask(columns, mid, to).compute();
+            Partial result = older.join();
+            result.merge(later);
+            return result;
+        }
+    }
+
+    // Bucket boundaries in local time. Remembers the last range per
+    // granularity, since lookups mostly fall in the same bucket as before.
+    private static final class BucketClock {
+        private final Calendar calendar = Calendar.getInstance();
+        private final long[] starts = new long[Granularity.values().length];
+        private final long[] ends = new long[Granularity.values().length];
+
+        BucketClock() {
+            for (int i = 0; i < ends.length; i++) {
+                starts[i] = Long.MAX_VALUE;
+                ends[i] = Long.MIN_VALUE;
+            }
+        }
+
+        long startOf(Granularity granularity, long time) {
+            int i = granularity.ordinal();
+            if (time >= starts[i] && time < ends[i]) {
+                return starts[i];
+            }
+
+            calendar.setTimeInMillis(time);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            switch (granularity) {
+                case WEEKLY:
+                    int daysIntoWeek = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+                    calendar.add(Calendar.DAY_OF_MONTH, -daysIntoWeek);
+                    break;
+                case MONTHLY:
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    break;
+                default:
+                    break;
+            }
+            starts[i] = calendar.getTimeInMillis();
+
+            switch (granularity) {
+                case DAILY:
+                    calendar.add(Calendar.DAY_OF_MONTH, 1);
+                    break;
+                case WEEKLY:
+                    calendar.add(Calendar.WEEK_OF_YEAR, 1);
+                    break;
+                case MONTHLY:
+                    calendar.add(Calendar.MONTH, 1);
+                    break;
+            }
+            ends[i] = calendar.getTimeInMillis();
+            return starts[i];
+        }
+
+        // End of the bucket returned by the last startOf() for this granularity
+        long endOf(Granularity granularity) {
+            return ends[granularity.ordinal()];
+        }
+    }
+}
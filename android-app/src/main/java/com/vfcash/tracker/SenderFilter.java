@@ -0,0 +1,118 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Decides from the sender address alone whether an SMS is worth parsing, so
+// OTPs, marketing and personal messages never reach SmsParser's regexes.
+// Trusted sender IDs are kept normalised (letters and digits only, lower
+// case) in an immutable set that is swapped on change, so the check is one
+// hash lookup on a short string and needs no lock.
+//
+// A fresh install trusts DEFAULT_SENDERS only. Learning mode, which parses
+// unknown senders too and trusts the sender of every message that parses,
+// is opt-in: with it on, any SMS worded like a VF-Cash message can add its
+// sender. Messages from senders not yet trusted are kept in RawSmsLog by
+// SmsReceiver, so trusting a sender later recovers them (see SmsReparseJob).
+public class SenderFilter {
+    private static final String TAG = "SenderFilter";
+    private static final String PREFS_NAME = "vfcash_senders";
+    private static final String KEY_SENDERS = "trusted_senders";
+    private static final String KEY_LEARNING = "learning";
+
+    // Sender IDs Vodafone Cash messages are known to come from
+    static final Set<String> DEFAULT_SENDERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "VF-Cash", "VodafoneCash", "Vodafone")));
+
+    private static SenderFilter instance;
+
+    private final SharedPreferences prefs;
+    private volatile Set<String> trusted;
+    private volatile boolean learning;
+
+    private SenderFilter(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        trusted = normalise(prefs.getStringSet(KEY_SENDERS, DEFAULT_SENDERS));
+        learning = prefs.getBoolean(KEY_LEARNING, false);
+    }
+
+    public static synchronized SenderFilter getInstance(Context context) {
+        if (instance == null) {
+            instance = new SenderFilter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // True if the message should go on to SmsParser
+    public boolean shouldParse(String sender) {
+        return learning || isTrusted(sender);
+    }
+
+    public boolean isTrusted(String sender) {
+        return sender != null && trusted.contains(normalise(sender));
+    }
+
+    // Called with the sender of a message that parsed; only has an effect in learning mode
+    public void onParsed(String sender) {
+        if (!learning || sender == null) return;
+        synchronized (this) {
+            if (!isTrusted(sender)) {
+                Set<String> updated = new HashSet<>(trusted);
+                updated.add(normalise(sender));
+                save(Collections.unmodifiableSet(updated));
+                Log.d(TAG, "Learned VF-Cash sender: " + sender);
+            }
+        }
+    }
+
+    // Normalised IDs
+    public Set<String> getTrustedSenders() {
+        return trusted;
+    }
+
+    public synchronized void setTrustedSenders(Collection<String> senders) {
+        save(normalise(senders));
+    }
+
+    public boolean isLearning() {
+        return learning;
+    }
+
+    public void setLearning(boolean learning) {
+        this.learning = learning;
+        prefs.edit().putBoolean(KEY_LEARNING, learning).apply();
+    }
+
+    private void save(Set<String> senders) {
+        trusted = senders;
+        prefs.edit().putStringSet(KEY_SENDERS, new HashSet<>(senders)).apply();
+    }
+
+    private static Set<String> normalise(Collection<String> senders) {
+        Set<String> normalised = new HashSet<>();
+        for (String sender : senders) {
+            String id = normalise(sender);
+            if (!id.isEmpty()) normalised.add(id);
+        }
+        return Collections.unmodifiableSet(normalised);
+    }
+
+    // "VF-Cash", "vf cash" and "VFCASH" are the same sender
+    static String normalise(String sender) {
+        StringBuilder id = new StringBuilder(sender.length());
+        for (int i = 0; i < sender.length(); i++) {
+            char c = sender.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                id.append(Character.toLowerCase(c));
+            }
+        }
+        return id.toString();
+    }
+}
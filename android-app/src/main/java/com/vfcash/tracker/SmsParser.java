@@ -9,7 +9,15 @@ import java.util.regex.Pattern;
 
 public class SmsParser {
     
-    // Patterns for different types of VF-Cash messages
+    // Bump whenever the parsing code changes, so SmsReparseJob replays the
+    // whole raw SMS log through it. Template changes are covered by getVersion().
+    public static final int VERSION = 2;
+    
+    // Installed by SmsTemplates once the template file has compiled; until
+    // then (or if it never does) the two built-in patterns below are used
+    private static volatile SmsTemplateEngine templates;
+    
+    // Built-in patterns for the English transfer and receive messages
     private static final Pattern TRANSFER_PATTERN = Pattern.compile(
         "EGP\\s+(\\d+(?:\\.\\d+)?)\\s+has been transferred to number\\s+(\\d+).*?" +
         "Service fees are\\s+(\\d+(?:\\.\\d+)?)\\s+EGP.*?" +
@@ -115,7 +123,28 @@ public class SmsParser {
         }
     }
 
+    static void setTemplates(SmsTemplateEngine engine) {
+        templates = engine;
+    }
+    
+    // What SmsReparseJob compares: changes with VERSION and with the loaded templates
+    public static int getVersion() {
+        SmsTemplateEngine engine = templates;
+        return engine != null ? 31 * VERSION + engine.getRevision() : VERSION;
+    }
+
     public static Transaction parseSmsMessage(String smsText) throws ParseException {
+        return parseSmsMessage(smsText, System.currentTimeMillis());
+    }
+
+    // Messages that carry no date of their own are dated `receivedAt`
+    public static Transaction parseSmsMessage(String smsText, long receivedAt) throws ParseException {
+        SmsTemplateEngine engine = templates;
+        if (engine != null) {
+            // One pass over the message for every template
+            return engine.parse(smsText, receivedAt);
+        }
+        
         // Check if it's a VF-Cash message
         if (!isVfCashMessage(smsText)) {
             throw new ParseException("Not a VF-Cash message", 0);
@@ -123,7 +152,9 @@ public class SmsParser {
         
         // Try to parse as transfer message first
         try {
-            return parseTransferMessage(smsText);
+            Transaction transaction = parseTransferMessage(smsText);
+            transaction.setDate(new Date(receivedAt));
+            return transaction;
         } catch (ParseException e) {
             // If transfer parsing fails, try received message
             try {
@@ -142,6 +173,19 @@ public class SmsParser {
                 (lowerText.contains("transferred") || lowerText.contains("received")));
     }
 
+    // Worth keeping in RawSmsLog when it fails to parse: anything that looks
+    // like it came from Vodafone Cash or mentions an EGP amount, even in a
+    // wording no template knows yet
+    public static boolean isCandidateMessage(String smsText) {
+        if (smsText == null) return false;
+        String lowerText = smsText.toLowerCase();
+        return isVfCashMessage(smsText) ||
+               lowerText.contains("vodafone") ||
+               lowerText.contains("egp") ||
+               lowerText.contains("فودافون") || // Vodafone
+               lowerText.contains("جنيه"); // pound
+    }
+
     // Utility method to validate phone number format
     public static boolean isValidPhoneNumber(String phoneNumber) {
         return phoneNumber != null && 
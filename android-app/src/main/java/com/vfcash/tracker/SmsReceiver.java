@@ -4,20 +4,35 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.telephony.SmsMessage;
+import android.telephony.SubscriptionManager;
 import android.util.Log;
 import android.widget.Toast;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SmsReceiver extends BroadcastReceiver {
     
     private static final String TAG = "SmsReceiver";
     private static final String SMS_RECEIVED = "android.provider.Telephony.SMS_RECEIVED";
 
+    // Parsing and handing rows to IngestQueue happen off the main thread; the
+    // broadcast is kept alive with goAsync() until every row is on disk, or
+    // its SMS is in RawSmsLog if the row could not be saved
+    private static final ExecutorService PARSE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
     @Override
     public void onReceive(Context context, Intent intent) {
         if (SMS_RECEIVED.equals(intent.getAction())) {
+            long receivedAt = IngestTracer.getInstance().begin();
             Bundle bundle = intent.getExtras();
             
             if (bundle != null) {
@@ -26,6 +41,15 @@ public class SmsReceiver extends BroadcastReceiver {
                     String format = bundle.getString("format");
                     
                     if (pdus != null) {
+                        String wallet = WalletRegistry.getInstance(context)
+                                .walletForSubscription(subscriptionId(intent));
+                        List<String> bodies = new ArrayList<>();
+                        List<String> senders = new ArrayList<>();
+                        List<Long> traces = new ArrayList<>();
+                        // VF-Cash-looking SMS from senders not trusted (yet)
+                        List<String> heldBodies = new ArrayList<>();
+                        List<String> heldSenders = new ArrayList<>();
+                        SenderFilter senderFilter = SenderFilter.getInstance(context);
                         for (Object pdu : pdus) {
                             SmsMessage smsMessage;
                             
@@ -37,16 +61,40 @@ public class SmsReceiver extends BroadcastReceiver {
                             }
                             
                             if (smsMessage != null) {
-                                String messageBody = smsMessage.getMessageBody();
                                 String sender = smsMessage.getOriginatingAddress();
+                                String messageBody = smsMessage.getMessageBody();
+                                // Unrelated SMS stop here, before any template runs. Ones
+                                // that look like VF-Cash are kept in case the sender is
+                                // real and only missing from the list.
+                                if (!senderFilter.shouldParse(sender)) {
+                                    if (SmsParser.isCandidateMessage(messageBody)) {
+                                        heldBodies.add(messageBody);
+                                        heldSenders.add(sender);
+                                    }
+                                    continue;
+                                }
+                                
+                                // One trace per PDU; later PDUs of a batch wait on
+                                // earlier ones, which shows up in their receive span
+                                long trace = IngestTracer.getInstance().newTrace();
+                                IngestTracer.getInstance().end(trace, IngestTracer.Stage.RECEIVE, receivedAt);
                                 
                                 Log.d(TAG, "SMS received from: " + sender);
                                 Log.d(TAG, "SMS body: " + messageBody);
-                                
-                                // Process VF-Cash messages
-                                processVfCashMessage(context, messageBody, sender);
+                                bodies.add(messageBody);
+                                senders.add(sender);
+                                traces.add(trace);
                             }
                         }
+                        
+                        if (!bodies.isEmpty() || !heldBodies.isEmpty()) {
+                            Context appContext = context.getApplicationContext();
+                            PendingResult result = goAsync();
+                            PARSE_EXECUTOR.execute(() -> {
+                                holdUntrusted(appContext, wallet, heldBodies, heldSenders);
+                                processMessages(appContext, wallet, bodies, senders, traces, receivedAt, result);
+                            });
+                        }
                     }
                 } catch (Exception e) {
                     Log.e(TAG, "Error processing SMS: " + e.getMessage(), e);
@@ -55,33 +103,109 @@ public class SmsReceiver extends BroadcastReceiver {
         }
     }
 
-    private void processVfCashMessage(Context context, String messageBody, String sender) {
+    // Runs on PARSE_EXECUTOR. Finishes the broadcast once every VF-Cash
+    // message in it has been committed (or immediately if there were none).
+    private void processMessages(Context context, String wallet, List<String> bodies, List<String> senders,
+                                 List<Long> traces, long receivedAt, PendingResult result) {
+        // Picks up an edited template file before this batch is parsed
+        SmsTemplates.getInstance(context).reloadIfChanged();
+        
+        // Starts at one so the broadcast cannot finish before every message was submitted
+        AtomicInteger outstanding = new AtomicInteger(1);
+        for (int i = 0; i < bodies.size(); i++) {
+            try {
+                processVfCashMessage(context, wallet, bodies.get(i), senders.get(i), traces.get(i),
+                        receivedAt, outstanding, result);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error processing SMS: " + e.getMessage(), e);
+            }
+        }
+        finishOne(outstanding, result);
+    }
+
+    // Runs on PARSE_EXECUTOR. SmsReparseJob inserts these once their sender is trusted.
+    private static void holdUntrusted(Context context, String wallet, List<String> bodies, List<String> senders) {
+        for (int i = 0; i < bodies.size(); i++) {
+            Log.d(TAG, "Keeping SMS from untrusted sender: " + senders.get(i));
+            RawSmsLog.getInstance(context).append(System.currentTimeMillis(), wallet, senders.get(i), bodies.get(i));
+        }
+    }
+
+    private static void finishOne(AtomicInteger outstanding, PendingResult result) {
+        if (outstanding.decrementAndGet() == 0) {
+            result.finish();
+        }
+    }
+
+    // Which SIM the SMS arrived on. The documented extra is API 29+; older
+    // dual-SIM builds use "subscription". Single-SIM devices send neither.
+    private static int subscriptionId(Intent intent) {
+        int subscriptionId = intent.getIntExtra(SubscriptionManager.EXTRA_SUBSCRIPTION_INDEX,
+                SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        if (subscriptionId == SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
+            subscriptionId = intent.getIntExtra("subscription", SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        }
+        return subscriptionId;
+    }
+
+    private void processVfCashMessage(Context context, String wallet, String messageBody, String sender,
+                                      long trace, long receivedAt, AtomicInteger outstanding, PendingResult result) {
+        IngestTracer tracer = IngestTracer.getInstance();
         try {
             // Parse the SMS message
-            Transaction transaction = SmsParser.parseSmsMessage(messageBody);
+            long start = tracer.begin();
+            Transaction transaction;
+            try {
+                transaction = SmsParser.parseSmsMessage(messageBody);
+            } finally {
+                tracer.end(trace, IngestTracer.Stage.PARSE, start);
+            }
             
             if (transaction != null) {
                 Log.d(TAG, "VF-Cash transaction parsed: " + transaction.toString());
+                SenderFilter.getInstance(context).onParsed(sender);
                 
-                // Save transaction to local storage
-                TransactionManager.getInstance(context).addTransaction(transaction);
-                
-                // Update daily/monthly limits
-                LimitsManager.getInstance(context).updateLimitsAfterTransaction(transaction);
-                
-                // Show notification to user
-                showTransactionNotification(context, transaction);
-                
-                // Optionally sync to web dashboard immediately
-                syncToWebDashboard(context, transaction);
+                // Save transaction to the wallet of the line it arrived on. IngestQueue
+                // batches it with others from the same burst and checks the limits.
+                outstanding.incrementAndGet();
+                IngestQueue.getInstance(context).submit(wallet, transaction, trace, new IngestQueue.Callback() {
+                    @Override
+                    public void onCommitted(Transaction committed) {
+                        // Toasts and AsyncTasks belong on the main thread
+                        MAIN_HANDLER.post(() -> {
+                            // Show notification to user
+                            long notifyStart = tracer.begin();
+                            showTransactionNotification(context, committed);
+                            tracer.end(trace, IngestTracer.Stage.NOTIFY, notifyStart);
+                            
+                            // Optionally sync to web dashboard immediately
+                            syncToWebDashboard(context, committed, trace, receivedAt);
+                        });
+                        finishOne(outstanding, result);
+                    }
+
+                    @Override
+                    public void onFailed(Transaction failed) {
+                        // Keep the SMS itself so SmsReparseJob can insert it on a later
+                        // start; it skips the row if the hot set did get saved after all
+                        Log.e(TAG, "Transaction " + failed.getId() + " could not be saved, keeping the SMS");
+                        RawSmsLog.getInstance(context).append(System.currentTimeMillis(), wallet, sender, messageBody);
+                        finishOne(outstanding, result);
+                    }
+                });
                 
             }
         } catch (ParseException e) {
             Log.d(TAG, "SMS not a VF-Cash message or parsing failed: " + e.getMessage());
-            // This is normal - not all SMS are VF-Cash messages
+            // This is normal - not all SMS are VF-Cash messages. Ones that look
+            // like they might be are kept for SmsReparseJob, in case the wording changed.
+            if (SmsParser.isCandidateMessage(messageBody)) {
+                RawSmsLog.getInstance(context).append(System.currentTimeMillis(), wallet, sender, messageBody);
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error processing VF-Cash message: " + e.getMessage(), e);
-            Toast.makeText(context, "Error processing VF-Cash transaction", Toast.LENGTH_SHORT).show();
+            MAIN_HANDLER.post(() ->
+                    Toast.makeText(context, "Error processing VF-Cash transaction", Toast.LENGTH_SHORT).show());
         }
     }
 
@@ -102,10 +226,10 @@ public class SmsReceiver extends BroadcastReceiver {
         Toast.makeText(context, message, Toast.LENGTH_LONG).show();
     }
 
-    private void syncToWebDashboard(Context context, Transaction transaction) {
+    private void syncToWebDashboard(Context context, Transaction transaction, long trace, long receivedAt) {
         // This will be handled by the ApiClient in a background thread
         try {
-            ApiClient.getInstance(context).syncTransaction(transaction);
+            ApiClient.getInstance(context).syncTransaction(transaction, trace, receivedAt);
         } catch (Exception e) {
             Log.e(TAG, "Failed to sync transaction to web dashboard: " + e.getMessage(), e);
         }
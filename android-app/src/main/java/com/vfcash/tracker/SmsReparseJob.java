@@ -0,0 +1,169 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Replays RawSmsLog through the current SmsParser and inserts whatever now
+// parses, in date order, into the hot set or the archived month it belongs
+// to. Only records added since the last run are visited, unless
+// SmsParser.getVersion() changed (new code or new templates) or SenderFilter
+// now lets other senders through, in which case the whole log is replayed.
+//
+// Records that parse are compacted out of the log once their rows are
+// committed; the rest stay for the next parser update. So do records from
+// senders SenderFilter does not trust, until the user trusts them.
+//
+// Idempotent: a recovered row is skipped if its wallet already holds a row
+// with the same type, day, amount and resulting balance, so a replay after a
+// crash, or after a parser update, never inserts a transaction twice.
+// Blocking; run it off the main thread.
+public class SmsReparseJob {
+    private static final String TAG = "SmsReparseJob";
+    private static final String PREFS_NAME = "vfcash_raw_sms";
+    private static final String KEY_PARSER_VERSION = "parser_version";
+    private static final String KEY_RESUME_OFFSET = "resume_offset";
+    private static final String KEY_PARSER_STAMP = "parser_stamp";
+    private static final String KEY_SENDERS = "senders";
+
+    private final Context context;
+    private final SharedPreferences prefs;
+
+    public SmsReparseJob(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // True if a run could recover anything: records arrived since the last
+    // run, or the app, its template file or the trusted senders changed since
+    // then and the log still holds records. Cheap enough for onCreate: it
+    // stats two files and reads the log's header, without compiling
+    // templates for getVersion().
+    public boolean hasWork() {
+        RawSmsLog log = RawSmsLog.getInstance(context);
+        if (prefs.getLong(KEY_PARSER_STAMP, -1) != parserStamp()
+                || prefs.getInt(KEY_SENDERS, 0) != sendersKey()) {
+            return log.hasRecordsAfter(0);
+        }
+        return log.hasRecordsAfter(prefs.getLong(KEY_RESUME_OFFSET, 0));
+    }
+
+    // Returns the number of transactions recovered
+    public int run() {
+        long start = System.nanoTime();
+        SmsTemplates.getInstance(context).reloadIfChanged();
+        int version = SmsParser.getVersion();
+        boolean newParser = prefs.getInt(KEY_PARSER_VERSION, 0) != version;
+        int senders = sendersKey();
+        boolean newSenders = prefs.getInt(KEY_SENDERS, 0) != senders;
+        long from = newParser || newSenders ? 0 : prefs.getLong(KEY_RESUME_OFFSET, 0);
+        SenderFilter senderFilter = SenderFilter.getInstance(context);
+
+        RawSmsLog log = RawSmsLog.getInstance(context);
+        Map<String, List<Transaction>> recovered = new LinkedHashMap<>();
+        Set<Long> parsedOffsets = new HashSet<>();
+        int[] scanned = new int[1];
+        long resume = log.scan(from, (offset, receivedAt, wallet, sender, body) -> {
+            scanned[0]++;
+            if (!senderFilter.shouldParse(sender)) {
+                return; // kept until the sender is trusted
+            }
+            Transaction transaction;
+            try {
+                // Messages without a date of their own are dated when they arrived
+                transaction = SmsParser.parseSmsMessage(body, receivedAt);
+            } catch (ParseException e) {
+                return; // still not understood
+            }
+            List<Transaction> rows = recovered.get(wallet);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                recovered.put(wallet, rows);
+            }
+            rows.add(transaction);
+            parsedOffsets.add(offset);
+        });
+
+        int inserted = 0;
+        for (Map.Entry<String, List<Transaction>> entry : recovered.entrySet()) {
+            TransactionManager transactionManager = TransactionManager.getInstance(context, entry.getKey());
+            // Keys of the rows already stored on each day a recovered row falls on
+            Map<Integer, Set<String>> storedByDay = new HashMap<>();
+            List<Transaction> fresh = new ArrayList<>();
+            for (Transaction transaction : entry.getValue()) {
+                int day = dayKey(transaction.getDate());
+                Set<String> stored = storedByDay.get(day);
+                if (stored == null) {
+                    stored = new HashSet<>();
+                    for (Transaction other : transactionManager.getTransactionsForDate(transaction.getDate())) {
+                        stored.add(identity(other));
+                    }
+                    storedByDay.put(day, stored);
+                }
+                if (stored.add(identity(transaction))) {
+                    fresh.add(transaction);
+                }
+            }
+            // commitPending() covers rows found only in memory, e.g. ones a
+            // failed ingest left unsaved; their records must not be compacted
+            // away before the rows are on disk
+            if (!transactionManager.addRecoveredTransactions(fresh) || !transactionManager.commitPending()) {
+                // Leave the resume offset where it was so the next run retries
+                Log.e(TAG, "Could not commit recovered transactions for wallet " + entry.getKey());
+                return inserted;
+            }
+            inserted += fresh.size();
+        }
+
+        prefs.edit()
+                .putInt(KEY_PARSER_VERSION, version)
+                .putLong(KEY_PARSER_STAMP, parserStamp())
+                .putInt(KEY_SENDERS, senders)
+                .putLong(KEY_RESUME_OFFSET, resume)
+                .apply();
+        // Every row these records hold is stored now, inserted or found as a duplicate
+        log.compact(parsedOffsets);
+        Log.d(TAG, "Replayed " + scanned[0] + " raw SMS in " + (System.nanoTime() - start) / 1000000 +
+                " ms, recovered " + inserted);
+        return inserted;
+    }
+
+    // Moves whenever getVersion() can: an app update may ship new parser code
+    // or templates, and the override file replaces templates in place
+    private long parserStamp() {
+        long installed = new File(context.getApplicationInfo().sourceDir).lastModified();
+        return 31 * installed + SmsTemplates.overrideStamp(context);
+    }
+
+    // Changes whenever SenderFilter lets a different set of senders through
+    private int sendersKey() {
+        SenderFilter senderFilter = SenderFilter.getInstance(context);
+        return 31 * senderFilter.getTrustedSenders().hashCode() + (senderFilter.isLearning() ? 1 : 0);
+    }
+
+    // Type, day, amount and resulting balance: two real transactions never
+    // share all four, since the balance moves with each one
+    private static String identity(Transaction transaction) {
+        return transaction.getType() + "|" + dayKey(transaction.getDate()) + "|" +
+                Math.round(transaction.getAmount() * 100) + "|" + Math.round(transaction.getBalanceAfter() * 100);
+    }
+
+    private static int dayKey(Date date) {
+        if (date == null) return 0;
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return MainScreenState.dayKey(calendar);
+    }
+}
@@ -0,0 +1,670 @@
+package com.vfcash.tracker;
+
+import android.util.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Matches SMS against data-defined templates (see SmsTemplates). A template's
+// pattern is a sequence of:
+//   words, numbers and punctuation   matched as tokens, ignoring case, spacing
+//                                    and Arabic letter variants
+//   {field}   one typed value: {amount}, {fees} and {balance} are numbers,
+//             {phone} and {reference} digit strings, {date} like 12/05/24,
+//             {time} like 14:30, and {name} free text up to the next literal
+//   ...       any run of tokens
+//   [ ]       an optional part (not nested)
+//
+// All templates are compiled into one automaton: a trie of their token
+// sequences in which "..." and {name} are self-looping states, run as an NFA
+// over the message's tokens. Templates sharing a prefix share its states, and
+// from the start state the next token costs one hash lookup however many
+// templates there are, so a message costs about the same with fifty templates
+// as with two. When several templates match, the one listed first wins.
+// Immutable and safe to share between threads.
+public class SmsTemplateEngine {
+    private static final String TAG = "SmsTemplateEngine";
+
+    // An optional part doubles a template's token sequences
+    private static final int MAX_OPTIONAL_PARTS = 4;
+
+    // Token kinds
+    private static final byte WORD = 0;
+    private static final byte PUNCT = 1;
+    private static final byte DIGITS = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte DATE = 4;
+    private static final byte TIME = 5;
+
+    enum Field {
+        AMOUNT("amount"),
+        FEES("fees"),
+        BALANCE("balance"),
+        PHONE("phone"),
+        REFERENCE("reference"),
+        DATE("date"),
+        TIME("time"),
+        NAME("name");
+
+        final String name;
+
+        Field(String name) {
+            this.name = name;
+        }
+
+        boolean accepts(byte kind) {
+            switch (this) {
+                case AMOUNT:
+                case FEES:
+                case BALANCE:
+                    return kind == DIGITS || kind == DECIMAL;
+                case PHONE:
+                case REFERENCE:
+                    return kind == DIGITS;
+                case DATE:
+                    return kind == SmsTemplateEngine.DATE;
+                case TIME:
+                    return kind == SmsTemplateEngine.TIME;
+                default:
+                    return true;
+            }
+        }
+
+        static Field fromName(String name) {
+            for (Field field : values()) {
+                if (field.name.equals(name)) return field;
+            }
+            return null;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    // One entry of sms_templates.json
+    public static class Template {
+        String name;
+        String type;
+        String pattern;
+        // Applied to "{date} {time}", or to "{date}" alone
+        String dateFormat;
+
+        public Template() {}
+
+        public Template(String name, String type, String pattern, String dateFormat) {
+            this.name = name;
+            this.type = type;
+            this.pattern = pattern;
+            this.dateFormat = dateFormat;
+        }
+
+        public String getName() { return name; }
+    }
+
+    private final State root;
+    private final int stateCount;
+    private final Rule[] rules;
+    private final int revision;
+
+    private SmsTemplateEngine(State root, int stateCount, Rule[] rules, int revision) {
+        this.root = root;
+        this.stateCount = stateCount;
+        this.rules = rules;
+        this.revision = revision;
+    }
+
+    // Templates that do not compile are logged and left out. `revision`
+    // identifies the template source, for SmsParser.getVersion().
+    public static SmsTemplateEngine compile(List<Template> templates, int revision) {
+        Builder builder = new Builder();
+        List<Rule> rules = new ArrayList<>();
+        for (Template template : templates) {
+            try {
+                Rule rule = Rule.of(template);
+                for (List<Step> sequence : expand(template.pattern)) {
+                    builder.insert(sequence, rules.size());
+                }
+                rules.add(rule);
+            } catch (ParseException e) {
+                Log.w(TAG, "Skipping SMS template " + template.name + ": " + e.getMessage());
+            }
+        }
+        builder.finish(builder.root);
+        return new SmsTemplateEngine(builder.root, builder.stateCount, rules.toArray(new Rule[0]), revision);
+    }
+
+    public int getTemplateCount() {
+        return rules.length;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    // Messages whose template has no {date} are dated `receivedAt`
+    public Transaction parse(String smsText, long receivedAt) throws ParseException {
+        Tokens tokens = tokenize(smsText);
+        Run run = new Run(tokens, stateCount);
+        run.start(root);
+        for (int i = 0; i < tokens.count && !run.isEmpty(); i++) {
+            run.step(i);
+        }
+        if (run.bestRule < 0) {
+            throw new ParseException("No SMS template matches the message", 0);
+        }
+        return rules[run.bestRule].build(tokens, run.bestCaptures, receivedAt);
+    }
+
+    // ---- Matching ----
+
+    private static final class State {
+        final int id;
+        final Map<String, State> literals = new HashMap<>();
+        final State[] fields = new State[FIELDS.length];
+        boolean hasFields;
+        // Entered without consuming a token, for "..."
+        State gap;
+        // Consumes any token and stays; for {name} the token is added to the field
+        boolean loops;
+        Field capture;
+        int rule = -1;
+        // Lowest rule reachable from here, this state included
+        int minRule = Integer.MAX_VALUE;
+
+        State(int id) {
+            this.id = id;
+        }
+    }
+
+    // One pass of the automaton over a message. Branches (a state plus what
+    // it has captured) are kept in priority order, and a state only ever holds
+    // the first branch to reach it in a step, so the active set never grows
+    // past the number of states. Once a template matched, branches that can
+    // only lead to templates listed after it are dropped.
+    private static final class Run {
+        final Tokens tokens;
+        final int[] seen;
+        int mark = 1;
+        State[] states = new State[16];
+        // Per field: first and last token index, -1 if not captured
+        int[][] captures = new int[16][];
+        int size;
+        State[] nextStates = new State[16];
+        int[][] nextCaptures = new int[16][];
+        int nextSize;
+        int bestRule = -1;
+        int[] bestCaptures;
+
+        Run(Tokens tokens, int stateCount) {
+            this.tokens = tokens;
+            this.seen = new int[stateCount];
+        }
+
+        void start(State root) {
+            int[] none = new int[FIELDS.length * 2];
+            Arrays.fill(none, -1);
+            add(root, none);
+            swap();
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Literal first, then typed fields, then staying in a loop: a gap
+        // gives up tokens as early as it can
+        void step(int token) {
+            String key = tokens.keys[token];
+            byte kind = tokens.kinds[token];
+            for (int i = 0; i < size; i++) {
+                State state = states[i];
+                int[] branch = captures[i];
+                State target = state.literals.get(key);
+                if (target != null) {
+                    add(target, branch);
+                }
+                if (state.hasFields) {
+                    for (int f = 0; f < FIELDS.length; f++) {
+                        target = state.fields[f];
+                        if (target != null && FIELDS[f].accepts(kind)) {
+                            add(target, capture(branch, f, token, token));
+                        }
+                    }
+                }
+                if (state.loops) {
+                    if (state.capture != null) {
+                        int f = state.capture.ordinal();
+                        branch = capture(branch, f, branch[f * 2], token);
+                    }
+                    add(state, branch);
+                }
+            }
+            swap();
+        }
+
+        void add(State state, int[] branch) {
+            if (seen[state.id] == mark) return;
+            seen[state.id] = mark;
+            if (state.rule >= 0 && (bestRule < 0 || state.rule < bestRule)) {
+                bestRule = state.rule;
+                bestCaptures = branch;
+            }
+            if (bestRule >= 0 && state.minRule >= bestRule) return;
+            if (nextSize == nextStates.length) {
+                nextStates = Arrays.copyOf(nextStates, nextSize * 2);
+                nextCaptures = Arrays.copyOf(nextCaptures, nextSize * 2);
+            }
+            nextStates[nextSize] = state;
+            nextCaptures[nextSize] = branch;
+            nextSize++;
+            if (state.gap != null) {
+                add(state.gap, branch);
+            }
+        }
+
+        void swap() {
+            State[] doneStates = states;
+            int[][] doneCaptures = captures;
+            states = nextStates;
+            captures = nextCaptures;
+            size = nextSize;
+            nextStates = doneStates;
+            nextCaptures = doneCaptures;
+            nextSize = 0;
+            mark++;
+        }
+
+        static int[] capture(int[] branch, int field, int first, int last) {
+            int[] copy = branch.clone();
+            copy[field * 2] = first;
+            copy[field * 2 + 1] = last;
+            return copy;
+        }
+    }
+
+    // ---- Compiling ----
+
+    private static final byte STEP_LITERAL = 0;
+    private static final byte STEP_FIELD = 1;
+    private static final byte STEP_GAP = 2;
+    private static final byte STEP_OPEN = 3;
+    private static final byte STEP_CLOSE = 4;
+
+    private static final class Step {
+        final byte kind;
+        final String literal;
+        final Field field;
+
+        Step(byte kind, String literal, Field field) {
+            this.kind = kind;
+            this.literal = literal;
+            this.field = field;
+        }
+    }
+
+    private static final class Builder {
+        final State root;
+        int stateCount;
+
+        Builder() {
+            root = newState();
+            // Unanchored: a template may start anywhere in the message
+            root.loops = true;
+        }
+
+        State newState() {
+            return new State(stateCount++);
+        }
+
+        void insert(List<Step> sequence, int rule) {
+            State state = root;
+            for (Step step : sequence) {
+                if (step.kind == STEP_LITERAL) {
+                    State target = state.literals.get(step.literal);
+                    if (target == null) {
+                        target = newState();
+                        state.literals.put(step.literal, target);
+                    }
+                    state = target;
+                } else if (step.kind == STEP_FIELD) {
+                    int f = step.field.ordinal();
+                    if (state.fields[f] == null) {
+                        State target = newState();
+                        if (step.field == Field.NAME) {
+                            target.loops = true;
+                            target.capture = Field.NAME;
+                        }
+                        state.fields[f] = target;
+                        state.hasFields = true;
+                    }
+                    state = state.fields[f];
+                } else if (!state.loops) {
+                    if (state.gap == null) {
+                        state.gap = newState();
+                        state.gap.loops = true;
+                    }
+                    state = state.gap;
+                }
+            }
+            // An identical earlier sequence keeps priority
+            if (state.rule < 0) {
+                state.rule = rule;
+            }
+        }
+
+        // Fills in minRule; apart from loops, which point back at the same
+        // state, the automaton is a tree
+        int finish(State state) {
+            int min = state.rule >= 0 ? state.rule : Integer.MAX_VALUE;
+            for (State target : state.literals.values()) {
+                min = Math.min(min, finish(target));
+            }
+            for (State target : state.fields) {
+                if (target != null) min = Math.min(min, finish(target));
+            }
+            if (state.gap != null) {
+                min = Math.min(min, finish(state.gap));
+            }
+            state.minRule = min;
+            return min;
+        }
+    }
+
+    // Every token sequence a pattern stands for, all optional parts present first
+    private static List<List<Step>> expand(String pattern) throws ParseException {
+        List<Step> steps = parsePattern(pattern);
+        int optionalParts = 0;
+        for (Step step : steps) {
+            if (step.kind == STEP_OPEN) optionalParts++;
+        }
+        if (optionalParts > MAX_OPTIONAL_PARTS) {
+            throw new ParseException("More than " + MAX_OPTIONAL_PARTS + " optional parts", 0);
+        }
+
+        List<List<Step>> sequences = new ArrayList<>();
+        // Bit i set leaves out optional part i
+        for (int omit = 0; omit < 1 << optionalParts; omit++) {
+            List<Step> sequence = new ArrayList<>();
+            int part = -1;
+            boolean skipping = false;
+            for (Step step : steps) {
+                if (step.kind == STEP_OPEN) {
+                    part++;
+                    skipping = (omit & (1 << part)) != 0;
+                } else if (step.kind == STEP_CLOSE) {
+                    skipping = false;
+                } else if (!skipping) {
+                    sequence.add(step);
+                }
+            }
+            validate(sequence);
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+
+    private static void validate(List<Step> sequence) throws ParseException {
+        boolean amount = false;
+        boolean balance = false;
+        for (int i = 0; i < sequence.size(); i++) {
+            Step step = sequence.get(i);
+            if (step.kind != STEP_FIELD) continue;
+            amount |= step.field == Field.AMOUNT;
+            balance |= step.field == Field.BALANCE;
+            // Free text needs a literal after it to know where it ends
+            if (step.field == Field.NAME &&
+                    (i + 1 == sequence.size() || sequence.get(i + 1).kind != STEP_LITERAL)) {
+                throw new ParseException("{name} must be followed by a word or punctuation", i);
+            }
+        }
+        if (!amount || !balance) {
+            throw new ParseException("Needs {amount} and {balance}", 0);
+        }
+    }
+
+    private static List<Step> parsePattern(String pattern) throws ParseException {
+        if (pattern == null) throw new ParseException("No pattern", 0);
+        List<Step> steps = new ArrayList<>();
+        boolean open = false;
+        int literalStart = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int special;
+            if (c == '{' || c == '[' || c == ']' || c == '…') {
+                special = 1;
+            } else if (pattern.startsWith("...", i)) {
+                special = 3;
+            } else {
+                i++;
+                continue;
+            }
+
+            addLiterals(steps, pattern.substring(literalStart, i));
+            if (c == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end < 0) throw new ParseException("Unclosed {", i);
+                Field field = Field.fromName(pattern.substring(i + 1, end).trim());
+                if (field == null) throw new ParseException("Unknown field " + pattern.substring(i, end + 1), i);
+                steps.add(new Step(STEP_FIELD, null, field));
+                i = end + 1;
+            } else if (c == '[') {
+                if (open) throw new ParseException("Nested [", i);
+                open = true;
+                steps.add(new Step(STEP_OPEN, null, null));
+                i++;
+            } else if (c == ']') {
+                if (!open) throw new ParseException("Unmatched ]", i);
+                open = false;
+                steps.add(new Step(STEP_CLOSE, null, null));
+                i++;
+            } else {
+                steps.add(new Step(STEP_GAP, null, null));
+                i += special;
+            }
+            literalStart = i;
+        }
+        if (open) throw new ParseException("Unclosed [", pattern.length());
+        addLiterals(steps, pattern.substring(literalStart));
+        return steps;
+    }
+
+    private static void addLiterals(List<Step> steps, String text) {
+        Tokens tokens = tokenize(text);
+        for (int i = 0; i < tokens.count; i++) {
+            steps.add(new Step(STEP_LITERAL, tokens.keys[i], null));
+        }
+    }
+
+    // ---- Tokens ----
+
+    // Parallel arrays; keys are case-folded words, single punctuation marks,
+    // or numbers with ASCII digits and no thousands separators
+    static final class Tokens {
+        final String text;
+        String[] keys = new String[32];
+        byte[] kinds = new byte[32];
+        int[] starts = new int[32];
+        int[] ends = new int[32];
+        int count;
+
+        Tokens(String text) {
+            this.text = text;
+        }
+
+        void add(String key, byte kind, int start, int end) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                kinds = Arrays.copyOf(kinds, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            keys[count] = key;
+            kinds[count] = kind;
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+
+    static Tokens tokenize(String text) {
+        Tokens tokens = new Tokens(text);
+        StringBuilder key = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            key.setLength(0);
+            byte kind;
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                i++;
+                continue;
+            } else if (Character.isDigit(c)) {
+                kind = DIGITS;
+                while (i < length) {
+                    char d = text.charAt(i);
+                    if (Character.isDigit(d)) {
+                        key.append((char) ('0' + Character.digit(d, 10)));
+                    } else if (i + 1 == length || !Character.isDigit(text.charAt(i + 1))) {
+                        // A separator only belongs to the number if a digit follows
+                        break;
+                    } else if ((d == '.' || d == '٫') && kind == DIGITS) {
+                        key.append('.');
+                        kind = DECIMAL;
+                    } else if (d == ',' || d == '٬') {
+                        // Thousands separator
+                    } else if (d == '/' && (kind == DIGITS || kind == DATE)) {
+                        key.append('/');
+                        kind = DATE;
+                    } else if (d == ':' && (kind == DIGITS || kind == TIME)) {
+                        key.append(':');
+                        kind = TIME;
+                    } else {
+                        break;
+                    }
+                    i++;
+                }
+            } else if (Character.isLetter(c)) {
+                kind = WORD;
+                while (i < length) {
+                    char d = text.charAt(i);
+                    if (Character.isLetter(d)) {
+                        key.append(fold(d));
+                    } else if (Character.getType(d) != Character.NON_SPACING_MARK && d != 'ـ') {
+                        // Arabic diacritics and tatweel are part of the word but not the key
+                        break;
+                    }
+                    i++;
+                }
+            } else {
+                kind = PUNCT;
+                key.append(c);
+                i++;
+            }
+            tokens.add(key.toString(), kind, start, i);
+        }
+        return tokens;
+    }
+
+    // Lower case, and the Arabic letters that are often written interchangeably folded together
+    private static char fold(char c) {
+        switch (c) {
+            case 'أ': // alef with hamza above
+            case 'إ': // alef with hamza below
+            case 'آ': // alef with madda
+                return 'ا';
+            case 'ى': // alef maksura
+                return 'ي';
+            case 'ة': // teh marbuta
+                return 'ه';
+            default:
+                return Character.toLowerCase(c);
+        }
+    }
+
+    // ---- Building transactions ----
+
+    private static final class Rule {
+        final String name;
+        final TransactionType type;
+        final String dateFormat;
+
+        private Rule(String name, TransactionType type, String dateFormat) {
+            this.name = name;
+            this.type = type;
+            this.dateFormat = dateFormat;
+        }
+
+        static Rule of(Template template) throws ParseException {
+            TransactionType type = TransactionType.fromName(template.type);
+            if (type == null) throw new ParseException("Unknown type " + template.type, 0);
+            String dateFormat = template.dateFormat;
+            if (dateFormat != null) {
+                try {
+                    new SimpleDateFormat(dateFormat, Locale.US);
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("Bad dateFormat " + dateFormat, 0);
+                }
+            }
+            return new Rule(template.name, type, dateFormat);
+        }
+
+        Transaction build(Tokens tokens, int[] captures, long receivedAt) throws ParseException {
+            try {
+                Transaction transaction = new Transaction();
+                transaction.setTransactionType(type);
+
+                double amount = Double.parseDouble(value(tokens, captures, Field.AMOUNT));
+                double balanceAfter = Double.parseDouble(value(tokens, captures, Field.BALANCE));
+                String fees = value(tokens, captures, Field.FEES);
+                double serviceFees = fees != null ? Double.parseDouble(fees) : 0;
+                transaction.setAmount(amount);
+                transaction.setServiceFees(serviceFees);
+                transaction.setBalanceAfter(balanceAfter);
+                transaction.setBalanceBefore(type == TransactionType.TRANSFER
+                        ? balanceAfter + amount + serviceFees
+                        : balanceAfter - amount);
+
+                transaction.setPhoneNumber(value(tokens, captures, Field.PHONE));
+                String senderName = value(tokens, captures, Field.NAME);
+                if (senderName != null) {
+                    transaction.setSenderName(senderName.trim());
+                }
+                transaction.setTransactionNumber(value(tokens, captures, Field.REFERENCE));
+
+                String date = value(tokens, captures, Field.DATE);
+                String time = value(tokens, captures, Field.TIME);
+                if (date != null) {
+                    String format = dateFormat != null ? dateFormat : time != null ? "MM/dd/yy HH:mm" : "MM/dd/yy";
+                    transaction.setDate(new SimpleDateFormat(format, Locale.US)
+                            .parse(time != null ? date + " " + time : date));
+                } else {
+                    transaction.setDate(new Date(receivedAt));
+                }
+                return transaction;
+            } catch (NumberFormatException | ParseException e) {
+                throw new ParseException("Error parsing values for template " + name + ": " + e.getMessage(), 0);
+            }
+        }
+
+        // Numbers come from the normalised key, text from the message itself
+        private static String value(Tokens tokens, int[] captures, Field field) {
+            int first = captures[field.ordinal() * 2];
+            if (first < 0) return null;
+            if (field != Field.NAME) return tokens.keys[first];
+            int last = captures[field.ordinal() * 2 + 1];
+            return tokens.text.substring(tokens.starts[first], tokens.ends[last]);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Where SmsParser's templates come from: the ones shipped in
+// assets/sms_templates.json, plus an optional sms_templates.json in the app's
+// private files directory. Templates in that file replace shipped ones of
+// the same name and are tried before the rest, so a new wording can be
+// supported by replacing a file rather than updating the app. The file
+// decides how financial SMS become transactions, so it is never read from
+// shared storage, where other apps could write it.
+//
+// The file's modification time is checked once per SMS broadcast and the
+// templates are recompiled when it changed. A file that does not load leaves
+// the shipped templates in place.
+public class SmsTemplates {
+    private static final String TAG = "SmsTemplates";
+    private static final String FILE_NAME = "sms_templates.json";
+
+    private static class TemplateFile {
+        List<SmsTemplateEngine.Template> templates;
+    }
+
+    private static SmsTemplates instance;
+
+    private final Context context;
+    private final File overrideFile;
+    // Modification time of the override file when last loaded, 0 if there was none
+    private long loadedStamp = -1;
+    private SmsTemplateEngine engine;
+
+    private SmsTemplates(Context context) {
+        this.context = context;
+        overrideFile = overrideFile(context);
+    }
+
+    private static File overrideFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    // Modification time of the override file, 0 if there is none. Tells
+    // whether the templates may have changed without compiling them.
+    public static long overrideStamp(Context context) {
+        File file = overrideFile(context);
+        return file.exists() ? file.lastModified() : 0;
+    }
+
+    public static synchronized SmsTemplates getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsTemplates(context.getApplicationContext());
+            instance.reloadIfChanged();
+        }
+        return instance;
+    }
+
+    // True if the templates were recompiled
+    public synchronized boolean reloadIfChanged() {
+        long stamp = overrideFile.exists() ? overrideFile.lastModified() : 0;
+        if (stamp == loadedStamp) return false;
+        loadedStamp = stamp;
+        load();
+        return true;
+    }
+
+    // Null until a template set has compiled
+    public synchronized SmsTemplateEngine getEngine() {
+        return engine;
+    }
+
+    public File getOverrideFile() {
+        return overrideFile;
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        String shipped = readAsset();
+        String override = overrideFile.exists() ? readFile(overrideFile) : null;
+
+        // Overrides first, so they are tried first and replace same-named shipped ones
+        Map<String, SmsTemplateEngine.Template> byName = new LinkedHashMap<>();
+        for (SmsTemplateEngine.Template template : parse(override, overrideFile.getPath())) {
+            byName.put(template.getName(), template);
+        }
+        for (SmsTemplateEngine.Template template : parse(shipped, FILE_NAME)) {
+            if (!byName.containsKey(template.getName())) {
+                byName.put(template.getName(), template);
+            }
+        }
+
+        int revision = (shipped + "\n" + override).hashCode();
+        SmsTemplateEngine compiled = SmsTemplateEngine.compile(new ArrayList<>(byName.values()), revision);
+        if (compiled.getTemplateCount() == 0) {
+            // SmsParser keeps whatever it had, or its built-in patterns
+            Log.e(TAG, "No SMS templates compiled; keeping the previous set");
+            return;
+        }
+        engine = compiled;
+        SmsParser.setTemplates(compiled);
+        Log.d(TAG, "Compiled " + compiled.getTemplateCount() + " SMS templates into " +
+                compiled.getStateCount() + " states in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    static List<SmsTemplateEngine.Template> parse(String json, String source) {
+        if (json == null) return Collections.emptyList();
+        try {
+            TemplateFile file = JsonCodec.gson().fromJson(json, TemplateFile.class);
+            if (file != null && file.templates != null) {
+                return file.templates;
+            }
+        } catch (JsonParseException e) {
+            Log.e(TAG, "Could not parse " + source, e);
+        }
+        return Collections.emptyList();
+    }
+
+    private String readAsset() {
+        try (InputStream in = context.getAssets().open(FILE_NAME)) {
+            return read(in);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read shipped SMS templates", e);
+            return null;
+        }
+    }
+
+    private static String readFile(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read " + file, e);
+            return null;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+package com.vfcash.tracker;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Process-wide timings for cold start: each singleton constructor, the
+// preference reads and JSON parses inside them, onCreate, and the time to
+// the first drawn frame. Like SyncMetrics, recording only touches
+// preallocated atomics so it can be called from any thread.
+public final class StartupTracer {
+    private static final String TAG = "StartupTracer";
+
+    // onCreate to first drawn frame; going over logs a warning with the breakdown
+    static final long FIRST_FRAME_BUDGET_MS = 500;
+
+    public enum Section {
+        ACTIVITY_CREATE("MainActivity.onCreate"),
+        TRANSACTION_MANAGER("TransactionManager init"),
+        TRANSACTIONS_PREFS("  transactions prefs read"),
+        TRANSACTIONS_JSON("  transactions JSON parse"),
+        ARCHIVE("  archive load and sealing"),
+        LIMITS_MANAGER("LimitsManager init"),
+        LIMITS_PREFS("  limits prefs read"),
+        API_CLIENT("ApiClient init"),
+        WARM_UP("Post-frame warm-up");
+
+        private final String label;
+
+        Section(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    private static final StartupTracer instance = new StartupTracer();
+
+    private final AtomicLongArray nanos = new AtomicLongArray(Section.values().length);
+    private final AtomicLongArray mainThreadNanos = new AtomicLongArray(Section.values().length);
+    private final AtomicLongArray counts = new AtomicLongArray(Section.values().length);
+    private final AtomicLong createStart = new AtomicLong();
+    private final AtomicLong firstFrameNanos = new AtomicLong(-1);
+
+    // Package-private so JVM tests can start from a fresh tracer
+    StartupTracer() {
+    }
+
+    public static StartupTracer getInstance() {
+        return instance;
+    }
+
+    // Start time to pass to end()
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    public void end(Section section, long start) {
+        long duration = System.nanoTime() - start;
+        int i = section.ordinal();
+        nanos.addAndGet(i, duration);
+        counts.incrementAndGet(i);
+        if (isMainThread()) {
+            mainThreadNanos.addAndGet(i, duration);
+        }
+    }
+
+    // Called at the top of MainActivity.onCreate; only the first activity counts
+    public long activityCreateStarted() {
+        long start = System.nanoTime();
+        createStart.compareAndSet(0, start);
+        return start;
+    }
+
+    // Called once the first frame has been drawn. Logs the breakdown, and
+    // warns if the main thread went over budget getting there.
+    public void firstFrameDrawn() {
+        long start = createStart.get();
+        if (start == 0 || !firstFrameNanos.compareAndSet(-1, System.nanoTime() - start)) return;
+
+        if (isOverBudget()) {
+            Log.w(TAG, "First frame took " + getFirstFrameMillis() + " ms, budget is " +
+                    FIRST_FRAME_BUDGET_MS + " ms\n" + format());
+        } else {
+            Log.d(TAG, format());
+        }
+    }
+
+    // -1 until the first frame has been drawn
+    public long getFirstFrameMillis() {
+        long frame = firstFrameNanos.get();
+        return frame < 0 ? -1 : frame / 1_000_000;
+    }
+
+    // Time a section spent on the main thread, across all its calls
+    public long getMainThreadMillis(Section section) {
+        return mainThreadNanos.get(section.ordinal()) / 1_000_000;
+    }
+
+    public boolean isOverBudget() {
+        return getFirstFrameMillis() > FIRST_FRAME_BUDGET_MS;
+    }
+
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        long frame = getFirstFrameMillis();
+        out.append("First frame: ").append(frame < 0 ? "not drawn yet" : frame + " ms")
+                .append(" (budget ").append(FIRST_FRAME_BUDGET_MS).append(" ms)\n");
+        for (Section section : Section.values()) {
+            int i = section.ordinal();
+            long count = counts.get(i);
+            if (count == 0) continue;
+            long onMain = mainThreadNanos.get(i);
+            out.append(String.format(Locale.US, "%s: %.1f ms", section.getLabel(), nanos.get(i) / 1e6));
+            if (count > 1) out.append(" x").append(count);
+            if (onMain > 0 && section != Section.ACTIVITY_CREATE) {
+                out.append(String.format(Locale.US, " (%.1f ms on main thread)", onMain / 1e6));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
@@ -0,0 +1,42 @@
+package com.vfcash.tracker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Process-wide canonical copies of strings that repeat across many
+// transactions (phone numbers, sender names), so a history of thousands of
+// rows with a few hundred counterparties holds a few hundred strings rather
+// than one per row. The pool is bounded and drops the least recently used
+// entry once full, so strings from deleted history or a wallet that is no
+// longer shown do not pile up; a row keeps its own reference either way, an
+// evicted string just stops being shared with rows read after it.
+public final class StringPool {
+    static final int MAX_ENTRIES = 4096;
+
+    private static final Map<String, String> pool = new LinkedHashMap<String, String>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private StringPool() {}
+
+    public static String intern(String value) {
+        if (value == null) return null;
+        synchronized (pool) {
+            String canonical = pool.get(value);
+            if (canonical == null) {
+                pool.put(value, value);
+                canonical = value;
+            }
+            return canonical;
+        }
+    }
+
+    public static int size() {
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.vfcash.tracker;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Process-wide counters for dashboard sync requests. Recording only touches
+// preallocated atomics, so it is safe to call from any AsyncTask thread
+// without locking or allocating.
+public final class SyncMetrics {
+
+    public enum Endpoint {
+        TRANSACTIONS("/api/transactions"),
+        BULK("/api/transactions/bulk"),
+        LIMITS("/api/limits"),
+        HEALTH("/api/health");
+
+        private final String path;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+
+        public String getPath() { return path; }
+    }
+
+    // Upper bounds (inclusive) of the latency buckets in milliseconds; the
+    // last histogram slot counts everything slower than the final bound
+    private static final long[] BUCKET_BOUNDS_MS = {25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final SyncMetrics instance = new SyncMetrics();
+
+    private final EndpointStats[] stats;
+
+    private SyncMetrics() {
+        Endpoint[] endpoints = Endpoint.values();
+        stats = new EndpointStats[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            stats[i] = new EndpointStats();
+        }
+    }
+
+    public static SyncMetrics getInstance() {
+        return instance;
+    }
+
+    public void record(Endpoint endpoint, long durationNanos, long bytesSent,
+                       long bytesReceived, boolean success) {
+        EndpointStats endpointStats = stats[endpoint.ordinal()];
+        endpointStats.requests.incrementAndGet();
+        if (!success) {
+            endpointStats.failures.incrementAndGet();
+        }
+        endpointStats.bytesSent.addAndGet(Math.max(0, bytesSent));
+        endpointStats.bytesReceived.addAndGet(Math.max(0, bytesReceived));
+        endpointStats.totalNanos.addAndGet(durationNanos);
+        endpointStats.latency.incrementAndGet(bucketFor(durationNanos / 1_000_000));
+    }
+
+    // Rows a successful bulk upload listed as rejected
+    public void recordRejected(Endpoint endpoint, int rows) {
+        if (rows > 0) {
+            stats[endpoint.ordinal()].rejected.addAndGet(rows);
+        }
+    }
+
+    public void reset() {
+        for (EndpointStats endpointStats : stats) {
+            endpointStats.reset();
+        }
+    }
+
+    public Snapshot snapshot() {
+        Endpoint[] endpoints = Endpoint.values();
+        EndpointSnapshot[] snapshots = new EndpointSnapshot[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            snapshots[i] = stats[i].snapshot(endpoints[i]);
+        }
+        return new Snapshot(System.currentTimeMillis(), snapshots);
+    }
+
+    private static int bucketFor(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (millis <= BUCKET_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    private static final class EndpointStats {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLongArray latency = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+
+        EndpointSnapshot snapshot(Endpoint endpoint) {
+            long[] buckets = new long[latency.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = latency.get(i);
+            }
+            return new EndpointSnapshot(endpoint, requests.get(), failures.get(), rejected.get(),
+                    bytesSent.get(), bytesReceived.get(), totalNanos.get(), buckets);
+        }
+
+        void reset() {
+            requests.set(0);
+            failures.set(0);
+            rejected.set(0);
+            bytesSent.set(0);
+            bytesReceived.set(0);
+            totalNanos.set(0);
+            for (int i = 0; i < latency.length(); i++) {
+                latency.set(i, 0);
+            }
+        }
+    }
+
+    // Point-in-time copy of one endpoint's counters
+    public static final class EndpointSnapshot {
+        private final Endpoint endpoint;
+        private final long requests;
+        private final long failures;
+        private final long rejected;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long totalNanos;
+        private final long[] latencyBuckets;
+
+        EndpointSnapshot(Endpoint endpoint, long requests, long failures, long rejected, long bytesSent,
+                         long bytesReceived, long totalNanos, long[] latencyBuckets) {
+            this.endpoint = endpoint;
+            this.requests = requests;
+            this.failures = failures;
+            this.rejected = rejected;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.totalNanos = totalNanos;
+            this.latencyBuckets = latencyBuckets;
+        }
+
+        public Endpoint getEndpoint() { return endpoint; }
+        public long getRequests() { return requests; }
+        public long getFailures() { return failures; }
+        public long getRejected() { return rejected; }
+        public long getBytesSent() { return bytesSent; }
+        public long getBytesReceived() { return bytesReceived; }
+
+        public double getAverageLatencyMillis() {
+            return requests > 0 ? totalNanos / 1_000_000.0 / requests : 0;
+        }
+
+        public long getLatencyBucket(int index) { return latencyBuckets[index]; }
+
+        // Upper bound of the bucket holding the given percentile, or -1 for the overflow bucket
+        public long getLatencyPercentileMillis(double percentile) {
+            if (requests == 0) return 0;
+            long target = (long) Math.ceil(requests * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                seen += latencyBuckets[i];
+                if (seen >= target) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public static final class Snapshot {
+        private final long takenAt;
+        private final EndpointSnapshot[] endpoints;
+
+        Snapshot(long takenAt, EndpointSnapshot[] endpoints) {
+            this.takenAt = takenAt;
+            this.endpoints = endpoints;
+        }
+
+        public long getTakenAt() { return takenAt; }
+
+        public EndpointSnapshot get(Endpoint endpoint) {
+            return endpoints[endpoint.ordinal()];
+        }
+
+        // Human-readable report used by the debug dialog and the share export
+        public String format() {
+            StringBuilder report = new StringBuilder();
+            for (EndpointSnapshot snapshot : endpoints) {
+                if (report.length() > 0) report.append("\n\n");
+                report.append(snapshot.getEndpoint().getPath()).append('\n');
+                report.append(String.format(Locale.US,
+                        "Requests: %d, failed: %d, rows rejected: %d\nSent: %d B, received: %d B\nAvg: %.0f ms, p50: %s, p95: %s",
+                        snapshot.getRequests(), snapshot.getFailures(), snapshot.getRejected(),
+                        snapshot.getBytesSent(), snapshot.getBytesReceived(),
+                        snapshot.getAverageLatencyMillis(),
+                        formatBound(snapshot.getLatencyPercentileMillis(50)),
+                        formatBound(snapshot.getLatencyPercentileMillis(95))));
+                report.append("\nHistogram:");
+                for (int i = 0; i <= BUCKET_BOUNDS_MS.length; i++) {
+                    report.append(' ').append(i < BUCKET_BOUNDS_MS.length ?
+                            "≤" + BUCKET_BOUNDS_MS[i] : ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]);
+                    report.append('=').append(snapshot.getLatencyBucket(i));
+                }
+            }
+            return report.toString();
+        }
+
+        private static String formatBound(long bound) {
+            return bound < 0 ? ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + " ms" : "≤" + bound + " ms";
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Blocking HTTP calls to the web dashboard. ApiClient wraps these in
+// AsyncTasks; this class deliberately avoids Android APIs so it can also be
+// driven from a plain JVM against a local stand-in for the Next.js API.
+public class SyncTransport {
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final int HEALTH_TIMEOUT_MS = 5000;
+
+    private final Gson gson;
+    private final SyncMetrics metrics;
+    private volatile String baseUrl;
+    // Set once the dashboard advertises the binary wire format via Accept-Post
+    private volatile boolean binaryWireFormat;
+
+    public SyncTransport(String baseUrl, Gson gson, SyncMetrics metrics) {
+        this.baseUrl = baseUrl;
+        this.gson = gson;
+        this.metrics = metrics;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.binaryWireFormat = false;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isBinaryWireFormat() {
+        return binaryWireFormat;
+    }
+
+    // Posts transactions using the binary wire format when the dashboard has
+    // advertised support for it, otherwise (or if it is rejected) as JSON.
+    // Arrays go to the bulk route, which answers 200 even when some rows are
+    // invalid and lists those under "rejected"; see Response.getRejected().
+    public Response postTransactions(SyncMetrics.Endpoint endpoint, boolean asArray,
+                                     Transaction... transactions) throws IOException {
+        Response response = null;
+        if (binaryWireFormat) {
+            response = post(endpoint, TransactionWireFormat.encode(transactions),
+                    TransactionWireFormat.MEDIA_TYPE);
+            if (response.getCode() == HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                binaryWireFormat = false;
+                response = null;
+            }
+        }
+        if (response == null) {
+            String jsonData = asArray ? JsonCodec.toJson(gson, transactions, transactions.length) :
+                    gson.toJson(transactions[0]);
+            response = post(endpoint, jsonData.getBytes(StandardCharsets.UTF_8), "application/json");
+        }
+
+        if (asArray && response.isOk()) {
+            response.rejected = readRejected(response);
+            metrics.recordRejected(endpoint, response.rejected.size());
+        }
+        return response;
+    }
+
+    public Response postLimits(ApiClient.LimitsData limitsData) throws IOException {
+        String jsonData = gson.toJson(limitsData);
+        return post(SyncMetrics.Endpoint.LIMITS, jsonData.getBytes(StandardCharsets.UTF_8),
+                "application/json");
+    }
+
+    public Response checkHealth() throws IOException {
+        long start = System.nanoTime();
+        try {
+            URL url = new URL(baseUrl + SyncMetrics.Endpoint.HEALTH.getPath());
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(HEALTH_TIMEOUT_MS);
+            connection.setReadTimeout(HEALTH_TIMEOUT_MS);
+
+            Response response = readResponse(connection);
+            metrics.record(SyncMetrics.Endpoint.HEALTH, System.nanoTime() - start, 0,
+                    response.getBodyLength(), response.isOk());
+            return response;
+        } catch (IOException e) {
+            metrics.record(SyncMetrics.Endpoint.HEALTH, System.nanoTime() - start, 0, 0, false);
+            throw e;
+        }
+    }
+
+    // Sends a POST and records its latency, size and outcome in SyncMetrics
+    private Response post(SyncMetrics.Endpoint endpoint, byte[] payload,
+                          String contentType) throws IOException {
+        long start = System.nanoTime();
+        try {
+            URL url = new URL(baseUrl + endpoint.getPath());
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setDoOutput(true);
+
+            // Send data
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(payload, 0, payload.length);
+            }
+
+            Response response = readResponse(connection);
+            metrics.record(endpoint, System.nanoTime() - start, payload.length,
+                    response.getBodyLength(), response.isOk());
+
+            // Dashboards that can decode the binary format list it in Accept-Post
+            String acceptPost = connection.getHeaderField("Accept-Post");
+            if (acceptPost != null && acceptPost.contains(TransactionWireFormat.MEDIA_TYPE)) {
+                binaryWireFormat = true;
+            }
+            return response;
+        } catch (IOException e) {
+            metrics.record(endpoint, System.nanoTime() - start, payload.length, 0, false);
+            throw e;
+        }
+    }
+
+    // Reads the whole response body so a connection cut mid-body surfaces as
+    // an IOException instead of a silently truncated success, and so the
+    // connection can go back to the keep-alive pool
+    private static Response readResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        InputStream stream = code < HttpURLConnection.HTTP_BAD_REQUEST ?
+                connection.getInputStream() : connection.getErrorStream();
+        if (stream == null) {
+            return new Response(code, new byte[0]);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = stream) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+
+        int expected = connection.getContentLength();
+        if (expected >= 0 && body.size() != expected) {
+            throw new IOException("Truncated response: expected " + expected +
+                    " bytes, got " + body.size());
+        }
+        return new Response(code, body.toByteArray());
+    }
+
+    // Dashboards from before partial acceptance have no "rejected" list, and
+    // a body that is not JSON is treated the same way
+    private List<Rejection> readRejected(Response response) {
+        JsonArray array;
+        try {
+            JsonObject body = gson.fromJson(response.getBody(), JsonObject.class);
+            JsonElement rejected = body == null ? null : body.get("rejected");
+            if (rejected == null || !rejected.isJsonArray()) {
+                return Collections.emptyList();
+            }
+            array = rejected.getAsJsonArray();
+        } catch (JsonParseException e) {
+            return Collections.emptyList();
+        }
+
+        List<Rejection> rejections = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            if (!element.isJsonObject()) continue;
+            JsonObject rejection = element.getAsJsonObject();
+            rejections.add(new Rejection(intOr(rejection.get("index"), -1),
+                    stringOr(rejection.get("id"), null), stringOr(rejection.get("error"), "")));
+        }
+        return rejections;
+    }
+
+    private static int intOr(JsonElement value, int fallback) {
+        try {
+            return value != null && value.isJsonPrimitive() ? value.getAsInt() : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String stringOr(JsonElement value, String fallback) {
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : fallback;
+    }
+
+    // A row the bulk route would not store: its position in the upload, its
+    // id if it had a usable one, and the validation error
+    public static final class Rejection {
+        private final int index;
+        private final String id;
+        private final String error;
+
+        Rejection(int index, String id, String error) {
+            this.index = index;
+            this.id = id;
+            this.error = error;
+        }
+
+        public int getIndex() { return index; }
+        public String getId() { return id; }
+        public String getError() { return error; }
+    }
+
+    public static final class Response {
+        private final int code;
+        private final byte[] body;
+        private List<Rejection> rejected = Collections.emptyList();
+
+        Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        public int getCode() { return code; }
+        public boolean isOk() { return code == HttpURLConnection.HTTP_OK; }
+        public int getBodyLength() { return body.length; }
+        public List<Rejection> getRejected() { return rejected; }
+
+        public String getBody() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -2,9 +2,16 @@ package com.vfcash.tracker;
 
 import java.util.Date;
 
+// Kept small since the hot set holds every row of the last two months: the
+// id is a long, the type an enum, and phone numbers and sender names are
+// shared through StringPool. JSON goes through JsonCodec's adapter, which
+// keeps the document shape of the old String-typed fields.
 public class Transaction {
-    private String id;
-    private String type; // "transfer" or "received"
+    private long id;
+    private TransactionType type;
+    // A type string this version does not know, kept so it is written back
+    // unchanged instead of being lost on the next save
+    private String unknownType;
     private double amount;
     private String phoneNumber;
     private Date date;
@@ -16,32 +23,52 @@ public class Transaction {
 
     // Constructor
     public Transaction() {
-        this.id = String.valueOf(System.currentTimeMillis());
-        this.date = new Date();
+        this(TransactionIds.next(), new Date());
     }
 
-    public Transaction(String type, double amount, String phoneNumber, 
+    private Transaction(long id, Date date) {
+        this.id = id;
+        this.date = date;
+    }
+
+    public Transaction(String type, double amount, String phoneNumber,
                       double balanceBefore, double balanceAfter) {
         this();
-        this.type = type;
+        setType(type);
         this.amount = amount;
-        this.phoneNumber = phoneNumber;
+        setPhoneNumber(phoneNumber);
         this.balanceBefore = balanceBefore;
         this.balanceAfter = balanceAfter;
     }
 
+    // An empty row for decoders to fill in; takes no id and reads no clock
+    static Transaction blank() {
+        return new Transaction(0, null);
+    }
+
     // Getters and Setters
-    public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
 
-    public String getType() { return type; }
-    public void setType(String type) { this.type = type; }
+    // "transfer", "received", or whatever unknown type was read
+    public String getType() { return type != null ? type.getName() : unknownType; }
+    public void setType(String type) {
+        this.type = TransactionType.fromName(type);
+        this.unknownType = this.type == null ? type : null;
+    }
+
+    // Null for an unknown type
+    public TransactionType getTransactionType() { return type; }
+    public void setTransactionType(TransactionType type) {
+        this.type = type;
+        this.unknownType = null;
+    }
 
     public double getAmount() { return amount; }
     public void setAmount(double amount) { this.amount = amount; }
 
     public String getPhoneNumber() { return phoneNumber; }
-    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = StringPool.intern(phoneNumber); }
 
     public Date getDate() { return date; }
     public void setDate(Date date) { this.date = date; }
@@ -53,7 +80,7 @@ public class Transaction {
     public void setBalanceAfter(double balanceAfter) { this.balanceAfter = balanceAfter; }
 
     public String getSenderName() { return senderName; }
-    public void setSenderName(String senderName) { this.senderName = senderName; }
+    public void setSenderName(String senderName) { this.senderName = StringPool.intern(senderName); }
 
     public String getTransactionNumber() { return transactionNumber; }
     public void setTransactionNumber(String transactionNumber) { this.transactionNumber = transactionNumber; }
@@ -64,7 +91,8 @@ public class Transaction {
     @Override
     public String toString() {
         return "Transaction{" +
-                "type='" + type + '\'' +
+                "id=" + id +
+                ", type='" + getType() + '\'' +
                 ", amount=" + amount +
                 ", phoneNumber='" + phoneNumber + '\'' +
                 ", date=" + date +
@@ -1,133 +1,132 @@
 package com.vfcash.tracker;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
-import java.text.SimpleDateFormat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
-
-public class TransactionAdapter extends BaseAdapter {
-    
-    private Context context;
-    private List<Transaction> transactions;
-    private LayoutInflater inflater;
-    private SimpleDateFormat dateFormat;
-
-    public TransactionAdapter(Context context, List<Transaction> transactions) {
-        this.context = context;
-        this.transactions = transactions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// RecyclerView adapter over a TransactionPager. Only the row count is pushed
+// in from MainScreenState; rows themselves are loaded page by page as they
+// scroll into view, and bind as empty placeholders until their page arrives.
+// Search results are shown through the same pager from an in-memory list.
+public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.ViewHolder> {
+
+    // Shared by all adapters so recreated activities do not leak threads
+    private static final ExecutorService PAGE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final LayoutInflater inflater;
+    private final TransactionPager pager;
+    private final TransactionPager.PageSource storeSource;
+    private boolean showingResults;
+    private long epoch = -1;
+
+    public TransactionAdapter(Context context, TransactionPager.PageSource storeSource) {
         this.inflater = LayoutInflater.from(context);
-        this.dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+        this.storeSource = storeSource;
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        this.pager = new TransactionPager(new TransactionDisplayModel.Factory(context),
+                PAGE_EXECUTOR, mainHandler::post, this::notifyItemRangeChanged);
     }
 
-    @Override
-    public int getCount() {
-        return transactions.size();
+    // Applies a new row count. Within the same epoch rows can only have been
+    // added at the top; a new epoch means the history was rebuilt or cleared.
+    public void submitCount(int count, long epoch) {
+        if (showingResults || epoch != this.epoch) {
+            showingResults = false;
+            this.epoch = epoch;
+            pager.reset(storeSource, count);
+            notifyDataSetChanged();
+        } else if (count > pager.getCount()) {
+            int inserted = count - pager.getCount();
+            pager.insertAtTop(inserted);
+            notifyItemRangeInserted(0, inserted);
+        }
+    }
+
+    // Shows a newest-first list, such as search results, until the next submitCount()
+    public void submitResults(List<Transaction> results) {
+        showingResults = true;
+        int count = results.size();
+        pager.reset((from, to) -> {
+            List<Transaction> page = new ArrayList<>(to - from);
+            for (int sequence = from; sequence < to; sequence++) {
+                page.add(results.get(count - 1 - sequence));
+            }
+            return page;
+        }, count);
+        notifyDataSetChanged();
     }
 
     @Override
-    public Object getItem(int position) {
-        return transactions.get(position);
+    public int getItemCount() {
+        return pager.getCount();
     }
 
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(R.layout.item_transaction, parent, false));
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
-        
-        if (convertView == null) {
-            convertView = inflater.inflate(R.layout.item_transaction, parent, false);
-            holder = new ViewHolder();
-            holder.typeIcon = convertView.findViewById(R.id.type_icon);
-            holder.amountText = convertView.findViewById(R.id.amount_text);
-            holder.phoneText = convertView.findViewById(R.id.phone_text);
-            holder.dateText = convertView.findViewById(R.id.date_text);
-            holder.balanceText = convertView.findViewById(R.id.balance_text);
-            holder.detailsText = convertView.findViewById(R.id.details_text);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
-        }
-        
-        Transaction transaction = transactions.get(position);
-        
-        // Set transaction type icon (using text symbols)
-        if ("transfer".equals(transaction.getType())) {
-            holder.typeIcon.setText("↗");
-            holder.typeIcon.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
-            holder.amountText.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
-        } else {
-            holder.typeIcon.setText("↙");
-            holder.typeIcon.setTextColor(context.getResources().getColor(android.R.color.holo_green_dark));
-            holder.amountText.setTextColor(context.getResources().getColor(android.R.color.holo_green_dark));
-        }
-        
-        // Set amount
-        holder.amountText.setText(String.format("EGP %.2f", transaction.getAmount()));
-        
-        // Set phone number
-        String phoneDisplay = transaction.getPhoneNumber();
-        if (phoneDisplay != null && phoneDisplay.length() > 7) {
-            // Format phone number for better readability
-            phoneDisplay = phoneDisplay.substring(0, 3) + " " + 
-                          phoneDisplay.substring(3, 6) + " " + 
-                          phoneDisplay.substring(6);
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        TransactionDisplayModel model = pager.get(position);
+        if (model == null) {
+            holder.bindPlaceholder();
+            return;
         }
-        holder.phoneText.setText(phoneDisplay);
-        
-        // Set date
-        holder.dateText.setText(dateFormat.format(transaction.getDate()));
-        
-        // Set balance
-        holder.balanceText.setText(String.format("Balance: EGP %.2f", transaction.getBalanceAfter()));
-        
-        // Set additional details
-        StringBuilder details = new StringBuilder();
-        
-        if ("transfer".equals(transaction.getType())) {
-            if (transaction.getServiceFees() > 0) {
-                details.append(String.format("Fees: EGP %.2f", transaction.getServiceFees()));
-            }
-        } else {
-            if (transaction.getSenderName() != null && !transaction.getSenderName().isEmpty()) {
-                details.append("From: ").append(transaction.getSenderName());
-            }
-            if (transaction.getTransactionNumber() != null && !transaction.getTransactionNumber().isEmpty()) {
-                if (details.length() > 0) details.append(" • ");
-                details.append("Ref: ").append(transaction.getTransactionNumber());
-            }
-        }
-        
-        if (details.length() > 0) {
-            holder.detailsText.setText(details.toString());
+
+        holder.typeIcon.setText(model.getTypeIcon());
+        holder.typeIcon.setTextColor(model.getColor());
+        holder.amountText.setText(model.getAmountText());
+        holder.amountText.setTextColor(model.getColor());
+        holder.phoneText.setText(model.getPhoneText());
+        holder.dateText.setText(model.getDateText());
+        holder.balanceText.setText(model.getBalanceText());
+
+        if (model.getDetailsText() != null) {
+            holder.detailsText.setText(model.getDetailsText());
             holder.detailsText.setVisibility(View.VISIBLE);
         } else {
             holder.detailsText.setVisibility(View.GONE);
         }
-        
-        return convertView;
     }
-    
-    public void updateTransactions(List<Transaction> newTransactions) {
-        this.transactions = newTransactions;
-        notifyDataSetChanged();
-    }
-    
-    static class ViewHolder {
-        TextView typeIcon;
-        TextView amountText;
-        TextView phoneText;
-        TextView dateText;
-        TextView balanceText;
-        TextView detailsText;
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView typeIcon;
+        final TextView amountText;
+        final TextView phoneText;
+        final TextView dateText;
+        final TextView balanceText;
+        final TextView detailsText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            typeIcon = itemView.findViewById(R.id.type_icon);
+            amountText = itemView.findViewById(R.id.amount_text);
+            phoneText = itemView.findViewById(R.id.phone_text);
+            dateText = itemView.findViewById(R.id.date_text);
+            balanceText = itemView.findViewById(R.id.balance_text);
+            detailsText = itemView.findViewById(R.id.details_text);
+        }
+
+        // Keeps the row's height while its page loads
+        void bindPlaceholder() {
+            typeIcon.setText("");
+            amountText.setText("");
+            phoneText.setText("");
+            dateText.setText("");
+            balanceText.setText("");
+            detailsText.setVisibility(View.GONE);
+        }
     }
 }
@@ -0,0 +1,95 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+
+import androidx.core.content.ContextCompat;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+// Immutable, pre-formatted view of a transaction row. All string formatting
+// and color lookups happen once in Factory, off the main thread, so binding a
+// row is only a matter of copying fields into views.
+public final class TransactionDisplayModel {
+    private final Transaction source;
+    private final String typeIcon;
+    private final int color;
+    private final String amountText;
+    private final String phoneText;
+    private final String dateText;
+    private final String balanceText;
+    private final String detailsText; // null when there is nothing to show
+
+    private TransactionDisplayModel(Transaction source, String typeIcon, int color, String amountText,
+                                    String phoneText, String dateText, String balanceText,
+                                    String detailsText) {
+        this.source = source;
+        this.typeIcon = typeIcon;
+        this.color = color;
+        this.amountText = amountText;
+        this.phoneText = phoneText;
+        this.dateText = dateText;
+        this.balanceText = balanceText;
+        this.detailsText = detailsText;
+    }
+
+    public Transaction getSource() { return source; }
+    public long getId() { return source.getId(); }
+    public String getTypeIcon() { return typeIcon; }
+    public int getColor() { return color; }
+    public String getAmountText() { return amountText; }
+    public String getPhoneText() { return phoneText; }
+    public String getDateText() { return dateText; }
+    public String getBalanceText() { return balanceText; }
+    public String getDetailsText() { return detailsText; }
+
+    // Builds display models. Not thread-safe: use it from a single background thread.
+    public static final class Factory {
+        private final SimpleDateFormat dateFormat;
+        private final int transferColor;
+        private final int receivedColor;
+
+        public Factory(Context context) {
+            this.dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+            this.transferColor = ContextCompat.getColor(context, android.R.color.holo_red_dark);
+            this.receivedColor = ContextCompat.getColor(context, android.R.color.holo_green_dark);
+        }
+
+        public TransactionDisplayModel create(Transaction transaction) {
+            boolean transfer = "transfer".equals(transaction.getType());
+
+            String phoneDisplay = transaction.getPhoneNumber();
+            if (phoneDisplay != null && phoneDisplay.length() > 7) {
+                // Format phone number for better readability
+                phoneDisplay = phoneDisplay.substring(0, 3) + " " +
+                              phoneDisplay.substring(3, 6) + " " +
+                              phoneDisplay.substring(6);
+            }
+
+            StringBuilder details = new StringBuilder();
+            if (transfer) {
+                if (transaction.getServiceFees() > 0) {
+                    details.append(String.format("Fees: EGP %.2f", transaction.getServiceFees()));
+                }
+            } else {
+                if (transaction.getSenderName() != null && !transaction.getSenderName().isEmpty()) {
+                    details.append("From: ").append(transaction.getSenderName());
+                }
+                if (transaction.getTransactionNumber() != null && !transaction.getTransactionNumber().isEmpty()) {
+                    if (details.length() > 0) details.append(" • ");
+                    details.append("Ref: ").append(transaction.getTransactionNumber());
+                }
+            }
+
+            return new TransactionDisplayModel(
+                    transaction,
+                    transfer ? "↗" : "↙",
+                    transfer ? transferColor : receivedColor,
+                    String.format("EGP %.2f", transaction.getAmount()),
+                    phoneDisplay,
+                    dateFormat.format(transaction.getDate()),
+                    String.format("Balance: EGP %.2f", transaction.getBalanceAfter()),
+                    details.length() > 0 ? details.toString() : null);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.vfcash.tracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+// Streams transactions to a file as CSV or line-delimited JSON, oldest first.
+// Rows are read from the store a chunk at a time and encoded through one
+// reusable StringBuilder into a fixed-size ByteBuffer that is flushed to a
+// FileChannel, so memory stays bounded however many rows are exported. The
+// file is written next to the target and renamed into place when complete.
+//
+// Plain Java so it can be run and benchmarked off-device.
+public class TransactionExporter {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final String CSV_HEADER = "id,type,amount,phoneNumber,date,balanceBefore,balanceAfter," +
+            "senderName,transactionNumber,serviceFees\n";
+
+    public enum Format {
+        CSV("csv"), NDJSON("ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() { return extension; }
+    }
+
+    public interface ProgressListener {
+        // Rows scanned so far out of the rows stored when the export started
+        void onProgress(int scanned, int total);
+    }
+
+    private final Format format;
+    private long fromTime = Long.MIN_VALUE;
+    private long toTime = Long.MAX_VALUE;
+    private String type;
+    private ProgressListener progressListener;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final DateWriter dateWriter = new DateWriter();
+
+    public TransactionExporter(Format format) {
+        this.format = format;
+    }
+
+    // Only rows dated in [fromTime, toTime) are written
+    public TransactionExporter setDateRange(long fromTime, long toTime) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        return this;
+    }
+
+    // "transfer", "received", or null for both
+    public TransactionExporter setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public TransactionExporter setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    // Exports the first `count` rows of the source; returns the number written
+    public int export(TransactionPager.PageSource source, int count, File target) throws IOException {
+        File partial = new File(target.getPath() + ".part");
+        int written = 0;
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        try (FileOutputStream out = new FileOutputStream(partial);
+             FileChannel channel = out.getChannel()) {
+            if (format == Format.CSV) {
+                line.setLength(0);
+                line.append(CSV_HEADER);
+                encode(encoder, buffer, channel);
+            }
+
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                int to = Math.min(from + CHUNK_SIZE, count);
+                List<Transaction> chunk = source.load(from, to);
+                for (Transaction transaction : chunk) {
+                    if (!matches(transaction)) continue;
+
+                    line.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsv(transaction);
+                    } else {
+                        appendJson(transaction);
+                    }
+                    encode(encoder, buffer, channel);
+                    written++;
+                }
+                if (progressListener != null) {
+                    progressListener.onProgress(to, count);
+                }
+            }
+
+            flush(buffer, channel);
+            channel.force(false);
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+
+        if (!partial.renameTo(target)) {
+            // renameTo does not replace an existing file on every platform
+            target.delete();
+            if (!partial.renameTo(target)) {
+                partial.delete();
+                throw new IOException("Could not move export to " + target);
+            }
+        }
+        return written;
+    }
+
+    private boolean matches(Transaction transaction) {
+        if (type != null && !type.equals(transaction.getType())) return false;
+        if (fromTime == Long.MIN_VALUE && toTime == Long.MAX_VALUE) return true;
+        Date date = transaction.getDate();
+        if (date == null) return false;
+        long time = date.getTime();
+        return time >= fromTime && time < toTime;
+    }
+
+    private void appendCsv(Transaction transaction) {
+        line.append(transaction.getId());
+        line.append(',');
+        appendCsvText(transaction.getType());
+        line.append(',');
+        appendMoney(transaction.getAmount());
+        line.append(',');
+        appendCsvText(transaction.getPhoneNumber());
+        line.append(',');
+        dateWriter.append(line, transaction.getDate());
+        line.append(',');
+        appendMoney(transaction.getBalanceBefore());
+        line.append(',');
+        appendMoney(transaction.getBalanceAfter());
+        line.append(',');
+        appendCsvText(transaction.getSenderName());
+        line.append(',');
+        appendCsvText(transaction.getTransactionNumber());
+        line.append(',');
+        appendMoney(transaction.getServiceFees());
+        line.append('\n');
+    }
+
+    private void appendJson(Transaction transaction) {
+        // Quoted, matching the dashboard API's string ids
+        line.append("{\"id\":\"").append(transaction.getId()).append('"');
+        line.append(",\"type\":");
+        appendJsonText(transaction.getType());
+        line.append(",\"amount\":");
+        appendMoney(transaction.getAmount());
+        line.append(",\"phoneNumber\":");
+        appendJsonText(transaction.getPhoneNumber());
+        line.append(",\"date\":");
+        if (transaction.getDate() != null) {
+            line.append('"');
+            dateWriter.append(line, transaction.getDate());
+            line.append('"');
+        } else {
+            line.append("null");
+        }
+        line.append(",\"balanceBefore\":");
+        appendMoney(transaction.getBalanceBefore());
+        line.append(",\"balanceAfter\":");
+        appendMoney(transaction.getBalanceAfter());
+        line.append(",\"senderName\":");
+        appendJsonText(transaction.getSenderName());
+        line.append(",\"transactionNumber\":");
+        appendJsonText(transaction.getTransactionNumber());
+        line.append(",\"serviceFees\":");
+        appendMoney(transaction.getServiceFees());
+        line.append("}\n");
+    }
+
+    // Amounts are in EGP with piaster precision; avoids String.format per field
+    private void appendMoney(double value) {
+        long piasters = Math.round(value * 100);
+        if (piasters < 0) {
+            line.append('-');
+            piasters = -piasters;
+        }
+        line.append(piasters / 100).append('.');
+        long fraction = piasters % 100;
+        if (fraction < 10) line.append('0');
+        line.append(fraction);
+    }
+
+    private void appendCsvText(String value) {
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonText(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    // Encodes the current line into the buffer, flushing to the channel whenever it fills
+    private void encode(CharsetEncoder encoder, ByteBuffer buffer, FileChannel channel) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush(buffer, channel);
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // ISO 8601 in UTC, matching what the dashboard API accepts. Calendar is
+    // only consulted when the day changes, which for exported history is rare.
+    private static final class DateWriter {
+        private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+        private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        private long dayStart = Long.MIN_VALUE;
+        private String dayPrefix;
+
+        void append(StringBuilder out, Date date) {
+            if (date == null) return;
+            long time = date.getTime();
+            if (time < dayStart || time >= dayStart + DAY_MILLIS) {
+                dayStart = (time >= 0 ? time / DAY_MILLIS : (time + 1) / DAY_MILLIS - 1) * DAY_MILLIS;
+                calendar.setTimeInMillis(dayStart);
+                dayPrefix = String.format("%04d-%02d-%02dT", calendar.get(Calendar.YEAR),
+                        calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+            }
+
+            int millisOfDay = (int) (time - dayStart);
+            out.append(dayPrefix);
+            pad(out, millisOfDay / 3600000, 2);
+            out.append(':');
+            pad(out, millisOfDay / 60000 % 60, 2);
+            out.append(':');
+            pad(out, millisOfDay / 1000 % 60, 2);
+            out.append('.');
+            pad(out, millisOfDay % 1000, 3);
+            out.append('Z');
+        }
+
+        private static void pad(StringBuilder out, int value, int width) {
+            if (width == 3 && value < 100) out.append('0');
+            if (value < 10) out.append('0');
+            out.append(value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.vfcash.tracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out transaction ids. Ids follow the wall clock in milliseconds, as
+// the old String ids did, but never repeat: two transactions parsed in the
+// same millisecond get consecutive ids. TransactionManager raises the floor
+// to the highest stored id at load, so ids stay unique across restarts even
+// if the clock goes backwards.
+public final class TransactionIds {
+    private static final AtomicLong last = new AtomicLong();
+
+    private TransactionIds() {}
+
+    public static long next() {
+        while (true) {
+            long previous = last.get();
+            long id = Math.max(previous + 1, System.currentTimeMillis());
+            if (last.compareAndSet(previous, id)) {
+                return id;
+            }
+        }
+    }
+
+    // Ensures every id handed out from now on is greater than `id`
+    public static void observe(long id) {
+        while (true) {
+            long previous = last.get();
+            if (id <= previous || last.compareAndSet(previous, id)) {
+                return;
+            }
+        }
+    }
+}
@@ -7,66 +7,674 @@ import android.util.Log;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 public class TransactionManager {
     private static final String TAG = "TransactionManager";
     private static final String PREFS_NAME = "vfcash_transactions";
     private static final String KEY_TRANSACTIONS = "transactions";
+    // Highest id the dashboard has acknowledged from a bulk sync of this wallet
+    private static final String KEY_SYNC_CURSOR = "sync_cursor";
+    private static final String ARCHIVE_DIR = "archive";
+    // Decoded archive segments kept around for paging and search hits
+    private static final int CACHED_SEGMENTS = 2;
     
-    private static TransactionManager instance;
+    // One store per wallet, each built on first use
+    private static final Map<String, TransactionManager> instances = new HashMap<>();
+    private final String wallet;
     private SharedPreferences prefs;
     private Gson gson;
+    // Hot set: the current and previous month, newest first. Older months are
+    // sealed into archive segments; sequence numbers run through the archived
+    // rows first (oldest month first), then the hot ones.
     private List<Transaction> transactions;
+    private final ArchiveStore archive;
+    private List<ArchiveStore.Segment> segments = new ArrayList<>();
+    private int[] segmentOffsets = new int[0];
+    private int archivedCount;
+    private final Map<Integer, Transaction[]> segmentRows =
+            new LinkedHashMap<Integer, Transaction[]>(CACHED_SEGMENTS + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Transaction[]> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+    // Bumped on every change so readers can tell whether their snapshot is stale
+    private long version;
+    // Set while the hot set holds rows that addTransactions could not commit
+    private boolean uncommitted;
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
+    private final TransactionSearchIndex searchIndex = new TransactionSearchIndex();
+    // Built on the first search, since covering the archive means decoding it
+    private boolean searchIndexBuilt;
+    private final CounterpartyAggregates counterparties = new CounterpartyAggregates();
+    private final RollupEngine rollups = new RollupEngine();
+    // Built on first use, like the search index, since it covers archived months too
+    private final BalanceReconciler reconciler = new BalanceReconciler();
+    private boolean reconcilerBuilt;
+    // Rolling-window usage for LimitsManager
+    private final RollingWindowCounter transferred24Hours = RollingWindowCounter.last24Hours();
+    private final RollingWindowCounter transferred30Days = RollingWindowCounter.last30Days();
+    private final RollingWindowCounter received24Hours = RollingWindowCounter.last24Hours();
+    private final RollingWindowCounter received30Days = RollingWindowCounter.last30Days();
 
-    private TransactionManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+    private TransactionManager(Context context, String wallet) {
+        this.wallet = wallet;
+        String suffix = WalletRegistry.storageSuffix(wallet);
+        prefs = context.getSharedPreferences(PREFS_NAME + suffix, Context.MODE_PRIVATE);
+        gson = JsonCodec.gson();
+        archive = new ArchiveStore(new File(context.getFilesDir(), ARCHIVE_DIR + suffix));
         loadTransactions();
     }
 
-    public static synchronized TransactionManager getInstance(Context context) {
+    // The store of the wallet currently shown in the UI
+    public static TransactionManager getInstance(Context context) {
+        return getInstance(context, WalletRegistry.getInstance(context).getActiveWallet());
+    }
+
+    public static synchronized TransactionManager getInstance(Context context, String wallet) {
+        TransactionManager instance = instances.get(wallet);
         if (instance == null) {
-            instance = new TransactionManager(context.getApplicationContext());
+            long start = StartupTracer.getInstance().begin();
+            instance = new TransactionManager(context.getApplicationContext(), wallet);
+            instances.put(wallet, instance);
+            StartupTracer.getInstance().end(StartupTracer.Section.TRANSACTION_MANAGER, start);
         }
         return instance;
     }
 
+    public String getWallet() {
+        return wallet;
+    }
+
     private void loadTransactions() {
+        StartupTracer tracer = StartupTracer.getInstance();
+        long start = tracer.begin();
         String json = prefs.getString(KEY_TRANSACTIONS, "[]");
+        tracer.end(StartupTracer.Section.TRANSACTIONS_PREFS, start);
+        
+        start = tracer.begin();
         Type listType = new TypeToken<List<Transaction>>(){}.getType();
         transactions = gson.fromJson(json, listType);
+        tracer.end(StartupTracer.Section.TRANSACTIONS_JSON, start);
         
         if (transactions == null) {
             transactions = new ArrayList<>();
         }
+        if (repairIds()) {
+            saveTransactions();
+        }
+        
+        start = tracer.begin();
+        segments = archive.load();
+        sealClosedMonths();
+        indexSegments();
+        tracer.end(StartupTracer.Section.ARCHIVE, start);
+        
+        // Archived months contribute their precomputed aggregates; only hot rows are scanned
+        for (ArchiveStore.Segment segment : segments) {
+            for (CounterpartyAggregates.Counterparty counterparty : segment.getCounterparties()) {
+                counterparties.merge(counterparty);
+            }
+        }
+        int count = transactions.size();
+        RollupEngine.Columns columns = new RollupEngine.Columns(count);
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = transactions.get(count - 1 - i);
+            counterparties.add(transaction);
+            columns.set(i, transaction);
+        }
+        rollups.rebuild(columns);
+        for (ArchiveStore.Segment segment : segments) {
+            rollups.addDays(segment.getDays());
+        }
+        seedRollingWindows();
+        
+        Log.d(TAG, "Loaded " + transactions.size() + " transactions, " +
+                archivedCount + " more in " + segments.size() + " archive segments");
+    }
+
+    // Old String ids came from the clock and could collide when two SMS were
+    // parsed in the same millisecond. Keeps the oldest row of each id, gives
+    // later duplicates and missing ids fresh ones, and raises the generator's
+    // floor above every stored id. Returns true if any id changed.
+    private boolean repairIds() {
+        long highest = 0;
+        for (Transaction transaction : transactions) {
+            highest = Math.max(highest, transaction.getId());
+        }
+        TransactionIds.observe(highest);
+
+        Set<Long> seen = new HashSet<>();
+        int repaired = 0;
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            Transaction transaction = transactions.get(i);
+            if (transaction.getId() == 0 || !seen.add(transaction.getId())) {
+                transaction.setId(TransactionIds.next());
+                seen.add(transaction.getId());
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            Log.w(TAG, "Assigned new ids to " + repaired + " transactions with missing or duplicate ids");
+        }
+        return repaired > 0;
+    }
+
+    // The 30-day window lies within the hot set except on the first days of a
+    // month following a short one, when it dips into the newest segment
+    private void seedRollingWindows() {
+        long now = System.currentTimeMillis();
+        long windowStart = transferred30Days.windowStart(now);
+        for (Transaction transaction : transactions) {
+            addToRollingWindows(transaction, now);
+        }
+        for (int sequence = archivedCount - 1; sequence >= 0; sequence--) {
+            Transaction transaction = transactionAt(sequence);
+            if (transaction == null || transaction.getDate() == null) continue;
+            if (transaction.getDate().getTime() < windowStart) break;
+            addToRollingWindows(transaction, now);
+        }
+    }
+
+    private void addToRollingWindows(Transaction transaction, long now) {
+        if (transaction.getDate() == null) return;
+        long time = transaction.getDate().getTime();
+        if ("transfer".equals(transaction.getType())) {
+            transferred24Hours.add(time, transaction.getAmount(), now);
+            transferred30Days.add(time, transaction.getAmount(), now);
+        } else if ("received".equals(transaction.getType())) {
+            received24Hours.add(time, transaction.getAmount(), now);
+            received30Days.add(time, transaction.getAmount(), now);
+        }
+    }
+
+    // Moves hot transactions from before the previous month into archive
+    // segments, merging into a month's existing segment if it already has one
+    private void sealClosedMonths() {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -1);
+        int oldestHotMonth = CounterpartyAggregates.monthKey(cal);
         
-        Log.d(TAG, "Loaded " + transactions.size() + " transactions");
+        Map<Integer, List<Transaction>> closedMonths = new TreeMap<>();
+        List<Transaction> keep = new ArrayList<>();
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            Transaction transaction = transactions.get(i);
+            if (transaction.getDate() == null) {
+                keep.add(transaction);
+                continue;
+            }
+            cal.setTime(transaction.getDate());
+            int monthKey = CounterpartyAggregates.monthKey(cal);
+            if (monthKey >= oldestHotMonth) {
+                keep.add(transaction);
+            } else {
+                List<Transaction> rows = closedMonths.get(monthKey);
+                if (rows == null) {
+                    rows = new ArrayList<>();
+                    closedMonths.put(monthKey, rows);
+                }
+                rows.add(transaction);
+            }
+        }
+        if (closedMonths.isEmpty()) return;
+        
+        for (Map.Entry<Integer, List<Transaction>> entry : closedMonths.entrySet()) {
+            int year = entry.getKey() / 12;
+            int month = entry.getKey() % 12;
+            try {
+                sealMonth(year, month, entry.getValue());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not seal " + year + "-" + (month + 1) + ", keeping it hot", e);
+                keep.addAll(entry.getValue());
+            }
+        }
+        
+        Collections.reverse(keep);
+        transactions = keep;
+        saveTransactions();
+        segments = archive.load();
+    }
+
+    // Merges rows into a month's segment, writing one if the month has none.
+    // The caller reloads the segments afterwards.
+    private void sealMonth(int year, int month, List<Transaction> added) throws IOException {
+        List<Transaction> rows = new ArrayList<>();
+        Set<String> sealed = new HashSet<>();
+        for (ArchiveStore.Segment segment : segments) {
+            if (segment.isMonth(year, month)) {
+                for (Transaction row : segment.readRows()) {
+                    rows.add(row);
+                    sealed.add(sealKey(row));
+                }
+            }
+        }
+        // A crash between writing a segment and saving the hot set leaves rows in both
+        for (Transaction transaction : added) {
+            if (sealed.add(sealKey(transaction))) {
+                rows.add(transaction);
+            }
+        }
+        // Recovered rows can predate rows already sealed; the sort is stable otherwise
+        Collections.sort(rows, (a, b) -> Long.compare(a.getDate().getTime(), b.getDate().getTime()));
+        archive.write(year, month, rows);
+    }
+
+    private static String sealKey(Transaction transaction) {
+        return transaction.getId() + "|" + transaction.getDate().getTime() + "|" + transaction.getAmount();
+    }
+
+    private void indexSegments() {
+        segmentOffsets = new int[segments.size()];
+        archivedCount = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            segmentOffsets[i] = archivedCount;
+            archivedCount += segments.get(i).getRowCount();
+        }
+        segmentRows.clear();
+    }
+
+    // Decoded rows of an archive segment, or null if it cannot be read
+    private Transaction[] segmentRows(int index) {
+        Transaction[] rows = segmentRows.get(index);
+        if (rows == null) {
+            try {
+                rows = segments.get(index).readRows();
+                segmentRows.put(index, rows);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read " + segments.get(index), e);
+            }
+        }
+        return rows;
+    }
+
+    private int segmentIndexOf(int sequence) {
+        int low = 0;
+        int high = segmentOffsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentOffsets[mid] <= sequence) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Transaction at a sequence number, or null if its archive segment is unreadable
+    private Transaction transactionAt(int sequence) {
+        if (sequence >= archivedCount) {
+            return transactions.get(transactions.size() - 1 - (sequence - archivedCount));
+        }
+        int index = segmentIndexOf(sequence);
+        Transaction[] rows = segmentRows(index);
+        return rows != null ? rows[sequence - segmentOffsets[index]] : null;
+    }
+
+    private ArchiveStore.Segment archivedMonth(int year, int month) {
+        for (ArchiveStore.Segment segment : segments) {
+            if (segment.isMonth(year, month)) return segment;
+        }
+        return null;
+    }
+
+    private void ensureSearchIndex() {
+        if (searchIndexBuilt) return;
+        long start = System.nanoTime();
+        for (int i = 0; i < segments.size(); i++) {
+            try {
+                Transaction[] rows = segments.get(i).readRows();
+                for (int j = 0; j < rows.length; j++) {
+                    searchIndex.add(rows[j], segmentOffsets[i] + j);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not index " + segments.get(i), e);
+            }
+        }
+        int count = transactions.size();
+        for (int i = 0; i < count; i++) {
+            searchIndex.add(transactions.get(count - 1 - i), archivedCount + i);
+        }
+        searchIndexBuilt = true;
+        Log.d(TAG, "Built search index in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private void ensureReconciler() {
+        if (reconcilerBuilt) return;
+        long start = System.nanoTime();
+        for (ArchiveStore.Segment segment : segments) {
+            try {
+                for (Transaction row : segment.readRows()) {
+                    reconciler.add(row);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not reconcile " + segment, e);
+            }
+        }
+        for (Transaction transaction : transactions) {
+            reconciler.add(transaction);
+        }
+        reconcilerBuilt = true;
+        Log.d(TAG, "Reconciled balances in " + (System.nanoTime() - start) / 1000000 + " ms, " +
+                reconciler.getGapCount() + " gaps");
     }
 
     private void saveTransactions() {
-        String json = gson.toJson(transactions);
+        String json = JsonCodec.toJson(gson, transactions, transactions.size());
         prefs.edit().putString(KEY_TRANSACTIONS, json).apply();
         Log.d(TAG, "Saved " + transactions.size() + " transactions");
     }
 
     public void addTransaction(Transaction transaction) {
         if (transaction != null) {
+            addTransactions(Collections.singletonList(transaction));
+        }
+    }
+
+    // Inserts a batch, oldest first, and writes it to disk before returning,
+    // with a single serialization of the hot set and a single commit for the
+    // whole batch. Listeners get the batch's events in one callback. Returns
+    // false if the commit failed; the rows are still held in memory, and
+    // commitPending() retries the write.
+    public synchronized boolean addTransactions(List<Transaction> batch) {
+        if (batch.isEmpty()) return true;
+        // Stays set if anything below throws, so commitPending() still writes
+        // out whatever part of the batch made it into memory
+        uncommitted = true;
+        List<DataChangeEvent> events = new ArrayList<>(batch.size());
+        long now = System.currentTimeMillis();
+        for (Transaction transaction : batch) {
             transactions.add(0, transaction); // Add to beginning for newest first
-            saveTransactions();
-            Log.d(TAG, "Added new transaction: " + transaction.toString());
+            if (searchIndexBuilt) {
+                searchIndex.add(transaction, archivedCount + transactions.size() - 1);
+            }
+            counterparties.add(transaction);
+            rollups.add(transaction);
+            addToRollingWindows(transaction, now);
+            if (reconcilerBuilt) {
+                reconciler.add(transaction);
+            }
+            version++;
+            events.add(DataChangeEvent.inserted(transaction, version));
+        }
+        boolean durable = prefs.edit().putString(KEY_TRANSACTIONS,
+                JsonCodec.toJson(gson, transactions, transactions.size())).commit();
+        uncommitted = !durable;
+        if (!durable) {
+            Log.e(TAG, "Could not commit " + batch.size() + " new transactions");
         }
+        changeNotifier.publishAll(events);
+        Log.d(TAG, "Added " + batch.size() + " new transactions, " + transactions.size() + " hot");
+        return durable;
     }
 
-    public List<Transaction> getAllTransactions() {
+    // Inserts rows recovered from old SMS, which can be of any date, where
+    // the loader would have put them: rows of a sealed month are merged into
+    // that month's segment, the rest go into the hot set at their date's
+    // position. Returns false if anything failed to reach disk; as with
+    // addTransactions, commitPending() retries the hot set.
+    public synchronized boolean addRecoveredTransactions(List<Transaction> batch) {
+        if (batch.isEmpty()) return true;
+        uncommitted = true;
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -1);
+        int oldestHotMonth = CounterpartyAggregates.monthKey(cal);
+
+        Map<Integer, List<Transaction>> closedMonths = new TreeMap<>();
+        List<Transaction> hot = new ArrayList<>();
+        for (Transaction transaction : batch) {
+            if (transaction.getDate() != null) {
+                cal.setTime(transaction.getDate());
+                int monthKey = CounterpartyAggregates.monthKey(cal);
+                if (monthKey < oldestHotMonth) {
+                    List<Transaction> rows = closedMonths.get(monthKey);
+                    if (rows == null) {
+                        rows = new ArrayList<>();
+                        closedMonths.put(monthKey, rows);
+                    }
+                    rows.add(transaction);
+                    continue;
+                }
+            }
+            hot.add(transaction);
+        }
+
+        boolean sealed = true;
+        for (Map.Entry<Integer, List<Transaction>> entry : closedMonths.entrySet()) {
+            int year = entry.getKey() / 12;
+            int month = entry.getKey() % 12;
+            try {
+                sealMonth(year, month, entry.getValue());
+            } catch (IOException e) {
+                // The next load seals them from the hot set
+                Log.e(TAG, "Could not add recovered rows to " + year + "-" + (month + 1) + ", keeping them hot", e);
+                hot.addAll(entry.getValue());
+                sealed = false;
+            }
+        }
+        if (!closedMonths.isEmpty()) {
+            segments = archive.load();
+            indexSegments();
+        }
+        for (Transaction transaction : hot) {
+            transactions.add(hotPosition(transaction), transaction);
+        }
+        // Sequence numbers after the first inserted row moved; rebuilt on the next search
+        searchIndex.clear();
+        searchIndexBuilt = false;
+
+        List<DataChangeEvent> events = new ArrayList<>(batch.size());
+        long now = System.currentTimeMillis();
+        for (Transaction transaction : batch) {
+            counterparties.add(transaction);
+            rollups.add(transaction);
+            addToRollingWindows(transaction, now);
+            if (reconcilerBuilt) {
+                reconciler.add(transaction);
+            }
+            version++;
+            events.add(DataChangeEvent.inserted(transaction, version));
+        }
+        boolean durable = prefs.edit().putString(KEY_TRANSACTIONS,
+                JsonCodec.toJson(gson, transactions, transactions.size())).commit();
+        uncommitted = !durable;
+        if (!durable) {
+            Log.e(TAG, "Could not commit " + hot.size() + " recovered transactions");
+        }
+        changeNotifier.publishAll(events);
+        Log.d(TAG, "Recovered " + batch.size() + " transactions, " + (batch.size() - hot.size()) + " into archive segments");
+        return durable && sealed;
+    }
+
+    // Index in the newest-first hot set that keeps it ordered by date;
+    // undated rows stay at the front, where addTransactions puts them
+    private int hotPosition(Transaction transaction) {
+        if (transaction.getDate() == null) return 0;
+        long time = transaction.getDate().getTime();
+        int index = 0;
+        while (index < transactions.size()) {
+            Date date = transactions.get(index).getDate();
+            if (date != null && date.getTime() <= time) break;
+            index++;
+        }
+        return index;
+    }
+
+    // Writes the hot set again after addTransactions failed to commit it.
+    // True once it is on disk, or if there was nothing left to write.
+    public synchronized boolean commitPending() {
+        if (!uncommitted) return true;
+        uncommitted = !prefs.edit().putString(KEY_TRANSACTIONS,
+                JsonCodec.toJson(gson, transactions, transactions.size())).commit();
+        if (uncommitted) {
+            Log.e(TAG, "Still could not commit " + transactions.size() + " transactions");
+        }
+        return !uncommitted;
+    }
+
+    // Listeners receive INSERTED and CLEARED events, batched, on the given executor
+    public void addChangeListener(DataChangeListener listener, Executor executor) {
+        changeNotifier.addListener(listener, executor);
+    }
+
+    public void removeChangeListener(DataChangeListener listener) {
+        changeNotifier.removeListener(listener);
+    }
+
+    // Places where the balance chain breaks, i.e. where SMS were probably
+    // missed, oldest first. The first call reads every archive segment.
+    public synchronized List<BalanceReconciler.Gap> getBalanceGaps() {
+        ensureReconciler();
+        return reconciler.getGaps();
+    }
+
+    public synchronized int getBalanceGapCount() {
+        ensureReconciler();
+        return reconciler.getGapCount();
+    }
+
+    // Everything, newest first, including decoded archive segments
+    public synchronized List<Transaction> getAllTransactions() {
+        List<Transaction> all = new ArrayList<>(archivedCount + transactions.size());
+        all.addAll(transactions);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Transaction[] rows = segmentRows(i);
+            if (rows == null) continue;
+            for (int j = rows.length - 1; j >= 0; j--) {
+                all.add(rows[j]);
+            }
+        }
+        return all;
+    }
+
+    // The hot set only: the current and previous month, newest first
+    public synchronized List<Transaction> getRecentTransactions() {
         return new ArrayList<>(transactions);
     }
 
-    public List<Transaction> getTransactionsForDate(Date date) {
+    public synchronized int getArchivedCount() {
+        return archivedCount;
+    }
+
+    // Transactions by sequence number, where 0 is the oldest stored one. Rows
+    // are only ever prepended, so a sequence range keeps pointing at the same
+    // transactions until the next clear. Returned oldest first.
+    public synchronized List<Transaction> getTransactionsBySequence(int fromSequence, int toSequence) {
+        int to = Math.min(toSequence, archivedCount + transactions.size());
+        List<Transaction> page = new ArrayList<>(Math.max(0, to - fromSequence));
+        for (int sequence = Math.max(0, fromSequence); sequence < to; sequence++) {
+            Transaction transaction = transactionAt(sequence);
+            if (transaction == null) break;
+            page.add(transaction);
+        }
+        return page;
+    }
+
+    // Newest transactions where each query word starts a phone number, sender
+    // name word or reference number, capped at TransactionSearchIndex.MAX_RESULTS
+    public synchronized List<Transaction> searchTransactions(String query) {
+        String[] words = TransactionSearchIndex.queryWords(query);
+        List<Transaction> results = new ArrayList<>();
+        if (words.length == 0) return results;
+        
+        // Look up the longest word, the most selective, and check the rest per hit
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) longest = word;
+        }
+        
+        ensureSearchIndex();
+        int[] sequences = searchIndex.search(longest);
+        if (words.length > 1 && sequences.length == TransactionSearchIndex.MAX_RESULTS) {
+            // The list was cut off, so matches for the other words may be
+            // older than all of it: intersect the words' full postings instead
+            sequences = intersectAll(words);
+        }
+        for (int sequence : sequences) {
+            Transaction transaction = transactionAt(sequence);
+            if (transaction == null) continue;
+            if (words.length == 1 || TransactionSearchIndex.matchesAll(transaction, words)) {
+                results.add(transaction);
+            }
+        }
+        return results;
+    }
+
+    // Newest MAX_RESULTS sequence numbers matching every word, newest first.
+    // Walks the shortest posting list and binary-searches the others.
+    private int[] intersectAll(String[] words) {
+        int[][] postings = new int[words.length][];
+        int shortest = 0;
+        for (int i = 0; i < words.length; i++) {
+            postings[i] = searchIndex.searchAll(words[i]);
+            if (postings[i].length < postings[shortest].length) shortest = i;
+        }
+        
+        int[] result = new int[TransactionSearchIndex.MAX_RESULTS];
+        int count = 0;
+        int[] candidates = postings[shortest];
+        for (int i = candidates.length - 1; i >= 0 && count < result.length; i--) {
+            boolean inAll = true;
+            for (int j = 0; j < postings.length && inAll; j++) {
+                inAll = j == shortest || Arrays.binarySearch(postings[j], candidates[i]) >= 0;
+            }
+            if (inAll) result[count++] = candidates[i];
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Running totals for one phone number, or null if it never appeared
+    public synchronized CounterpartyAggregates.Counterparty getCounterparty(String phoneNumber) {
+        return counterparties.get(phoneNumber);
+    }
+
+    // Counterparties with the largest all-time volume, largest first
+    public synchronized List<CounterpartyAggregates.Counterparty> getTopCounterparties(int limit) {
+        return counterparties.top(limit);
+    }
+
+    // Time series of transfers, receipts, fees and balance, oldest first
+    public synchronized List<RollupEngine.RollupPoint> getRollup(RollupEngine.Granularity granularity) {
+        return rollups.series(granularity, System.currentTimeMillis());
+    }
+
+    public synchronized List<Transaction> getTransactionsForDate(Date date) {
+        Calendar targetCal = Calendar.getInstance();
+        targetCal.setTime(date);
+        ArchiveStore.Segment segment = archivedMonth(targetCal.get(Calendar.YEAR), targetCal.get(Calendar.MONTH));
+        if (segment == null) {
+            return hotTransactionsForDate(date);
+        }
+        
+        List<Transaction> dayTransactions = hotTransactionsForDate(date);
+        Calendar transCal = Calendar.getInstance();
+        Transaction[] rows = segmentRows(segments.indexOf(segment));
+        for (int i = rows != null ? rows.length - 1 : -1; i >= 0; i--) {
+            transCal.setTime(rows[i].getDate());
+            if (transCal.get(Calendar.DAY_OF_YEAR) == targetCal.get(Calendar.DAY_OF_YEAR)) {
+                dayTransactions.add(rows[i]);
+            }
+        }
+        return dayTransactions;
+    }
+
+    private List<Transaction> hotTransactionsForDate(Date date) {
         List<Transaction> dayTransactions = new ArrayList<>();
         Calendar targetCal = Calendar.getInstance();
         targetCal.setTime(date);
@@ -85,7 +693,19 @@ public class TransactionManager {
         return dayTransactions;
     }
 
-    public List<Transaction> getTransactionsForMonth(int year, int month) {
+    public synchronized List<Transaction> getTransactionsForMonth(int year, int month) {
+        List<Transaction> monthTransactions = hotTransactionsForMonth(year, month);
+        ArchiveStore.Segment segment = archivedMonth(year, month);
+        if (segment != null) {
+            Transaction[] rows = segmentRows(segments.indexOf(segment));
+            for (int i = rows != null ? rows.length - 1 : -1; i >= 0; i--) {
+                monthTransactions.add(rows[i]);
+            }
+        }
+        return monthTransactions;
+    }
+
+    private List<Transaction> hotTransactionsForMonth(int year, int month) {
         List<Transaction> monthTransactions = new ArrayList<>();
         Calendar transCal = Calendar.getInstance();
         
@@ -101,13 +721,14 @@ public class TransactionManager {
         return monthTransactions;
     }
 
-    public double getTotalTransferredToday() {
+    public synchronized double getTotalTransferredToday() {
         return getTotalTransferredForDate(new Date());
     }
 
-    public double getTotalTransferredForDate(Date date) {
-        List<Transaction> dayTransactions = getTransactionsForDate(date);
-        double total = 0;
+    public synchronized double getTotalTransferredForDate(Date date) {
+        List<Transaction> dayTransactions = hotTransactionsForDate(date);
+        RollupEngine.RollupPoint archivedDay = archivedDay(date);
+        double total = archivedDay != null ? archivedDay.getTransferred() : 0;
         
         for (Transaction transaction : dayTransactions) {
             if ("transfer".equals(transaction.getType())) {
@@ -118,14 +739,25 @@ public class TransactionManager {
         return total;
     }
 
-    public double getTotalTransferredThisMonth() {
+    // Daily rollup from an archive segment header, or null if the day is not archived
+    private RollupEngine.RollupPoint archivedDay(Date date) {
+        if (segments.isEmpty()) return null;
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        ArchiveStore.Segment segment = archivedMonth(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
+        return segment != null ? segment.getDay(date.getTime()) : null;
+    }
+
+    public synchronized double getTotalTransferredThisMonth() {
         Calendar cal = Calendar.getInstance();
         return getTotalTransferredForMonth(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
     }
 
-    public double getTotalTransferredForMonth(int year, int month) {
-        List<Transaction> monthTransactions = getTransactionsForMonth(year, month);
-        double total = 0;
+    public synchronized double getTotalTransferredForMonth(int year, int month) {
+        // Archived months are answered from the segment header, without decompressing rows
+        List<Transaction> monthTransactions = hotTransactionsForMonth(year, month);
+        ArchiveStore.Segment segment = archivedMonth(year, month);
+        double total = segment != null ? segment.getTransferred() : 0;
         
         for (Transaction transaction : monthTransactions) {
             if ("transfer".equals(transaction.getType())) {
@@ -136,13 +768,14 @@ public class TransactionManager {
         return total;
     }
 
-    public double getTotalReceivedToday() {
+    public synchronized double getTotalReceivedToday() {
         return getTotalReceivedForDate(new Date());
     }
 
-    public double getTotalReceivedForDate(Date date) {
-        List<Transaction> dayTransactions = getTransactionsForDate(date);
-        double total = 0;
+    public synchronized double getTotalReceivedForDate(Date date) {
+        List<Transaction> dayTransactions = hotTransactionsForDate(date);
+        RollupEngine.RollupPoint archivedDay = archivedDay(date);
+        double total = archivedDay != null ? archivedDay.getReceived() : 0;
         
         for (Transaction transaction : dayTransactions) {
             if ("received".equals(transaction.getType())) {
@@ -153,14 +786,16 @@ public class TransactionManager {
         return total;
     }
 
-    public double getTotalReceivedThisMonth() {
+    public synchronized double getTotalReceivedThisMonth() {
         Calendar cal = Calendar.getInstance();
         return getTotalReceivedForMonth(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
     }
 
-    public double getTotalReceivedForMonth(int year, int month) {
-        List<Transaction> monthTransactions = getTransactionsForMonth(year, month);
-        double total = 0;
+    public synchronized double getTotalReceivedForMonth(int year, int month) {
+        // Archived months are answered from the segment header, without decompressing rows
+        List<Transaction> monthTransactions = hotTransactionsForMonth(year, month);
+        ArchiveStore.Segment segment = archivedMonth(year, month);
+        double total = segment != null ? segment.getReceived() : 0;
         
         for (Transaction transaction : monthTransactions) {
             if ("received".equals(transaction.getType())) {
@@ -171,20 +806,89 @@ public class TransactionManager {
         return total;
     }
 
-    public void clearAllTransactions() {
+    // Rolling-window totals; constant time, no history scan
+    public synchronized double getTotalTransferredLast24Hours() {
+        return transferred24Hours.sum(System.currentTimeMillis());
+    }
+
+    public synchronized double getTotalTransferredLast30Days() {
+        return transferred30Days.sum(System.currentTimeMillis());
+    }
+
+    public synchronized double getTotalReceivedLast24Hours() {
+        return received24Hours.sum(System.currentTimeMillis());
+    }
+
+    public synchronized double getTotalReceivedLast30Days() {
+        return received30Days.sum(System.currentTimeMillis());
+    }
+
+    // Rows the dashboard has not acknowledged yet, oldest first. A late row can
+    // be sealed into any closed month, so every segment is considered, but only
+    // those whose header says they hold an id past the cursor are decoded.
+    public synchronized List<Transaction> getUnsyncedTransactions() {
+        long cursor = getSyncCursor();
+        List<Transaction> unsynced = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).getMaxId() <= cursor) continue;
+            Transaction[] rows = segmentRows(i);
+            if (rows == null) continue;
+            for (int j = rows.length - 1; j >= 0; j--) {
+                if (rows[j].getId() > cursor) unsynced.add(rows[j]);
+            }
+        }
+        Collections.reverse(unsynced);
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            Transaction transaction = transactions.get(i);
+            if (transaction.getId() > cursor) unsynced.add(transaction);
+        }
+        return unsynced;
+    }
+
+    public synchronized long getSyncCursor() {
+        return prefs.getLong(KEY_SYNC_CURSOR, 0);
+    }
+
+    // Called once a bulk upload up to and including `id` has succeeded
+    public synchronized void advanceSyncCursor(long id) {
+        if (id > getSyncCursor()) {
+            prefs.edit().putLong(KEY_SYNC_CURSOR, id).apply();
+        }
+    }
+
+    public synchronized void clearAllTransactions() {
         transactions.clear();
+        archive.deleteAll();
+        segments = new ArrayList<>();
+        indexSegments();
+        searchIndex.clear();
+        searchIndexBuilt = true;
+        counterparties.clear();
+        rollups.clear();
+        reconciler.clear();
+        reconcilerBuilt = true;
+        transferred24Hours.clear();
+        transferred30Days.clear();
+        received24Hours.clear();
+        received30Days.clear();
+        version++;
         saveTransactions();
+        changeNotifier.publish(DataChangeEvent.cleared(version));
         Log.d(TAG, "Cleared all transactions");
     }
 
-    public int getTransactionCount() {
-        return transactions.size();
+    public synchronized int getTransactionCount() {
+        return archivedCount + transactions.size();
     }
 
-    public Transaction getLatestTransaction() {
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized Transaction getLatestTransaction() {
         if (!transactions.isEmpty()) {
             return transactions.get(0);
         }
-        return null;
+        return archivedCount > 0 ? transactionAt(archivedCount - 1) : null;
     }
 }
@@ -0,0 +1,154 @@
+package com.vfcash.tracker;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Windowed view over a newest-first list of transactions. Rows are loaded in
+// fixed-size pages on a background executor as they are requested, pages
+// ahead of the scroll position are prefetched, and pages far from it are
+// dropped, so only a few pages of display models are held at any time.
+//
+// Pages are addressed by sequence number (0 = oldest) rather than position,
+// so inserting new transactions at the top does not invalidate them. All
+// methods except PageSource.load() run on the main thread.
+public class TransactionPager {
+    private static final String TAG = "TransactionPager";
+
+    static final int PAGE_SIZE = 50;
+    // Pages loaded on either side of the visible one
+    private static final int PREFETCH_PAGES = 1;
+    // Pages further than this from the visible one are released
+    private static final int RETAIN_PAGES = 3;
+
+    public interface PageSource {
+        // Called on the load executor; returns rows oldest first
+        List<Transaction> load(int fromSequence, int toSequence);
+    }
+
+    public interface Callback {
+        void onRowsLoaded(int fromPosition, int count);
+    }
+
+    private final TransactionDisplayModel.Factory modelFactory;
+    private final Executor loadExecutor;
+    private final Executor mainExecutor;
+    private final Callback callback;
+
+    private PageSource source;
+    private int count;
+    // Bumped on reset so loads started for an older source are discarded
+    private int generation;
+    private int centerPage = -1;
+    private final Map<Integer, List<TransactionDisplayModel>> pages = new HashMap<>();
+    private final Set<Integer> stalePages = new HashSet<>();
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    public TransactionPager(TransactionDisplayModel.Factory modelFactory, Executor loadExecutor,
+                            Executor mainExecutor, Callback callback) {
+        this.modelFactory = modelFactory;
+        this.loadExecutor = loadExecutor;
+        this.mainExecutor = mainExecutor;
+        this.callback = callback;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Drops every page and starts over on the given source
+    public void reset(PageSource source, int count) {
+        this.source = source;
+        this.count = count;
+        generation++;
+        centerPage = -1;
+        pages.clear();
+        stalePages.clear();
+        loadingPages.clear();
+    }
+
+    // Grows the list by rows added at the top; loaded pages keep their sequence range
+    public void insertAtTop(int inserted) {
+        if (inserted > 0) {
+            count += inserted;
+        }
+    }
+
+    // Model for a position, or null while its page is still loading
+    public TransactionDisplayModel get(int position) {
+        int sequence = count - 1 - position;
+        int page = sequence / PAGE_SIZE;
+
+        if (page != centerPage) {
+            centerPage = page;
+            evictDistantPages();
+        }
+
+        List<TransactionDisplayModel> rows = pages.get(page);
+        int offset = sequence - page * PAGE_SIZE;
+        if (rows != null && offset >= rows.size()) {
+            // The newest page was loaded before more rows were inserted into it
+            stalePages.add(page);
+        }
+        for (int p = page - PREFETCH_PAGES; p <= page + PREFETCH_PAGES; p++) {
+            requestPage(p);
+        }
+
+        return rows != null && offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    private void requestPage(int page) {
+        if (page < 0 || page * PAGE_SIZE >= count || loadingPages.contains(page)) return;
+        if (pages.containsKey(page) && !stalePages.contains(page)) return;
+
+        loadingPages.add(page);
+        PageSource pageSource = source;
+        int loadGeneration = generation;
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, count);
+
+        loadExecutor.execute(() -> {
+            List<Transaction> transactions = pageSource.load(from, to);
+            List<TransactionDisplayModel> rows = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                rows.add(modelFactory.create(transaction));
+            }
+            mainExecutor.execute(() -> onPageLoaded(loadGeneration, page, rows));
+        });
+    }
+
+    private void onPageLoaded(int loadGeneration, int page, List<TransactionDisplayModel> rows) {
+        if (loadGeneration != generation) return;
+        loadingPages.remove(page);
+        if (Math.abs(page - centerPage) > RETAIN_PAGES) return;
+
+        pages.put(page, rows);
+        stalePages.remove(page);
+
+        // Rows past the loaded size were inserted meanwhile; the next get() fetches them
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + rows.size(), count);
+        if (to > from) {
+            callback.onRowsLoaded(count - to, to - from);
+        }
+    }
+
+    private void evictDistantPages() {
+        Iterator<Integer> it = pages.keySet().iterator();
+        while (it.hasNext()) {
+            int page = it.next();
+            if (Math.abs(page - centerPage) > RETAIN_PAGES) {
+                it.remove();
+                stalePages.remove(page);
+                Log.d(TAG, "Released page " + page);
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Prefix index over phone digits, sender name words and reference numbers,
+// mapping search terms to transaction sequence numbers (0 = oldest).
+//
+// Terms live in a burst trie: a node keeps its terms in a small bucket until
+// it outgrows BURST_SIZE, then splits them into one child per next character.
+// Every node also remembers the newest MAX_RESULTS sequence numbers found
+// under it, so a prefix that resolves to a node is answered straight from that
+// list; one that ends inside a bucket only merges a handful of terms. Either
+// way a lookup never touches more than a bounded number of entries, however
+// many transactions are stored. searchAll() is the unbounded variant, for
+// queries whose later words may only match transactions older than that list.
+//
+// Sequence numbers must be added in increasing order. Not thread-safe;
+// TransactionManager guards it with its own lock.
+public class TransactionSearchIndex {
+    static final int MAX_RESULTS = 100;
+    private static final int BURST_SIZE = 32;
+    private static final int[] NO_RESULTS = new int[0];
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern PHONE_QUERY = Pattern.compile("[\\d\\s+\\-]+");
+
+    private Node root = new Node();
+
+    public void add(Transaction transaction, int sequence) {
+        for (String term : termsOf(transaction)) {
+            insert(term, sequence);
+        }
+    }
+
+    public void clear() {
+        root = new Node();
+    }
+
+    // Sequence numbers of the newest transactions with a term starting with
+    // the given word (as returned by queryWords()), newest first
+    public int[] search(String prefix) {
+        if (prefix.isEmpty()) return NO_RESULTS;
+
+        Node node = root;
+        for (int depth = 0; depth < prefix.length(); depth++) {
+            if (node.children == null) {
+                return searchBucket(node, prefix);
+            }
+            node = node.children.get(prefix.charAt(depth));
+            if (node == null) return NO_RESULTS;
+        }
+        return node.newestFirst();
+    }
+
+    // Every sequence number with a term starting with the given word, oldest
+    // first. Walks all postings under the prefix, so cost grows with matches.
+    public int[] searchAll(String prefix) {
+        if (prefix.isEmpty()) return NO_RESULTS;
+
+        List<Postings> matches = new ArrayList<>();
+        Node node = root;
+        for (int depth = 0; depth < prefix.length(); depth++) {
+            if (node.children == null) {
+                for (Map.Entry<String, Postings> entry : node.bucket.entrySet()) {
+                    if (entry.getKey().startsWith(prefix)) matches.add(entry.getValue());
+                }
+                return Postings.union(matches);
+            }
+            node = node.children.get(prefix.charAt(depth));
+            if (node == null) return NO_RESULTS;
+        }
+        collect(node, matches);
+        return Postings.union(matches);
+    }
+
+    private static void collect(Node node, List<Postings> matches) {
+        if (node.children == null) {
+            matches.addAll(node.bucket.values());
+            return;
+        }
+        if (node.terminal != null) matches.add(node.terminal);
+        for (Node child : node.children.values()) {
+            collect(child, matches);
+        }
+    }
+
+    // Phone digits, lowercased sender name words and the reference number
+    static List<String> termsOf(Transaction transaction) {
+        List<String> terms = new ArrayList<>(4);
+        String phone = digitsOf(transaction.getPhoneNumber());
+        if (!phone.isEmpty()) terms.add(phone);
+
+        String senderName = transaction.getSenderName();
+        if (senderName != null) {
+            for (String word : WORD_SEPARATOR.split(senderName.toLowerCase(Locale.ROOT))) {
+                if (!word.isEmpty() && !terms.contains(word)) terms.add(word);
+            }
+        }
+
+        String reference = transaction.getTransactionNumber();
+        if (reference != null) {
+            reference = reference.trim().toLowerCase(Locale.ROOT);
+            if (!reference.isEmpty() && !terms.contains(reference)) terms.add(reference);
+        }
+        return terms;
+    }
+
+    // Splits a query into lowercased words. Phone numbers are matched on
+    // digits, so "010 123" is the single word "010123".
+    static String[] queryWords(String query) {
+        if (query == null) return new String[0];
+        String trimmed = query.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.isEmpty()) return new String[0];
+        if (PHONE_QUERY.matcher(trimmed).matches()) {
+            String digits = digitsOf(trimmed);
+            return digits.isEmpty() ? new String[0] : new String[]{digits};
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(trimmed)) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // True if every word is a prefix of one of the transaction's terms
+    static boolean matchesAll(Transaction transaction, String[] words) {
+        List<String> terms = termsOf(transaction);
+        for (String word : words) {
+            boolean found = false;
+            for (String term : terms) {
+                if (term.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static String digitsOf(String value) {
+        if (value == null) return "";
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+        }
+        return digits.toString();
+    }
+
+    private void insert(String term, int sequence) {
+        Node node = root;
+        int depth = 0;
+        while (true) {
+            node.addRecent(sequence);
+            if (node.children == null) break;
+            if (depth == term.length()) {
+                // The term ends at an inner node
+                node.terminal = Postings.append(node.terminal, sequence);
+                return;
+            }
+            Node child = node.children.get(term.charAt(depth));
+            if (child == null) {
+                child = new Node();
+                node.children.put(term.charAt(depth), child);
+            }
+            node = child;
+            depth++;
+        }
+
+        Postings postings = node.bucket.get(term);
+        node.bucket.put(term, Postings.append(postings, sequence));
+        if (node.bucket.size() > BURST_SIZE) {
+            burst(node, depth);
+        }
+    }
+
+    // Turns a bucket node into an inner node with one child per next character
+    private static void burst(Node node, int depth) {
+        Map<String, Postings> bucket = node.bucket;
+        node.bucket = null;
+        node.children = new HashMap<>();
+
+        for (Map.Entry<String, Postings> entry : bucket.entrySet()) {
+            String term = entry.getKey();
+            if (term.length() == depth) {
+                node.terminal = entry.getValue();
+                continue;
+            }
+            Node child = node.children.get(term.charAt(depth));
+            if (child == null) {
+                child = new Node();
+                node.children.put(term.charAt(depth), child);
+            }
+            child.bucket.put(term, entry.getValue());
+        }
+
+        for (Node child : node.children.values()) {
+            child.rebuildRecent();
+            if (child.bucket.size() > BURST_SIZE) {
+                burst(child, depth + 1);
+            }
+        }
+    }
+
+    private static int[] searchBucket(Node node, String prefix) {
+        List<Postings> matches = new ArrayList<>();
+        for (Map.Entry<String, Postings> entry : node.bucket.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                matches.add(entry.getValue());
+            }
+        }
+        return Postings.newestOf(matches, MAX_RESULTS);
+    }
+
+    private static final class Node {
+        Map<String, Postings> bucket = new HashMap<>();
+        Map<Character, Node> children; // non-null once burst
+        Postings terminal;             // terms ending exactly here, once burst
+
+        // Ring of the newest sequence numbers under this node
+        int[] recent = new int[4];
+        int recentStart;
+        int recentSize;
+
+        void addRecent(int sequence) {
+            // A transaction with several terms under this node is listed once
+            if (recentSize > 0 && recent[(recentStart + recentSize - 1) % recent.length] == sequence) {
+                return;
+            }
+            if (recentSize < MAX_RESULTS) {
+                if (recentSize == recent.length) {
+                    int[] grown = new int[Math.min(recent.length * 2, MAX_RESULTS)];
+                    for (int i = 0; i < recentSize; i++) {
+                        grown[i] = recent[(recentStart + i) % recent.length];
+                    }
+                    recent = grown;
+                    recentStart = 0;
+                }
+                recent[(recentStart + recentSize) % recent.length] = sequence;
+                recentSize++;
+            } else {
+                recent[recentStart] = sequence;
+                recentStart = (recentStart + 1) % recent.length;
+            }
+        }
+
+        void rebuildRecent() {
+            int[] newest = Postings.newestOf(new ArrayList<>(bucket.values()), MAX_RESULTS);
+            recent = new int[Math.max(4, newest.length)];
+            recentStart = 0;
+            recentSize = newest.length;
+            for (int i = 0; i < newest.length; i++) {
+                recent[i] = newest[newest.length - 1 - i];
+            }
+        }
+
+        int[] newestFirst() {
+            int[] result = new int[recentSize];
+            for (int i = 0; i < recentSize; i++) {
+                result[i] = recent[(recentStart + recentSize - 1 - i) % recent.length];
+            }
+            return result;
+        }
+    }
+
+    // Ascending sequence numbers of one term
+    private static final class Postings {
+        int[] sequences = new int[2];
+        int size;
+
+        static Postings append(Postings postings, int sequence) {
+            if (postings == null) postings = new Postings();
+            if (postings.size > 0 && postings.sequences[postings.size - 1] == sequence) {
+                return postings;
+            }
+            if (postings.size == postings.sequences.length) {
+                postings.sequences = Arrays.copyOf(postings.sequences, postings.size * 2);
+            }
+            postings.sequences[postings.size++] = sequence;
+            return postings;
+        }
+
+        // All distinct sequence numbers across postings, ascending
+        static int[] union(List<Postings> postingsList) {
+            if (postingsList.size() == 1) {
+                Postings postings = postingsList.get(0);
+                return Arrays.copyOf(postings.sequences, postings.size);
+            }
+            int total = 0;
+            for (Postings postings : postingsList) {
+                total += postings.size;
+            }
+            int[] merged = new int[total];
+            int n = 0;
+            for (Postings postings : postingsList) {
+                System.arraycopy(postings.sequences, 0, merged, n, postings.size);
+                n += postings.size;
+            }
+            Arrays.sort(merged);
+
+            int count = 0;
+            for (int i = 0; i < total; i++) {
+                if (count == 0 || merged[count - 1] != merged[i]) {
+                    merged[count++] = merged[i];
+                }
+            }
+            return count == total ? merged : Arrays.copyOf(merged, count);
+        }
+
+        // Newest `limit` distinct sequence numbers across postings, newest first
+        static int[] newestOf(List<Postings> postingsList, int limit) {
+            int total = 0;
+            for (Postings postings : postingsList) {
+                total += Math.min(postings.size, limit);
+            }
+            int[] merged = new int[total];
+            int n = 0;
+            for (Postings postings : postingsList) {
+                int from = Math.max(0, postings.size - limit);
+                System.arraycopy(postings.sequences, from, merged, n, postings.size - from);
+                n += postings.size - from;
+            }
+            Arrays.sort(merged);
+
+            int[] result = new int[Math.min(limit, total)];
+            int count = 0;
+            for (int i = total - 1; i >= 0 && count < result.length; i--) {
+                if (count == 0 || result[count - 1] != merged[i]) {
+                    result[count++] = merged[i];
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.vfcash.tracker;
+
+import com.google.gson.annotations.SerializedName;
+
+// Kind of a transaction. The names are what the dashboard, the stored JSON
+// and exports have always used, so getName() round-trips with the old strings.
+public enum TransactionType {
+    @SerializedName("transfer")
+    TRANSFER("transfer"),
+    @SerializedName("received")
+    RECEIVED("received");
+
+    private final String name;
+
+    TransactionType(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    // Null for null or unrecognised names
+    public static TransactionType fromName(String name) {
+        if (TRANSFER.name.equals(name)) return TRANSFER;
+        if (RECEIVED.name.equals(name)) return RECEIVED;
+        return null;
+    }
+}
@@ -0,0 +1,251 @@
+package com.vfcash.tracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary encoding for transaction uploads. Layout (all integers are
+// unsigned LEB128 varints, signed values are zigzag encoded first):
+//
+//   magic 'V' 'F', version byte
+//   string table: count, then (byteLength, UTF-8 bytes) per entry
+//   transaction count, then per transaction:
+//     id (byteLength + UTF-8), type byte,
+//     date as zigzag delta from the previous transaction's epoch millis,
+//     amount, balanceBefore, balanceAfter, serviceFees as zigzag piasters,
+//     phoneNumber and senderName as string table index + 1 (0 = null),
+//     transactionNumber as byteLength + 1 followed by UTF-8 (0 = null)
+//
+// Phone numbers and sender names repeat heavily across a history, so they are
+// written once in the string table. The dashboard decoder lives in
+// src/lib/wire-format.ts and must be kept in sync with this class; both are
+// checked against src/lib/wire-format.fixture.json.
+public final class TransactionWireFormat {
+    public static final String MEDIA_TYPE = "application/x-vfcash-transactions";
+
+    private static final byte MAGIC_0 = 'V';
+    private static final byte MAGIC_1 = 'F';
+    private static final byte VERSION = 1;
+
+    private static final int TYPE_TRANSFER = 0;
+    private static final int TYPE_RECEIVED = 1;
+
+    private TransactionWireFormat() {}
+
+    public static byte[] encode(Transaction... transactions) {
+        Map<String, Integer> index = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            intern(transaction.getPhoneNumber(), index, table);
+            intern(transaction.getSenderName(), index, table);
+        }
+
+        Writer out = new Writer(32 + transactions.length * 40);
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(VERSION);
+
+        out.writeVarint(table.size());
+        for (String value : table) {
+            out.writeString(value);
+        }
+
+        out.writeVarint(transactions.length);
+        long previousTime = 0;
+        for (Transaction transaction : transactions) {
+            out.writeString(String.valueOf(transaction.getId()));
+            out.writeByte("received".equals(transaction.getType()) ? TYPE_RECEIVED : TYPE_TRANSFER);
+
+            Date date = transaction.getDate();
+            long time = date != null ? date.getTime() : 0;
+            out.writeSignedVarint(time - previousTime);
+            previousTime = time;
+
+            out.writeSignedVarint(toPiasters(transaction.getAmount()));
+            out.writeSignedVarint(toPiasters(transaction.getBalanceBefore()));
+            out.writeSignedVarint(toPiasters(transaction.getBalanceAfter()));
+            out.writeSignedVarint(toPiasters(transaction.getServiceFees()));
+
+            out.writeVarint(reference(transaction.getPhoneNumber(), index));
+            out.writeVarint(reference(transaction.getSenderName(), index));
+            out.writeNullableString(transaction.getTransactionNumber());
+        }
+        return out.toByteArray();
+    }
+
+    public static Transaction[] decode(byte[] data) throws IOException {
+        Reader in = new Reader(data);
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IOException("Not a VF-Cash transaction payload");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported wire format version: " + version);
+        }
+
+        String[] table = new String[in.readCount()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readString();
+        }
+
+        Transaction[] transactions = new Transaction[in.readCount()];
+        long previousTime = 0;
+        for (int i = 0; i < transactions.length; i++) {
+            Transaction transaction = Transaction.blank();
+            transaction.setId(parseId(in.readString()));
+            transaction.setType(in.readByte() == TYPE_RECEIVED ? "received" : "transfer");
+
+            previousTime += in.readSignedVarint();
+            transaction.setDate(new Date(previousTime));
+
+            transaction.setAmount(fromPiasters(in.readSignedVarint()));
+            transaction.setBalanceBefore(fromPiasters(in.readSignedVarint()));
+            transaction.setBalanceAfter(fromPiasters(in.readSignedVarint()));
+            transaction.setServiceFees(fromPiasters(in.readSignedVarint()));
+
+            transaction.setPhoneNumber(lookup(table, in.readCount()));
+            transaction.setSenderName(lookup(table, in.readCount()));
+            transaction.setTransactionNumber(in.readNullableString());
+            transactions[i] = transaction;
+        }
+        return transactions;
+    }
+
+    // Ids travel as decimal strings, as they did when they were Strings in the app
+    private static long parseId(String id) throws IOException {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed transaction id: " + id);
+        }
+    }
+
+    private static void intern(String value, Map<String, Integer> index, List<String> table) {
+        if (value != null && !index.containsKey(value)) {
+            index.put(value, table.size());
+            table.add(value);
+        }
+    }
+
+    private static int reference(String value, Map<String, Integer> index) {
+        return value == null ? 0 : index.get(value) + 1;
+    }
+
+    private static String lookup(String[] table, int reference) throws IOException {
+        if (reference == 0) return null;
+        if (reference > table.length) {
+            throw new IOException("String table reference out of range: " + reference);
+        }
+        return table[reference - 1];
+    }
+
+    private static long toPiasters(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromPiasters(long piasters) {
+        return piasters / 100.0;
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeByte(int value) {
+            write(value);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() throws IOException {
+            if (position >= data.length) {
+                throw new IOException("Unexpected end of payload");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSignedVarint() throws IOException {
+            long raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int readCount() throws IOException {
+            long value = readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Count out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        String readString() throws IOException {
+            return readUtf8(readCount());
+        }
+
+        String readNullableString() throws IOException {
+            int length = readCount();
+            return length == 0 ? null : readUtf8(length - 1);
+        }
+
+        private String readUtf8(int length) throws IOException {
+            if (length > data.length - position) {
+                throw new IOException("Unexpected end of payload");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.vfcash.tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Knows which wallets exist and which one the UI is showing. A wallet is a
+// partition of the stores (TransactionManager, LimitsManager) keyed by the
+// SIM subscription its SMS arrive on. The first line ever seen, and any SMS
+// without subscription info, map to DEFAULT_WALLET, whose partition lives in
+// the original preference files so existing histories need no migration.
+public class WalletRegistry {
+    private static final String TAG = "WalletRegistry";
+    private static final String PREFS_NAME = "vfcash_wallets";
+    private static final String KEY_ACTIVE_WALLET = "active_wallet";
+    private static final String KEY_SUBSCRIPTION_PREFIX = "subscription_";
+    private static final String KEY_LABEL_PREFIX = "label_";
+
+    public static final String DEFAULT_WALLET = "default";
+
+    private static WalletRegistry instance;
+    private final SharedPreferences prefs;
+    private volatile String activeWallet;
+
+    private WalletRegistry(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        activeWallet = prefs.getString(KEY_ACTIVE_WALLET, DEFAULT_WALLET);
+    }
+
+    public static synchronized WalletRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new WalletRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Suffix for a wallet's preference files and archive directory
+    static String storageSuffix(String wallet) {
+        return DEFAULT_WALLET.equals(wallet) ? "" : "_" + wallet;
+    }
+
+    public String getActiveWallet() {
+        return activeWallet;
+    }
+
+    public void setActiveWallet(String wallet) {
+        activeWallet = wallet;
+        prefs.edit().putString(KEY_ACTIVE_WALLET, wallet).apply();
+        Log.d(TAG, "Active wallet set to: " + wallet);
+    }
+
+    // The wallet an SMS received on this subscription belongs to
+    public synchronized String walletForSubscription(int subscriptionId) {
+        if (subscriptionId == SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
+            return DEFAULT_WALLET;
+        }
+        String key = KEY_SUBSCRIPTION_PREFIX + subscriptionId;
+        String wallet = prefs.getString(key, null);
+        if (wallet == null) {
+            wallet = hasSubscriptions() ? "sim" + subscriptionId : DEFAULT_WALLET;
+            prefs.edit()
+                    .putString(key, wallet)
+                    .putString(KEY_LABEL_PREFIX + wallet, "SIM line " + (countSubscriptions() + 1))
+                    .apply();
+            Log.d(TAG, "Subscription " + subscriptionId + " mapped to wallet " + wallet);
+        }
+        return wallet;
+    }
+
+    // Every wallet that has received an SMS, plus the default one, default first
+    public synchronized List<String> getWallets() {
+        List<String> wallets = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getKey().startsWith(KEY_SUBSCRIPTION_PREFIX) && entry.getValue() instanceof String) {
+                String wallet = (String) entry.getValue();
+                if (!DEFAULT_WALLET.equals(wallet) && !wallets.contains(wallet)) {
+                    wallets.add(wallet);
+                }
+            }
+        }
+        Collections.sort(wallets);
+        wallets.add(0, DEFAULT_WALLET);
+        return wallets;
+    }
+
+    public String getLabel(String wallet) {
+        String label = prefs.getString(KEY_LABEL_PREFIX + wallet, null);
+        if (label != null) return label;
+        return DEFAULT_WALLET.equals(wallet) ? "Main line" : wallet;
+    }
+
+    private boolean hasSubscriptions() {
+        return countSubscriptions() > 0;
+    }
+
+    private int countSubscriptions() {
+        int count = 0;
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(KEY_SUBSCRIPTION_PREFIX)) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+package com.vfcash.tracker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Defers non-critical initialisation until the first frame is on screen and
+// then runs it on a background thread, so it neither delays nor competes
+// with the first draw. Tasks run in the order they were added.
+public class WarmUpScheduler {
+    private static final String TAG = "WarmUpScheduler";
+
+    private static final ExecutorService WARM_UP_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public WarmUpScheduler add(Runnable task) {
+        tasks.add(task);
+        return this;
+    }
+
+    // Must be called on the main thread, e.g. from onCreate after setContentView
+    public void scheduleAfterFirstFrame(View root) {
+        ViewTreeObserver.OnDrawListener onDraw = new ViewTreeObserver.OnDrawListener() {
+            private boolean fired;
+
+            @Override
+            public void onDraw() {
+                if (fired) return;
+                fired = true;
+                // Listeners cannot be removed during dispatch, and posting lets the frame finish
+                mainHandler.post(() -> {
+                    if (root.getViewTreeObserver().isAlive()) {
+                        root.getViewTreeObserver().removeOnDrawListener(this);
+                    }
+                    StartupTracer.getInstance().firstFrameDrawn();
+                    WARM_UP_EXECUTOR.execute(WarmUpScheduler.this::runAll);
+                });
+            }
+        };
+        root.getViewTreeObserver().addOnDrawListener(onDraw);
+    }
+
+    private void runAll() {
+        StartupTracer tracer = StartupTracer.getInstance();
+        long start = tracer.begin();
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Warm-up task failed", e);
+            }
+        }
+        tracer.end(StartupTracer.Section.WARM_UP, start);
+    }
+}
@@ -0,0 +1,157 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-process stand-in for the Next.js API that answers like src/app/api:
+// stores posted rows by id, reports bulk rows with a non-positive amount
+// under "rejected" instead of storing them, advertises the wire format in Accept-Post when
+// asked to and 415s it otherwise, and can add latency, fail requests or cut
+// responses short.
+final class FakeDashboard {
+    static {
+        // Otherwise Nagle's algorithm holds each small reply back until the
+        // client's delayed ACK, about 40 ms a request on loopback
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    final Map<String, Transaction> received = new ConcurrentHashMap<>();
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicInteger jsonRequests = new AtomicInteger();
+    volatile long latencyMillis;
+    volatile boolean truncate;
+    volatile boolean acceptWireFormat;
+    volatile String lastLimits;
+
+    private final Gson gson;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    FakeDashboard(Gson gson) throws IOException {
+        this.gson = gson;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/transactions", exchange -> {
+            // Like the routes' catch-all: a row that does not decode is a 500, not a hang
+            try {
+                transactions(exchange);
+            } catch (RuntimeException | IOException e) {
+                e.printStackTrace();
+                respond(exchange, 500, "{\"success\":false,\"error\":\"" + e + "\"}");
+            }
+        });
+        server.createContext("/api/limits", exchange -> {
+            lastLimits = new String(readBody(exchange), StandardCharsets.UTF_8);
+            respond(exchange, 200, "{\"success\":true}");
+        });
+        server.createContext("/api/health", exchange -> respond(exchange, 200, "{\"status\":\"ok\"}"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    Transaction get(Transaction sent) {
+        return received.get(String.valueOf(sent.getId()));
+    }
+
+    // Both /api/transactions and /api/transactions/bulk
+    private void transactions(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binary = TransactionWireFormat.MEDIA_TYPE.equals(contentType);
+        if (binary && !acceptWireFormat) {
+            respond(exchange, 415, "{\"success\":false,\"error\":\"Unsupported content type\"}");
+            return;
+        }
+        if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            respond(exchange, 500, "{\"success\":false,\"error\":\"Failed to process bulk transactions\"}");
+            return;
+        }
+
+        Transaction[] rows;
+        if (binary) {
+            rows = TransactionWireFormat.decode(body);
+        } else {
+            jsonRequests.incrementAndGet();
+            String json = new String(body, StandardCharsets.UTF_8);
+            rows = exchange.getRequestURI().getPath().endsWith("/bulk") ?
+                    gson.fromJson(json, Transaction[].class) :
+                    new Transaction[]{gson.fromJson(json, Transaction.class)};
+        }
+        StringBuilder rejected = new StringBuilder();
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i].getAmount() <= 0) {
+                if (rejected.length() > 0) rejected.append(',');
+                rejected.append("{\"index\":").append(i).append(",\"id\":\"").append(rows[i].getId())
+                        .append("\",\"error\":\"Amount must be a positive number\"}");
+                continue;
+            }
+            received.put(String.valueOf(rows[i].getId()), rows[i]);
+        }
+
+        String reply = "{\"success\":true,\"summary\":{\"totalProcessed\":" + rows.length + "}," +
+                "\"rejected\":[" + rejected + "]}";
+        if (truncate) {
+            // Promise the whole reply, send a few bytes, then drop the connection
+            byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes, 0, 8);
+            out.flush();
+            exchange.close();
+            return;
+        }
+        respond(exchange, 200, reply);
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int code, String reply) throws IOException {
+        byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+        if (acceptWireFormat) {
+            exchange.getResponseHeaders().set("Accept-Post", TransactionWireFormat.MEDIA_TYPE + ", application/json");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Loading and saving a 100k row history the way TransactionManager does,
+// against reflective Gson's toJson and fromJson as it did before JsonCodec.
+// Run with -Pbenchmarks; see build.gradle.
+public class JsonCodecBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final Type LIST_TYPE = new TypeToken<List<Transaction>>() {}.getType();
+
+    @Test
+    public void loadsAndSavesAtLeastTwiceAsFastAsReflection() {
+        List<Transaction> history = SyntheticHistory.rows(ROWS);
+        Gson reflective = new Gson();
+        Gson codec = JsonCodec.gson();
+        String reflectiveJson = reflective.toJson(history, LIST_TYPE);
+        String codecJson = JsonCodec.toJson(codec, history, ROWS);
+
+        long[] reflectiveNanos = {Long.MAX_VALUE, Long.MAX_VALUE};
+        long[] codecNanos = {Long.MAX_VALUE, Long.MAX_VALUE};
+        // Alternate the two so neither gets a warmer JIT or a quieter machine
+        for (int pass = 0; pass < 5; pass++) {
+            time(reflective, false, history, reflectiveJson, reflectiveNanos);
+            time(codec, true, history, codecJson, codecNanos);
+        }
+        System.out.printf("JSON at %d rows: load %d ms reflective, %d ms JsonCodec (%.1fx); " +
+                        "save %d ms reflective, %d ms JsonCodec (%.1fx)%n", ROWS,
+                reflectiveNanos[0] / 1000000, codecNanos[0] / 1000000, (double) reflectiveNanos[0] / codecNanos[0],
+                reflectiveNanos[1] / 1000000, codecNanos[1] / 1000000, (double) reflectiveNanos[1] / codecNanos[1]);
+
+        assertTrue("JsonCodec loaded in " + codecNanos[0] / 1000000 + " ms against " +
+                reflectiveNanos[0] / 1000000 + " ms for reflection", codecNanos[0] * 2 <= reflectiveNanos[0]);
+        assertTrue("JsonCodec saved in " + codecNanos[1] / 1000000 + " ms against " +
+                reflectiveNanos[1] / 1000000 + " ms for reflection", codecNanos[1] * 2 <= reflectiveNanos[1]);
+    }
+
+    // Keeps the best load and save times seen, in that order
+    private static void time(Gson gson, boolean codec, List<Transaction> history, String json, long[] best) {
+        long start = System.nanoTime();
+        List<Transaction> read = gson.fromJson(json, LIST_TYPE);
+        long loaded = System.nanoTime();
+        String written = codec ? JsonCodec.toJson(gson, history, history.size()) : gson.toJson(history, LIST_TYPE);
+        long saved = System.nanoTime();
+        assertEquals(ROWS, read.size());
+        assertEquals(json.length(), written.length());
+        best[0] = Math.min(best[0], loaded - start);
+        best[1] = Math.min(best[1], saved - loaded);
+    }
+}
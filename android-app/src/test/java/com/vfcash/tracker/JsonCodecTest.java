@@ -0,0 +1,90 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// JsonCodec round trips, and the older shapes its readers still have to
+// accept. Speed against reflective Gson is in JsonCodecBenchmark.
+public class JsonCodecTest {
+
+    private static final Type LIST_TYPE = new TypeToken<List<Transaction>>() {}.getType();
+
+    @Test
+    public void historyRoundTrips() {
+        List<Transaction> history = SyntheticHistory.rows(1000);
+        history.get(1).setPhoneNumber(null);
+        history.get(2).setDate(null);
+        List<Transaction> read = JsonCodec.gson().fromJson(JsonCodec.gson().toJson(history, LIST_TYPE), LIST_TYPE);
+        assertEquals(history.size(), read.size());
+        for (int i = 0; i < history.size(); i++) {
+            SyntheticHistory.assertSameRow(history.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void limitsRoundTrip() {
+        ApiClient.LimitsData limits = new ApiClient.LimitsData(2000, 60000, 4000, 120000);
+        ApiClient.LimitsData read = JsonCodec.gson().fromJson(JsonCodec.gson().toJson(limits), ApiClient.LimitsData.class);
+        assertEquals(2000, read.getDailyTransferLimit(), 0);
+        assertEquals(60000, read.getMonthlyTransferLimit(), 0);
+        assertEquals(4000, read.getDailyReceiveLimit(), 0);
+        assertEquals(120000, read.getMonthlyReceiveLimit(), 0);
+    }
+
+    @Test
+    public void readsWhatOlderVersionsWrote() {
+        // Reflective Gson's output: textual dates, ids and types as plain fields
+        List<Transaction> history = SyntheticHistory.rows(3);
+        Gson reflective = new GsonBuilder().create();
+        StringBuilder legacy = new StringBuilder("[");
+        for (Transaction row : history) {
+            if (legacy.length() > 1) legacy.append(',');
+            legacy.append("{\"id\":\"").append(row.getId())
+                    .append("\",\"type\":\"").append(row.getType())
+                    .append("\",\"amount\":").append(row.getAmount())
+                    .append(",\"phoneNumber\":\"").append(row.getPhoneNumber())
+                    .append("\",\"date\":").append(reflective.toJson(row.getDate()))
+                    .append(",\"balanceBefore\":").append(row.getBalanceBefore())
+                    .append(",\"balanceAfter\":").append(row.getBalanceAfter())
+                    .append(",\"serviceFees\":").append(row.getServiceFees()).append('}');
+        }
+        List<Transaction> read = JsonCodec.gson().fromJson(legacy.append(']').toString(), LIST_TYPE);
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(history.get(i).getId(), read.get(i).getId());
+            assertEquals(history.get(i).getType(), read.get(i).getType());
+            assertEquals(history.get(i).getPhoneNumber(), read.get(i).getPhoneNumber());
+            // Gson's textual form drops milliseconds, and these rows have none
+            assertEquals(history.get(i).getDate(), read.get(i).getDate());
+        }
+
+        Transaction numericId = JsonCodec.gson().fromJson(
+                "{\"id\":1700000000123,\"type\":\"transfer\",\"amount\":5,\"unknown\":[1,2]}", Transaction.class);
+        assertEquals(1700000000123L, numericId.getId());
+        assertEquals(5, numericId.getAmount(), 0);
+
+        Transaction isoDate = JsonCodec.gson().fromJson(
+                "{\"id\":\"1\",\"date\":\"2023-11-14T22:13:20.000Z\"}", Transaction.class);
+        assertEquals(new Date(1700000000000L), isoDate.getDate());
+
+        // A type from a newer version is kept as written, not dropped on the next save
+        Transaction unknownType = JsonCodec.gson().fromJson("{\"id\":\"2\",\"type\":\"cashout\"}", Transaction.class);
+        assertEquals("cashout", unknownType.getType());
+        assertNull(unknownType.getTransactionType());
+        assertTrue(JsonCodec.gson().toJson(unknownType).contains("\"type\":\"cashout\""));
+
+        Transaction badId = JsonCodec.gson().fromJson("{\"id\":\"abc\",\"type\":\"received\"}", Transaction.class);
+        assertEquals(0, badId.getId());
+        assertEquals("received", badId.getType());
+    }
+}
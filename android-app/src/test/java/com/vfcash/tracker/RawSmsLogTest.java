@@ -0,0 +1,185 @@
+package com.vfcash.tracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Compaction and the full-log ring: offsets stay valid across both, and a
+// full log makes room by dropping its oldest records rather than new ones.
+// A record the header points at but that never reached disk is dropped.
+public class RawSmsLogTest {
+
+    private static final int MAX_SIZE = 8 * 1024 * 1024;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("rawsms").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void compactDropsRecoveredRecordsAndKeepsTheEnd() {
+        RawSmsLog log = new RawSmsLog(new File(dir, "raw_sms.log"));
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            offsets.add(log.append(1000 + i, "wallet", "VF-Cash", "message " + i));
+        }
+        long sizeBefore = log.size();
+        long end = log.scan(0, (offset, receivedAt, wallet, sender, body) -> { });
+
+        Set<Long> recovered = new HashSet<>();
+        for (int i = 0; i < 10; i += 2) {
+            recovered.add(offsets.get(i));
+        }
+        log.compact(recovered);
+
+        assertTrue(log.size() < sizeBefore);
+        List<String> bodies = bodies(log, 0);
+        assertEquals(5, bodies.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("message " + (i * 2 + 1), bodies.get(i));
+        }
+        // A resume offset taken before compacting still skips everything seen
+        assertTrue(bodies(log, end).isEmpty());
+        long next = log.append(2000, "wallet", "VF-Cash", "after compaction");
+        assertEquals(end, next);
+        assertEquals(1, bodies(log, end).size());
+    }
+
+    @Test
+    public void fullLogDropsTheOldestRecords() {
+        RawSmsLog log = new RawSmsLog(new File(dir, "raw_sms.log"));
+        char[] filler = new char[1000];
+        Arrays.fill(filler, 'x');
+        String body = new String(filler);
+
+        long lastOffset = -1;
+        int appended = 0;
+        // Well past MAX_SIZE, so the ring has to wrap a few times
+        while (appended < 3 * MAX_SIZE / body.length()) {
+            long offset = log.append(appended, "wallet", "VF-Cash", body + appended);
+            assertTrue("Append " + appended + " was dropped", offset > lastOffset);
+            lastOffset = offset;
+            appended++;
+        }
+        assertTrue(log.size() <= MAX_SIZE);
+        assertTrue(new File(dir, "raw_sms.log").length() <= MAX_SIZE);
+
+        List<String> bodies = bodies(log, 0);
+        // Newest kept, in order, and the oldest gone
+        assertEquals(body + (appended - 1), bodies.get(bodies.size() - 1));
+        assertFalse(bodies.contains(body + 0));
+        int first = Integer.parseInt(bodies.get(0).substring(body.length()));
+        for (int i = 0; i < bodies.size(); i++) {
+            assertEquals(body + (first + i), bodies.get(i));
+        }
+        // The last record is still where its offset says
+        assertEquals(1, bodies(log, lastOffset).size());
+    }
+
+    @Test
+    public void upgradesVersion1LogsKeepingOffsets() throws IOException {
+        File file = new File(dir, "raw_sms.log");
+        long[] offsets = writeVersion1(file, "first", "second", "third");
+
+        RawSmsLog log = new RawSmsLog(file);
+        assertEquals(3, bodies(log, 0).size());
+        List<String> fromSecond = bodies(log, offsets[1]);
+        assertEquals(2, fromSecond.size());
+        assertEquals("second", fromSecond.get(0));
+        assertEquals(offsets[2] + record("third").length, log.append(4, "wallet", "VF-Cash", "fourth"));
+    }
+
+    @Test
+    public void tornAppendIsDroppedOnOpen() throws IOException {
+        File file = new File(dir, "raw_sms.log");
+        RawSmsLog log = new RawSmsLog(file);
+        log.append(1, "wallet", "VF-Cash", "first");
+        long second = log.append(2, "wallet", "VF-Cash", "second");
+        long end = log.scan(0, (offset, receivedAt, wallet, sender, body) -> { });
+        assertTrue(log.hasRecordsAfter(second));
+        assertFalse(log.hasRecordsAfter(end));
+
+        // The header reached disk but the second record's pages did not
+        int physical = (int) (second - 16 + 24);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(physical);
+            out.write(new byte[(int) (end - second)]);
+        }
+
+        RawSmsLog reopened = new RawSmsLog(file);
+        assertEquals(Arrays.asList("first"), bodies(reopened, 0));
+        assertFalse(reopened.hasRecordsAfter(second));
+        assertEquals(second, reopened.append(3, "wallet", "VF-Cash", "third"));
+        assertEquals(Arrays.asList("first", "third"), bodies(new RawSmsLog(file), 0));
+    }
+
+    private static List<String> bodies(RawSmsLog log, long from) {
+        List<String> bodies = new ArrayList<>();
+        log.scan(from, (offset, receivedAt, wallet, sender, body) -> bodies.add(body));
+        return bodies;
+    }
+
+    // The version 1 layout: 16-byte header, records straight after it
+    private static long[] writeVersion1(File file, String... bodies) throws IOException {
+        long[] offsets = new long[bodies.length];
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(64 * 1024);
+            out.seek(16);
+            for (int i = 0; i < bodies.length; i++) {
+                offsets[i] = out.getFilePointer();
+                out.write(record(bodies[i]));
+            }
+            long end = out.getFilePointer();
+            out.seek(0);
+            out.writeInt(0x5646524C);
+            out.writeInt(1);
+            out.writeLong(end);
+        }
+        return offsets;
+    }
+
+    private static byte[] record(String body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] wallet = "wallet".getBytes(StandardCharsets.UTF_8);
+        byte[] sender = "VF-Cash".getBytes(StandardCharsets.UTF_8);
+        byte[] text = body.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(8 + 4 + wallet.length + 4 + sender.length + 4 + text.length);
+        out.writeLong(1);
+        out.writeInt(wallet.length);
+        out.write(wallet);
+        out.writeInt(sender.length);
+        out.write(sender);
+        out.writeInt(text.length);
+        out.write(text);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.vfcash.tracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RollingWindowCounterTest {
+
+    private static final long MINUTE = 60L * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long NOW = 1700000000000L;
+
+    @Test
+    public void sumsTheWindowAndDropsWhatFallsOutOfIt() {
+        RollingWindowCounter counter = RollingWindowCounter.last24Hours();
+        counter.add(NOW - 25 * HOUR, 500, NOW);
+        counter.add(NOW - 23 * HOUR, 100, NOW);
+        counter.add(NOW - MINUTE, 20.25, NOW);
+        assertEquals(120.25, counter.sum(NOW), 0);
+        assertEquals(20.25, counter.sum(NOW + 2 * HOUR), 0);
+        assertEquals(0, counter.sum(NOW + 25 * HOUR), 0);
+    }
+
+    // A future date must not move the window ahead of the clock and expire
+    // rows that are still inside it
+    @Test
+    public void futureDatedRowsCountNowWithoutExpiringOthers() {
+        RollingWindowCounter counter = RollingWindowCounter.last24Hours();
+        counter.add(NOW - 20 * HOUR, 100, NOW);
+        counter.add(NOW + 10 * HOUR, 50, NOW);
+        assertEquals(150, counter.sum(NOW), 0);
+
+        counter.add(NOW - HOUR, 5, NOW);
+        assertEquals(155, counter.sum(NOW), 0);
+        // The future row was counted at NOW and leaves the window a day after it
+        assertEquals(50, counter.sum(NOW + 24 * HOUR - 30 * MINUTE), 0);
+        assertEquals(0, counter.sum(NOW + 24 * HOUR + MINUTE), 0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.vfcash.tracker;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+// Cost per message of the compiled templates as formats are added, on the
+// corpus from SmsTemplateEngineTest. Run with -Pbenchmarks; see build.gradle.
+public class SmsTemplateEngineBenchmark {
+
+    private static final int CORPUS_SIZE = 3000;
+
+    private static List<SmsTemplateEngine.Template> shipped;
+    private static List<String> corpus;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        shipped = SmsTemplateEngineTest.shippedTemplates();
+        corpus = SmsTemplateEngineTest.corpus(new Random(7), CORPUS_SIZE);
+    }
+
+    // Adding formats must not add per-message cost the way one more regex
+    // attempt per format does. Compares the best pass over the corpus with 10
+    // templates against the same with 500.
+    @Test
+    public void costPerMessageStaysFlatAsTemplatesGrow() {
+        long small = nanosPerMessage(SmsTemplateEngine.compile(withExtraTemplates(10), 0));
+        long large = nanosPerMessage(SmsTemplateEngine.compile(withExtraTemplates(500), 0));
+        System.out.println("SMS templates: 10 -> " + small + " ns/message, 500 -> " + large + " ns/message");
+        assertTrue("500 templates cost " + large + " ns/message against " + small + " for 10",
+                large < small * 4);
+    }
+
+    private static long nanosPerMessage(SmsTemplateEngine engine) {
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 15; pass++) {
+            long start = System.nanoTime();
+            for (String message : corpus) {
+                try {
+                    engine.parse(message, 0);
+                } catch (ParseException e) {
+                    // noise
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / corpus.size();
+    }
+
+    // Shipped templates plus made-up formats with distinct wording
+    private static List<SmsTemplateEngine.Template> withExtraTemplates(int count) {
+        String[] words = {"rebate", "bonus", "refund", "reward", "payout", "salary", "prize", "voucher"};
+        List<SmsTemplateEngine.Template> templates = new ArrayList<>(shipped);
+        for (int i = templates.size(); i < count; i++) {
+            String word = words[i % words.length] + (i / words.length);
+            templates.add(new SmsTemplateEngine.Template("extra_" + i, i % 2 == 0 ? "received" : "transfer",
+                    "Your " + word + " of EGP {amount} ... balance is {balance}", null));
+        }
+        return templates;
+    }
+}
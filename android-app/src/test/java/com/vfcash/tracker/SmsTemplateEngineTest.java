@@ -0,0 +1,187 @@
+package com.vfcash.tracker;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Checks the shipped templates against the built-in patterns on a generated
+// corpus. How the cost per message scales with the number of templates is in
+// SmsTemplateEngineBenchmark.
+public class SmsTemplateEngineTest {
+
+    private static final int CORPUS_SIZE = 3000;
+
+    private static List<SmsTemplateEngine.Template> shipped;
+    private static List<String> corpus;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        shipped = shippedTemplates();
+        corpus = corpus(new Random(7), CORPUS_SIZE);
+    }
+
+    static List<SmsTemplateEngine.Template> shippedTemplates() throws IOException {
+        // Unit tests run from the module directory
+        String json = new String(Files.readAllBytes(new File("src/main/assets/sms_templates.json").toPath()),
+                StandardCharsets.UTF_8);
+        return SmsTemplates.parse(json, "sms_templates.json");
+    }
+
+    @Test
+    public void shippedTemplatesAllCompile() {
+        assertEquals(shipped.size(), SmsTemplateEngine.compile(shipped, 0).getTemplateCount());
+    }
+
+    @Test
+    public void englishMessagesParseLikeTheBuiltInPatterns() throws ParseException {
+        SmsTemplateEngine engine = SmsTemplateEngine.compile(shipped, 0);
+        int checked = 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            String message = corpus.get(i);
+            Transaction expected;
+            switch (i % 8) {
+                case 0:
+                    expected = SmsParser.parseTransferMessage(message);
+                    break;
+                case 1:
+                case 2:
+                    expected = SmsParser.parseReceivedMessage(message);
+                    break;
+                default:
+                    continue;
+            }
+            Transaction actual = engine.parse(message, 0);
+            assertEquals(message, expected.getType(), actual.getType());
+            assertEquals(message, expected.getAmount(), actual.getAmount(), 0);
+            assertEquals(message, expected.getPhoneNumber(), actual.getPhoneNumber());
+            assertEquals(message, expected.getServiceFees(), actual.getServiceFees(), 0);
+            assertEquals(message, expected.getBalanceBefore(), actual.getBalanceBefore(), 0.001);
+            assertEquals(message, expected.getBalanceAfter(), actual.getBalanceAfter(), 0);
+            assertEquals(message, expected.getSenderName(), actual.getSenderName());
+            assertEquals(message, expected.getTransactionNumber(), actual.getTransactionNumber());
+            if (expected.getTransactionType() == TransactionType.RECEIVED) {
+                assertEquals(message, expected.getDate(), actual.getDate());
+            }
+            checked++;
+        }
+        assertTrue(checked > 1000);
+    }
+
+    @Test
+    public void newFormatsParseAndNoiseIsRejected() throws ParseException {
+        SmsTemplateEngine engine = SmsTemplateEngine.compile(shipped, 0);
+
+        Transaction arabic = engine.parse(
+                "تم تحويل مبلغ 1,250.50 جنيه إلى رقم ٠١٠١٢٣٤٥٦٧٨، مصاريف الخدمة 1 جنيه. رصيدك الحالي 300 جنيه", 0);
+        assertEquals(TransactionType.TRANSFER, arabic.getTransactionType());
+        assertEquals(1250.50, arabic.getAmount(), 0);
+        assertEquals("01012345678", arabic.getPhoneNumber());
+        assertEquals(1, arabic.getServiceFees(), 0);
+        assertEquals(1551.50, arabic.getBalanceBefore(), 0.001);
+
+        Transaction cashOut = engine.parse("EGP 500 has been withdrawn from your Vodafone Cash account. " +
+                "Service fees are 5 EGP. Your current balance is 120.25", 1234);
+        assertEquals(TransactionType.TRANSFER, cashOut.getTransactionType());
+        assertNull(cashOut.getPhoneNumber());
+        assertEquals(1234, cashOut.getDate().getTime());
+
+        for (int i = 6; i < corpus.size(); i += 8) {
+            assertRejected(engine, corpus.get(i));
+            assertRejected(engine, corpus.get(i + 1));
+        }
+    }
+
+    @Test
+    public void firstListedTemplateWins() throws ParseException {
+        List<SmsTemplateEngine.Template> templates = new ArrayList<>();
+        templates.add(new SmsTemplateEngine.Template("specific", "received",
+                "Cashback of EGP {amount} ... balance is {balance}", null));
+        templates.add(new SmsTemplateEngine.Template("general", "transfer",
+                "EGP {amount} ... balance is {balance}", null));
+        SmsTemplateEngine engine = SmsTemplateEngine.compile(templates, 0);
+        assertEquals(TransactionType.RECEIVED,
+                engine.parse("Cashback of EGP 10 added. Your balance is 20", 0).getTransactionType());
+
+        Collections.reverse(templates);
+        engine = SmsTemplateEngine.compile(templates, 0);
+        assertEquals(TransactionType.TRANSFER,
+                engine.parse("Cashback of EGP 10 added. Your balance is 20", 0).getTransactionType());
+    }
+
+    @Test
+    public void invalidTemplatesAreLeftOut() {
+        List<SmsTemplateEngine.Template> templates = new ArrayList<>(shipped);
+        templates.add(new SmsTemplateEngine.Template("no_balance", "transfer", "EGP {amount} sent", null));
+        templates.add(new SmsTemplateEngine.Template("bad_field", "transfer", "{amount} {iban} {balance}", null));
+        templates.add(new SmsTemplateEngine.Template("bad_type", "refund", "{amount} {balance}", null));
+        assertEquals(shipped.size(), SmsTemplateEngine.compile(templates, 0).getTemplateCount());
+    }
+
+    private static void assertRejected(SmsTemplateEngine engine, String message) {
+        try {
+            engine.parse(message, 0);
+            fail("Parsed noise: " + message);
+        } catch (ParseException expected) {
+            // not a VF-Cash message
+        }
+    }
+
+    // Eight kinds in turn: English transfer, received with and without a
+    // sender name, Arabic transfer and receive, cash-out, an OTP and an ad
+    static List<String> corpus(Random random, int size) {
+        List<String> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int amount = 10 + random.nextInt(5000);
+            int balance = random.nextInt(90000);
+            String phone = "010" + (10000000 + random.nextInt(89999999));
+            switch (i % 8) {
+                case 0:
+                    messages.add("EGP " + amount + ".00 has been transferred to number " + phone +
+                            " on Vodafone Cash. Service fees are 1.00 EGP. Your current Vodafone Cash account balance is " +
+                            balance + ".50");
+                    break;
+                case 1:
+                    messages.add("EGP " + amount + " has been received from number " + phone +
+                            "; registered to Ahmed M. Ali. Your current balance is " + balance +
+                            ".25 EGP. Transaction date 05/12/24 14:3" + (i % 10) + ". Transaction number: " + (900000 + i));
+                    break;
+                case 2:
+                    messages.add("EGP " + amount + " has been received from number " + phone +
+                            ". Your current balance is " + balance + " EGP. Transaction date 11/02/24 09:15. " +
+                            "Transaction number: " + (900000 + i));
+                    break;
+                case 3:
+                    messages.add("تم تحويل مبلغ " + amount + " جنيه إلى رقم " + phone +
+                            "، مصاريف الخدمة 1 جنيه. رصيدك الحالي " + balance + " جنيه");
+                    break;
+                case 4:
+                    messages.add("تم استلام " + amount + " جنيه من رقم " + phone + ". رصيدك الحالي " + balance + ".75 جنيه");
+                    break;
+                case 5:
+                    messages.add("EGP " + amount + " has been withdrawn from your Vodafone Cash account at agent 1234. " +
+                            "Service fees are 5 EGP. Your current balance is " + balance);
+                    break;
+                case 6:
+                    messages.add("Your verification code is " + (100000 + random.nextInt(899999)) + ". Do not share it.");
+                    break;
+                default:
+                    messages.add("Get 20% off at Carrefour this weekend! Offer valid till 12/31/24. Reply STOP to " + (1000 + i));
+            }
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,50 @@
+package com.vfcash.tracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// The first-frame budget bookkeeping, checked on the JVM. Whether a real
+// cold start stays inside the budget is only measured by the instrumented
+// StartupBudgetTest, which needs a device.
+public class StartupTracerTest {
+
+    @Test
+    public void nothingIsOverBudgetBeforeTheFirstFrame() {
+        StartupTracer tracer = new StartupTracer();
+        tracer.firstFrameDrawn();
+        assertEquals(-1, tracer.getFirstFrameMillis());
+        assertFalse(tracer.isOverBudget());
+        assertTrue(tracer.format().startsWith("First frame: not drawn yet"));
+    }
+
+    @Test
+    public void aQuickFirstFrameIsWithinBudgetAndOnlyCountsOnce() throws InterruptedException {
+        StartupTracer tracer = new StartupTracer();
+        tracer.activityCreateStarted();
+        tracer.end(StartupTracer.Section.TRANSACTIONS_JSON, tracer.begin());
+        tracer.firstFrameDrawn();
+        long frame = tracer.getFirstFrameMillis();
+        assertTrue(frame >= 0 && frame <= StartupTracer.FIRST_FRAME_BUDGET_MS);
+        assertFalse(tracer.isOverBudget());
+
+        // Later activities and frames do not move the measurement
+        Thread.sleep(StartupTracer.FIRST_FRAME_BUDGET_MS + 20);
+        tracer.activityCreateStarted();
+        tracer.firstFrameDrawn();
+        assertEquals(frame, tracer.getFirstFrameMillis());
+        assertTrue(tracer.format().contains(StartupTracer.Section.TRANSACTIONS_JSON.getLabel()));
+    }
+
+    @Test
+    public void aSlowFirstFrameIsOverBudget() throws InterruptedException {
+        StartupTracer tracer = new StartupTracer();
+        tracer.activityCreateStarted();
+        Thread.sleep(StartupTracer.FIRST_FRAME_BUDGET_MS + 20);
+        tracer.firstFrameDrawn();
+        assertTrue(tracer.getFirstFrameMillis() > StartupTracer.FIRST_FRAME_BUDGET_MS);
+        assertTrue(tracer.isOverBudget());
+    }
+}
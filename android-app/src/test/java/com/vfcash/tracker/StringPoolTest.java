@@ -0,0 +1,32 @@
+package com.vfcash.tracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StringPoolTest {
+
+    @Test
+    public void equalStringsShareOneCopy() {
+        String first = StringPool.intern(new String("StringPoolTest 01000000001"));
+        assertSame(first, StringPool.intern(new String("StringPoolTest 01000000001")));
+        assertNull(StringPool.intern(null));
+    }
+
+    @Test
+    public void staysBoundedAndKeepsWhatIsInUse() {
+        String kept = StringPool.intern(new String("StringPoolTest kept"));
+        for (int i = 0; i < StringPool.MAX_ENTRIES * 2; i++) {
+            StringPool.intern("StringPoolTest " + i);
+            if (i % 100 == 0) {
+                assertSame(kept, StringPool.intern(new String("StringPoolTest kept")));
+            }
+        }
+        assertTrue(StringPool.size() <= StringPool.MAX_ENTRIES);
+        assertSame(kept, StringPool.intern(new String("StringPoolTest kept")));
+        assertEquals("StringPoolTest 0", StringPool.intern(new String("StringPoolTest 0")));
+    }
+}
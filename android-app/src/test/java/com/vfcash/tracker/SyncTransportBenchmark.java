@@ -0,0 +1,128 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// SyncTransport under load against FakeDashboard: request rate for single
+// uploads, row rate and peak heap for a 100k-row bulk upload. Run with
+// -Pbenchmarks; see build.gradle.
+public class SyncTransportBenchmark {
+
+    // Floors are a fraction of what a laptop does, so only a real regression trips them
+    private static final double MIN_SINGLE_REQUESTS_PER_SECOND = 150;
+    private static final double MIN_BULK_ROWS_PER_SECOND = 20000;
+    private static final long MAX_BULK_PEAK_HEAP_BYTES = 256L * 1024 * 1024;
+
+    private FakeDashboard dashboard;
+    private SyncMetrics metrics;
+    private SyncTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        Gson gson = JsonCodec.gson();
+        dashboard = new FakeDashboard(gson);
+        metrics = SyncMetrics.getInstance();
+        metrics.reset();
+        transport = new SyncTransport(dashboard.baseUrl(), gson, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        dashboard.stop();
+    }
+
+    @Test
+    public void singleUploadsOf10kTransactions() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(10000);
+        long start = System.nanoTime();
+        for (Transaction row : rows) {
+            assertTrue(transport.postTransactions(SyncMetrics.Endpoint.TRANSACTIONS, false, row).isOk());
+        }
+        double perSecond = rows.length / seconds(start);
+        System.out.printf("Sync: %d single uploads at %.0f requests/s%n", rows.length, perSecond);
+
+        SyncTransportTest.assertArrived(dashboard, rows);
+        assertTrue("Single uploads ran at " + perSecond + " requests/s", perSecond > MIN_SINGLE_REQUESTS_PER_SECOND);
+    }
+
+    @Test
+    public void limitsUploads() throws IOException {
+        long start = System.nanoTime();
+        for (int i = 1; i <= 2000; i++) {
+            assertTrue(transport.postLimits(new ApiClient.LimitsData(i, i * 30, i * 2, i * 60)).isOk());
+        }
+        double perSecond = 2000 / seconds(start);
+        System.out.printf("Sync: 2000 limits uploads at %.0f requests/s%n", perSecond);
+        assertTrue("Limits uploads ran at " + perSecond + " requests/s", perSecond > MIN_SINGLE_REQUESTS_PER_SECOND);
+    }
+
+    // ApiClient sends everything past the sync cursor in one request
+    @Test
+    public void bulkUploadOf100kTransactionsAsJson() throws IOException {
+        bulkUpload(100000, false);
+    }
+
+    @Test
+    public void bulkUploadOf100kTransactionsInWireFormat() throws IOException {
+        SyncTransportTest.negotiateWireFormat(transport, dashboard);
+        bulkUpload(100000, true);
+    }
+
+    private void bulkUpload(int count, boolean binary) throws IOException {
+        Transaction[] rows = SyntheticHistory.array(count);
+        System.gc();
+        long baseline = heapUsed();
+        resetPeakHeap();
+
+        long start = System.nanoTime();
+        SyncTransport.Response response = transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows);
+        double elapsed = seconds(start);
+        long peak = peakHeap() - baseline;
+        assertTrue(response.isOk());
+
+        double perSecond = count / elapsed;
+        System.out.printf("Sync: %d rows in one %s bulk request, %.0f rows/s, %d KB sent, peak heap +%d MB%n",
+                count, binary ? "binary" : "JSON", perSecond,
+                metrics.snapshot().get(SyncMetrics.Endpoint.BULK).getBytesSent() / 1024, peak >> 20);
+
+        assertEquals(binary ? 0 : 1, dashboard.jsonRequests.get());
+        SyncTransportTest.assertArrived(dashboard, rows);
+        assertTrue("Bulk upload ran at " + perSecond + " rows/s", perSecond > MIN_BULK_ROWS_PER_SECOND);
+        // Both ends of the exchange live in this JVM, so this bounds client and server together
+        assertTrue("Bulk upload peaked at " + (peak >> 20) + " MB over baseline", peak < MAX_BULK_PEAK_HEAP_BYTES);
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,181 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Drives SyncTransport against FakeDashboard and checks that every row
+// arrives intact, that failures and cut-off responses are reported as such,
+// and that the metrics see each request. Throughput and heap use under load
+// are in SyncTransportBenchmark.
+public class SyncTransportTest {
+
+    private Gson gson;
+    private FakeDashboard dashboard;
+    private SyncMetrics metrics;
+    private SyncTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        gson = JsonCodec.gson();
+        dashboard = new FakeDashboard(gson);
+        metrics = SyncMetrics.getInstance();
+        metrics.reset();
+        transport = new SyncTransport(dashboard.baseUrl(), gson, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        dashboard.stop();
+    }
+
+    @Test
+    public void singleUploads() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(200);
+        for (Transaction row : rows) {
+            assertTrue(transport.postTransactions(SyncMetrics.Endpoint.TRANSACTIONS, false, row).isOk());
+        }
+        assertArrived(dashboard, rows);
+        assertEquals(rows.length, metrics.snapshot().get(SyncMetrics.Endpoint.TRANSACTIONS).getRequests());
+    }
+
+    @Test
+    public void bulkUploadAsJson() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(5000);
+        assertTrue(transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows).isOk());
+        assertEquals(1, dashboard.jsonRequests.get());
+        assertArrived(dashboard, rows);
+    }
+
+    @Test
+    public void bulkUploadInWireFormat() throws IOException {
+        negotiateWireFormat(transport, dashboard);
+        Transaction[] rows = SyntheticHistory.array(5000);
+        assertTrue(transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows).isOk());
+        assertEquals(0, dashboard.jsonRequests.get());
+        assertArrived(dashboard, rows);
+    }
+
+    @Test
+    public void bulkUploadsInBatches() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(5000);
+        for (int from = 0; from < rows.length; from += 500) {
+            Transaction[] batch = Arrays.copyOfRange(rows, from, Math.min(rows.length, from + 500));
+            assertTrue(transport.postTransactions(SyncMetrics.Endpoint.BULK, true, batch).isOk());
+        }
+        assertArrived(dashboard, rows);
+        assertEquals(rows.length / 500, metrics.snapshot().get(SyncMetrics.Endpoint.BULK).getRequests());
+    }
+
+    @Test
+    public void rejectedRowsAreReportedAndTheRestStored() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(50);
+        rows[7].setAmount(0);
+        rows[30].setAmount(-5);
+        SyncTransport.Response response = transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows);
+        assertTrue(response.isOk());
+
+        List<SyncTransport.Rejection> rejected = response.getRejected();
+        assertEquals(2, rejected.size());
+        assertEquals(7, rejected.get(0).getIndex());
+        assertEquals(String.valueOf(rows[7].getId()), rejected.get(0).getId());
+        assertEquals("Amount must be a positive number", rejected.get(0).getError());
+        assertEquals(30, rejected.get(1).getIndex());
+        assertEquals(rows.length - 2, dashboard.received.size());
+        assertEquals(2, metrics.snapshot().get(SyncMetrics.Endpoint.BULK).getRejected());
+    }
+
+    @Test
+    public void limitsUploads() throws IOException {
+        assertTrue(transport.postLimits(new ApiClient.LimitsData(2000, 60000, 4000, 120000)).isOk());
+        ApiClient.LimitsData last = gson.fromJson(dashboard.lastLimits, ApiClient.LimitsData.class);
+        assertEquals(2000, last.getDailyTransferLimit(), 0);
+        assertEquals(60000, last.getMonthlyTransferLimit(), 0);
+        assertEquals(4000, last.getDailyReceiveLimit(), 0);
+        assertEquals(120000, last.getMonthlyReceiveLimit(), 0);
+    }
+
+    @Test
+    public void latencyIsRecorded() throws IOException {
+        dashboard.latencyMillis = 60;
+        for (Transaction row : SyntheticHistory.array(5)) {
+            assertTrue(transport.postTransactions(SyncMetrics.Endpoint.TRANSACTIONS, false, row).isOk());
+        }
+        SyncMetrics.EndpointSnapshot snapshot = metrics.snapshot().get(SyncMetrics.Endpoint.TRANSACTIONS);
+        assertEquals(5, snapshot.getRequests());
+        assertTrue(snapshot.getAverageLatencyMillis() >= 60);
+    }
+
+    @Test
+    public void serverErrorsAreFailuresAndRetriesSucceed() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(100);
+        dashboard.failures.set(3);
+        int failed = 0;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            SyncTransport.Response response = transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows);
+            if (response.isOk()) break;
+            assertEquals(500, response.getCode());
+            assertTrue(response.getBody().contains("Failed to process"));
+            failed++;
+        }
+        assertEquals(3, failed);
+        assertArrived(dashboard, rows);
+
+        SyncMetrics.EndpointSnapshot snapshot = metrics.snapshot().get(SyncMetrics.Endpoint.BULK);
+        assertEquals(4, snapshot.getRequests());
+        assertEquals(3, snapshot.getFailures());
+    }
+
+    @Test
+    public void truncatedResponseThrows() {
+        dashboard.truncate = true;
+        try {
+            transport.postTransactions(SyncMetrics.Endpoint.BULK, true, SyntheticHistory.array(10));
+            fail("A response cut off mid-body was taken as a success");
+        } catch (IOException expected) {
+            // the cursor must not advance
+        }
+        assertEquals(1, metrics.snapshot().get(SyncMetrics.Endpoint.BULK).getFailures());
+    }
+
+    @Test
+    public void rejectedWireFormatFallsBackToJson() throws IOException {
+        negotiateWireFormat(transport, dashboard);
+
+        // e.g. the dashboard was rolled back to a build without the decoder
+        dashboard.acceptWireFormat = false;
+        Transaction[] rows = SyntheticHistory.array(20);
+        assertTrue(transport.postTransactions(SyncMetrics.Endpoint.BULK, true, rows).isOk());
+        assertFalse(transport.isBinaryWireFormat());
+        assertEquals(1, dashboard.jsonRequests.get());
+        assertArrived(dashboard, rows);
+    }
+
+    // The first exchanges learn that the dashboard takes the binary format
+    static void negotiateWireFormat(SyncTransport transport, FakeDashboard dashboard) throws IOException {
+        dashboard.acceptWireFormat = true;
+        assertTrue(transport.checkHealth().isOk());
+        assertTrue(transport.postLimits(new ApiClient.LimitsData(1, 2, 3, 4)).isOk());
+        assertTrue(transport.isBinaryWireFormat());
+    }
+
+    static void assertArrived(FakeDashboard dashboard, Transaction[] sent) {
+        assertEquals(sent.length, dashboard.received.size());
+        for (Transaction expected : sent) {
+            Transaction actual = dashboard.get(expected);
+            if (actual == null) fail("Transaction " + expected.getId() + " never arrived");
+            SyntheticHistory.assertSameRow(expected, actual);
+        }
+    }
+}
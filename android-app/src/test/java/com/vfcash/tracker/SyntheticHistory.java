@@ -0,0 +1,56 @@
+package com.vfcash.tracker;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// The history the size and speed tests run against: one row a minute, every
+// third one received with a sender name and reference, the rest transfers
+// with a fee, spread over a fixed set of counterparties. Ids and dates are
+// fixed so runs compare like with like.
+final class SyntheticHistory {
+    static final int COUNTERPARTIES = 500;
+    static final long START = 1700000000000L;
+
+    private SyntheticHistory() {}
+
+    static List<Transaction> rows(int count) {
+        List<Transaction> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean received = i % 3 == 0;
+            int counterparty = i % COUNTERPARTIES;
+            Transaction row = new Transaction(received ? "received" : "transfer", 10 + i % 5000 + 0.5,
+                    "010" + (10000000 + counterparty), 5000 + i * 1.5, 4990 + i * 1.5);
+            row.setId(START + i);
+            row.setDate(new Date(START + i * 60000L));
+            if (received) {
+                row.setSenderName("Sender " + counterparty);
+                row.setTransactionNumber(String.valueOf(900000 + i));
+            } else {
+                row.setServiceFees(1);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    static Transaction[] array(int count) {
+        return rows(count).toArray(new Transaction[0]);
+    }
+
+    // Every field, for rows that went through an encoder and back
+    static void assertSameRow(Transaction expected, Transaction actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getAmount(), actual.getAmount(), 0);
+        assertEquals(expected.getPhoneNumber(), actual.getPhoneNumber());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getBalanceBefore(), actual.getBalanceBefore(), 0);
+        assertEquals(expected.getBalanceAfter(), actual.getBalanceAfter(), 0);
+        assertEquals(expected.getSenderName(), actual.getSenderName());
+        assertEquals(expected.getTransactionNumber(), actual.getTransactionNumber());
+        assertEquals(expected.getServiceFees(), actual.getServiceFees(), 0);
+    }
+}
@@ -0,0 +1,59 @@
+package com.vfcash.tracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// A 100k-row export in each format has to finish well inside a second.
+// Run with -Pbenchmarks; see build.gradle.
+public class TransactionExporterBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final long MAX_EXPORT_MILLIS = 1000;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("export").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void exports100kRowsWellUnderASecond() throws IOException {
+        List<Transaction> rows = SyntheticHistory.rows(ROWS);
+        for (TransactionExporter.Format format : TransactionExporter.Format.values()) {
+            File file = new File(dir, "history." + format.getExtension());
+            int[] progress = new int[1];
+            long best = Long.MAX_VALUE;
+            for (int pass = 0; pass < 3; pass++) {
+                long start = System.nanoTime();
+                int written = new TransactionExporter(format)
+                        .setProgressListener((scanned, total) -> progress[0] = scanned)
+                        .export(TransactionExporterTest.source(rows), rows.size(), file);
+                best = Math.min(best, System.nanoTime() - start);
+                assertEquals(ROWS, written);
+                assertEquals(ROWS, progress[0]);
+            }
+            System.out.printf("Export: %d rows as %s in %d ms, %d KB%n",
+                    ROWS, format, best / 1000000, file.length() / 1024);
+            assertTrue(format + " export took " + best / 1000000 + " ms", best / 1000000 < MAX_EXPORT_MILLIS);
+        }
+    }
+}
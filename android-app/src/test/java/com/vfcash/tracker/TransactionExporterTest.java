@@ -0,0 +1,190 @@
+package com.vfcash.tracker;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Exports read back field for field in both formats, and the filters pick
+// the right rows. Export speed is in TransactionExporterBenchmark.
+public class TransactionExporterTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("export").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void csvRoundTrips() throws IOException, ParseException {
+        List<Transaction> rows = awkwardRows();
+        File file = new File(dir, "history.csv");
+        assertEquals(rows.size(), new TransactionExporter(TransactionExporter.Format.CSV)
+                .export(source(rows), rows.size(), file));
+
+        List<List<String>> records = parseCsv(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(TransactionExporter.CSV_HEADER.trim(), String.join(",", records.get(0)));
+        assertEquals(rows.size() + 1, records.size());
+        for (int i = 0; i < rows.size(); i++) {
+            List<String> fields = records.get(i + 1);
+            assertEquals(10, fields.size());
+            assertRow(rows.get(i), fields.get(0), fields.get(1), fields.get(2), fields.get(3), fields.get(4),
+                    fields.get(5), fields.get(6), fields.get(7), fields.get(8), fields.get(9));
+        }
+    }
+
+    @Test
+    public void ndjsonRoundTrips() throws IOException, ParseException {
+        List<Transaction> rows = awkwardRows();
+        File file = new File(dir, "history.ndjson");
+        new TransactionExporter(TransactionExporter.Format.NDJSON).export(source(rows), rows.size(), file);
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(rows.size(), lines.size());
+        for (int i = 0; i < rows.size(); i++) {
+            JsonObject json = JsonParser.parseString(lines.get(i)).getAsJsonObject();
+            assertRow(rows.get(i), text(json, "id"), text(json, "type"), text(json, "amount"),
+                    text(json, "phoneNumber"), text(json, "date"), text(json, "balanceBefore"),
+                    text(json, "balanceAfter"), text(json, "senderName"), text(json, "transactionNumber"),
+                    text(json, "serviceFees"));
+        }
+    }
+
+    @Test
+    public void filtersByTypeAndDateRange() throws IOException {
+        List<Transaction> rows = SyntheticHistory.rows(1000);
+        long from = rows.get(100).getDate().getTime();
+        long to = rows.get(200).getDate().getTime();
+        File file = new File(dir, "received.ndjson");
+        int written = new TransactionExporter(TransactionExporter.Format.NDJSON)
+                .setType("received")
+                .setDateRange(from, to)
+                .export(source(rows), rows.size(), file);
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(written, lines.size());
+        // Every third row of 100..199 is received
+        assertEquals(33, written);
+        for (String line : lines) {
+            JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+            assertEquals("received", json.get("type").getAsString());
+        }
+        assertFalse(new File(dir, "received.ndjson.part").exists());
+    }
+
+    private static void assertRow(Transaction expected, String id, String type, String amount, String phoneNumber,
+                                  String date, String balanceBefore, String balanceAfter, String senderName,
+                                  String transactionNumber, String serviceFees) throws ParseException {
+        assertEquals(String.valueOf(expected.getId()), id);
+        assertEquals(expected.getType(), type);
+        assertEquals(expected.getAmount(), Double.parseDouble(amount), 0.005);
+        assertEquals(expected.getPhoneNumber(), emptyToNull(phoneNumber));
+        assertEquals(expected.getDate(), date == null || date.isEmpty() ? null : iso().parse(date));
+        assertEquals(expected.getBalanceBefore(), Double.parseDouble(balanceBefore), 0.005);
+        assertEquals(expected.getBalanceAfter(), Double.parseDouble(balanceAfter), 0.005);
+        assertEquals(expected.getSenderName(), emptyToNull(senderName));
+        assertEquals(expected.getTransactionNumber(), emptyToNull(transactionNumber));
+        assertEquals(expected.getServiceFees(), Double.parseDouble(serviceFees), 0.005);
+    }
+
+    // Names and references with every character either format has to escape
+    private static List<Transaction> awkwardRows() {
+        List<Transaction> rows = SyntheticHistory.rows(20);
+        rows.get(0).setSenderName("Ali, Omar");
+        rows.get(1).setSenderName("Mohamed \"Mido\" Salah");
+        rows.get(2).setSenderName("Line\nbreak\r\nand\ttab");
+        rows.get(3).setSenderName("أحمد محمد");
+        rows.get(4).setSenderName("back\\slash \u0001 control");
+        rows.get(5).setTransactionNumber("REF,\"42\"");
+        rows.get(6).setPhoneNumber(null);
+        rows.get(7).setDate(null);
+        rows.get(8).setAmount(-12.34);
+        rows.get(9).setDate(new Date(-86400000L * 3 + 1234));
+        rows.get(10).setAmount(0.07);
+        return rows;
+    }
+
+    static TransactionPager.PageSource source(List<Transaction> rows) {
+        return (from, to) -> rows.subList(from, Math.min(to, rows.size()));
+    }
+
+    private static String text(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static SimpleDateFormat iso() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    // RFC 4180: quoted fields may hold commas, doubled quotes and line breaks
+    private static List<List<String>> parseCsv(String text) {
+        List<List<String>> records = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                field.setLength(0);
+                records.add(fields);
+                fields = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        assertTrue("CSV does not end with a newline", fields.isEmpty() && field.length() == 0);
+        assertFalse(records.isEmpty());
+        return records;
+    }
+}
@@ -0,0 +1,125 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Retained heap per transaction for a 100k-row history loaded from stored
+// JSON, compact Transaction against the layout it replaced: String id and
+// type, and a fresh copy of every phone number and sender name per row.
+public class TransactionFootprintTest {
+
+    private static final int ROWS = 100000;
+    private static final int COUNTERPARTIES = 500;
+
+    // The pre-compaction fields, filled by Gson's reflective adapter as before
+    @SuppressWarnings("unused")
+    private static final class LegacyTransaction {
+        String id;
+        String type;
+        double amount;
+        String phoneNumber;
+        Date date;
+        double balanceBefore;
+        double balanceAfter;
+        String senderName;
+        String transactionNumber;
+        double serviceFees;
+    }
+
+    private static final Gson COMPACT_GSON = JsonCodec.gson();
+    private static final Gson LEGACY_GSON = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new JsonCodec.DateAdapter().nullSafe())
+            .create();
+
+    @Test
+    public void compactRowsUseAtMostTwoThirdsOfTheOldFootprint() {
+        String json = storedHistory();
+
+        // Parse a row up front so class loading and adapter setup are not counted
+        String one = "[" + json.substring(1, json.indexOf('}') + 1) + "]";
+        LEGACY_GSON.fromJson(one, LegacyTransaction[].class);
+        COMPACT_GSON.fromJson(one, Transaction[].class);
+
+        Object[] legacy = retained(() -> LEGACY_GSON.fromJson(json, LegacyTransaction[].class));
+        long legacyBytes = (Long) legacy[1];
+        Object[] compact = retained(() -> COMPACT_GSON.fromJson(json, Transaction[].class));
+        long compactBytes = (Long) compact[1];
+
+        assertEquals(ROWS, ((LegacyTransaction[]) legacy[0]).length);
+        assertEquals(ROWS, ((Transaction[]) compact[0]).length);
+        long legacyPerRow = legacyBytes / ROWS;
+        long compactPerRow = compactBytes / ROWS;
+        System.out.printf("Footprint at %d rows: before %d bytes/transaction, after %d bytes/transaction%n",
+                ROWS, legacyPerRow, compactPerRow);
+
+        assertTrue("Compact rows take " + compactPerRow + " bytes against " + legacyPerRow + " before",
+                compactPerRow * 3 <= legacyPerRow * 2);
+    }
+
+    @Test
+    public void repeatedStringsAreShared() {
+        Transaction[] rows = COMPACT_GSON.fromJson(storedHistory(), Transaction[].class);
+        Transaction first = rows[0];
+        Transaction same = rows[3 * COUNTERPARTIES];
+        assertEquals(first.getPhoneNumber(), same.getPhoneNumber());
+        assertTrue(first.getPhoneNumber() == same.getPhoneNumber());
+        assertTrue(first.getSenderName() == same.getSenderName());
+    }
+
+    private interface Load {
+        Object run();
+    }
+
+    // The loaded object and the heap it holds on to after a full collection
+    private static Object[] retained(Load load) {
+        long baseline = usedAfterGc();
+        Object result = load.run();
+        long used = usedAfterGc() - baseline;
+        return new Object[]{result, used};
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A couple of passes, since one System.gc() may not finish everything
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // A history as TransactionManager stores it: every third row received with
+    // a sender name and reference, the rest transfers with fees. The phone
+    // numbers are unique to this test so pooled strings from others do not count.
+    private static String storedHistory() {
+        LegacyTransaction[] rows = new LegacyTransaction[ROWS];
+        long time = 1700000000000L;
+        for (int i = 0; i < ROWS; i++) {
+            boolean received = i % 3 == 0;
+            int counterparty = i % COUNTERPARTIES;
+            LegacyTransaction row = new LegacyTransaction();
+            row.id = String.valueOf(time + i);
+            row.type = received ? "received" : "transfer";
+            row.amount = 10 + i % 5000 + 0.5;
+            row.phoneNumber = "0127" + (1000000 + counterparty);
+            row.date = new Date(time + i * 60000L);
+            row.balanceBefore = 5000 + i;
+            row.balanceAfter = 4990 + i;
+            if (received) {
+                row.senderName = "Footprint Sender " + counterparty;
+                row.transactionNumber = String.valueOf(900000 + i);
+            }
+            row.serviceFees = received ? 0 : 1;
+            rows[i] = row;
+        }
+        return LEGACY_GSON.toJson(rows);
+    }
+}
@@ -0,0 +1,44 @@
+package com.vfcash.tracker;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Encode plus decode of a 100k-row upload, binary against the JSON the app
+// sent before. Run with -Pbenchmarks; see build.gradle.
+public class TransactionWireFormatBenchmark {
+
+    private static final int ROWS = 100000;
+
+    @Test
+    public void fasterThanJsonAt100kRows() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(ROWS);
+        Gson gson = JsonCodec.gson();
+        long binaryNanos = Long.MAX_VALUE;
+        long jsonNanos = Long.MAX_VALUE;
+        // Alternate the two so neither gets a warmer JIT or a quieter machine
+        for (int pass = 0; pass < 5; pass++) {
+            long start = System.nanoTime();
+            Transaction[] decoded = TransactionWireFormat.decode(TransactionWireFormat.encode(rows));
+            binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+            assertEquals(ROWS, decoded.length);
+
+            start = System.nanoTime();
+            byte[] json = gson.toJson(rows).getBytes(StandardCharsets.UTF_8);
+            Transaction[] parsed = gson.fromJson(new String(json, StandardCharsets.UTF_8), Transaction[].class);
+            jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+            assertEquals(ROWS, parsed.length);
+        }
+        System.out.printf("Wire format at %d rows: %d ms to encode and decode, JSON %d ms%n",
+                ROWS, binaryNanos / 1000000, jsonNanos / 1000000);
+
+        assertTrue("Binary round trip took " + binaryNanos / 1000000 + " ms against " + jsonNanos / 1000000 +
+                " ms for JSON", binaryNanos < jsonNanos);
+    }
+}
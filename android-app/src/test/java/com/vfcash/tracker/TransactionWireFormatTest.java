@@ -0,0 +1,141 @@
+package com.vfcash.tracker;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// The binary upload format against the dashboard's decoder and against JSON.
+// src/lib/wire-format.fixture.json holds a payload and the rows it stands
+// for; this test checks the Java encoder produces exactly that payload, and
+// src/lib/wire-format.test.ts checks the TypeScript decoder reads it back to
+// exactly those rows, so the two sides cannot drift apart unnoticed.
+public class TransactionWireFormatTest {
+
+    private static final int ROWS = 100000;
+
+    private static String fixtureHex;
+    private static JsonArray fixtureRows;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // Unit tests run from the module directory
+        String json = new String(Files.readAllBytes(new File("../src/lib/wire-format.fixture.json").toPath()),
+                StandardCharsets.UTF_8);
+        JsonObject fixture = JsonParser.parseString(json).getAsJsonObject();
+        fixtureHex = fixture.get("hex").getAsString();
+        fixtureRows = fixture.getAsJsonArray("transactions");
+    }
+
+    @Test
+    public void encodesTheSharedFixture() throws ParseException {
+        Transaction[] rows = new Transaction[fixtureRows.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = fromFixture(fixtureRows.get(i).getAsJsonObject());
+        }
+        String hex = hex(TransactionWireFormat.encode(rows));
+        assertEquals("Encoder output changed; if on purpose, update the fixture and wire-format.ts", fixtureHex, hex);
+    }
+
+    @Test
+    public void decodesTheSharedFixture() throws IOException, ParseException {
+        Transaction[] decoded = TransactionWireFormat.decode(unhex(fixtureHex));
+        assertEquals(fixtureRows.size(), decoded.length);
+        for (int i = 0; i < decoded.length; i++) {
+            SyntheticHistory.assertSameRow(fromFixture(fixtureRows.get(i).getAsJsonObject()), decoded[i]);
+        }
+    }
+
+    @Test
+    public void rejectsDamagedPayloads() {
+        byte[] payload = unhex(fixtureHex);
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(payload, 0, truncated, 0, length);
+            assertRejected(truncated);
+        }
+        byte[] wrongVersion = payload.clone();
+        wrongVersion[2] = 2;
+        assertRejected(wrongVersion);
+    }
+
+    // The timing side of this lives in TransactionWireFormatBenchmark
+    @Test
+    public void aThirdOfTheJsonSizeAt100kRows() throws IOException {
+        Transaction[] rows = SyntheticHistory.array(ROWS);
+        byte[] binary = TransactionWireFormat.encode(rows);
+        byte[] json = JsonCodec.gson().toJson(rows).getBytes(StandardCharsets.UTF_8);
+        System.out.printf("Wire format at %d rows: %d KB, JSON %d KB%n", ROWS, binary.length / 1024, json.length / 1024);
+
+        Transaction[] decoded = TransactionWireFormat.decode(binary);
+        assertEquals(ROWS, decoded.length);
+        for (int i = 0; i < ROWS; i += 997) {
+            SyntheticHistory.assertSameRow(rows[i], decoded[i]);
+        }
+        assertTrue("Binary payload is " + binary.length + " bytes against " + json.length + " for JSON",
+                binary.length * 3 < json.length);
+    }
+
+    private static void assertRejected(byte[] payload) {
+        try {
+            TransactionWireFormat.decode(payload);
+            fail("Decoded a damaged payload of " + payload.length + " bytes");
+        } catch (IOException expected) {
+            // the dashboard answers 400 for these
+        }
+    }
+
+    // Fixture rows are in the decoder's output shape: string ids, ISO dates,
+    // absent fields for nulls
+    private static Transaction fromFixture(JsonObject row) throws ParseException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Transaction transaction = new Transaction(row.get("type").getAsString(), row.get("amount").getAsDouble(),
+                text(row, "phoneNumber"), row.get("balanceBefore").getAsDouble(),
+                row.get("balanceAfter").getAsDouble());
+        transaction.setId(Long.parseLong(row.get("id").getAsString()));
+        transaction.setDate(iso.parse(row.get("date").getAsString()));
+        transaction.setSenderName(text(row, "senderName"));
+        transaction.setTransactionNumber(text(row, "transactionNumber"));
+        transaction.setServiceFees(row.get("serviceFees").getAsDouble());
+        return transaction;
+    }
+
+    private static String text(JsonObject row, String name) {
+        JsonElement value = row.get(name);
+        return value == null ? null : value.getAsString();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder out = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return out.toString();
+    }
+
+    private static byte[] unhex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -1,10 +1,12 @@
 import { NextRequest, NextResponse } from 'next/server';
+import { ACCEPT_POST, decodeTransactions, isWireFormat } from '@/lib/wire-format';
 
 interface Transaction {
   id: string;
   type: 'transfer' | 'received';
   amount: number;
-  phoneNumber: string;
+  phoneNumber?: string;
+  // Always an ISO 8601 string once stored; see toStoredDate
   date: string;
   balanceBefore: number;
   balanceAfter: number;
@@ -19,7 +21,15 @@ let transactions: Transaction[] = [];
 
 export async function POST(request: NextRequest) {
   try {
-    const body = await request.json();
+    const body = isWireFormat(request.headers.get('content-type')) ?
+      await readWireFormat(request) : await request.json();
+    
+    if (body === null) {
+      return NextResponse.json(
+        { success: false, error: 'Malformed binary transaction payload' },
+        { status: 400 }
+      );
+    }
     
     // Validate that body is an array
     if (!Array.isArray(body)) {
@@ -43,27 +53,22 @@ export async function POST(request: NextRequest) {
       validation: validateTransaction(transaction)
     }));
 
-    // Check for validation errors
+    // Invalid rows are reported and skipped rather than failing the batch: the
+    // app only advances its sync cursor on success, so a single row that can
+    // never be accepted would otherwise block every later upload
     const errors = validationResults.filter(result => !result.validation.valid);
-    if (errors.length > 0) {
-      return NextResponse.json(
-        { 
-          success: false, 
-          error: 'Validation failed',
-          details: errors.map(error => ({
-            index: error.index,
-            error: error.validation.error
-          }))
-        },
-        { status: 400 }
-      );
+    for (const error of errors) {
+      console.warn(`Rejected transaction at index ${error.index}: ${error.validation.error}`);
     }
 
     // Process all valid transactions
     let addedCount = 0;
     let updatedCount = 0;
 
-    for (const transaction of body) {
+    for (const { transaction, validation } of validationResults) {
+      if (!validation.valid) continue;
+      transaction.date = toStoredDate(transaction.date);
+
       // Check if transaction already exists (prevent duplicates)
       const existingIndex = transactions.findIndex(t => t.id === transaction.id);
       
@@ -85,17 +90,28 @@ export async function POST(request: NextRequest) {
       transactions = transactions.slice(0, 1000);
     }
 
-    console.log(`Bulk upload completed: ${addedCount} added, ${updatedCount} updated. Total: ${transactions.length}`);
+    console.log(`Bulk upload completed: ${addedCount} added, ${updatedCount} updated, ` +
+      `${errors.length} rejected. Total: ${transactions.length}`);
 
     return NextResponse.json({
       success: true,
-      message: `Bulk upload completed successfully`,
+      message: errors.length === 0 ?
+        'Bulk upload completed successfully' :
+        `Bulk upload completed with ${errors.length} rejected transactions`,
       summary: {
         totalProcessed: body.length,
         added: addedCount,
         updated: updatedCount,
+        rejected: errors.length,
         totalTransactions: transactions.length
-      }
+      },
+      rejected: errors.map(error => ({
+        index: error.index,
+        id: typeof error.transaction?.id === 'string' ? error.transaction.id : undefined,
+        error: error.validation.error
+      }))
+    }, {
+      headers: { 'Accept-Post': ACCEPT_POST }
     });
 
   } catch (error) {
@@ -108,6 +124,10 @@ export async function POST(request: NextRequest) {
 }
 
 function validateTransaction(transaction: any): { valid: boolean; error?: string } {
+  if (!transaction || typeof transaction !== 'object') {
+    return { valid: false, error: 'Transaction must be an object' };
+  }
+
   // Check required fields
   if (!transaction.id || typeof transaction.id !== 'string') {
     return { valid: false, error: 'Transaction ID is required and must be a string' };
@@ -121,11 +141,12 @@ function validateTransaction(transaction: any): { valid: boolean; error?: string
     return { valid: false, error: 'Amount must be a positive number' };
   }
 
-  if (!transaction.phoneNumber || typeof transaction.phoneNumber !== 'string') {
-    return { valid: false, error: 'Phone number is required and must be a string' };
+  // Optional: cash-out, bill and merchant payments have no counterparty number
+  if (transaction.phoneNumber !== undefined && typeof transaction.phoneNumber !== 'string') {
+    return { valid: false, error: 'Phone number must be a string' };
   }
 
-  if (!transaction.date) {
+  if (!transaction.date || (typeof transaction.date !== 'string' && typeof transaction.date !== 'number')) {
     return { valid: false, error: 'Date is required' };
   }
 
@@ -145,3 +166,19 @@ function validateTransaction(transaction: any): { valid: boolean; error?: string
 
   return { valid: true };
 }
+
+// The app sends epoch millis in JSON and older builds sent date strings;
+// the binary decoder already yields ISO strings. Stored rows always hold the
+// ISO form so readers of `date` see a string. Call after validation.
+function toStoredDate(date: string | number): string {
+  return new Date(date).toISOString();
+}
+
+async function readWireFormat(request: NextRequest): Promise<any> {
+  try {
+    return decodeTransactions(await request.arrayBuffer());
+  } catch (error) {
+    console.error('Error decoding binary transactions:', error);
+    return null;
+  }
+}
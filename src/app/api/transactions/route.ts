@@ -1,10 +1,12 @@
 import { NextRequest, NextResponse } from 'next/server';
+import { ACCEPT_POST, decodeTransactions, isWireFormat } from '@/lib/wire-format';
 
 interface Transaction {
   id: string;
   type: 'transfer' | 'received';
   amount: number;
-  phoneNumber: string;
+  phoneNumber?: string;
+  // Always an ISO 8601 string once stored; see toStoredDate
   date: string;
   balanceBefore: number;
   balanceAfter: number;
@@ -22,6 +24,8 @@ export async function GET() {
       success: true,
       transactions: transactions,
       count: transactions.length
+    }, {
+      headers: { 'Accept-Post': ACCEPT_POST }
     });
   } catch (error) {
     console.error('Error fetching transactions:', error);
@@ -34,7 +38,15 @@ export async function GET() {
 
 export async function POST(request: NextRequest) {
   try {
-    const body = await request.json();
+    const body = isWireFormat(request.headers.get('content-type')) ?
+      await readWireFormat(request) : await request.json();
+    
+    if (body === null) {
+      return NextResponse.json(
+        { success: false, error: 'Malformed binary transaction payload' },
+        { status: 400 }
+      );
+    }
     
     // Validate the transaction data
     if (!body || typeof body !== 'object') {
@@ -61,6 +73,8 @@ export async function POST(request: NextRequest) {
 
     // Add transactions to storage
     for (const transaction of transactionsToAdd) {
+      transaction.date = toStoredDate(transaction.date);
+
       // Check if transaction already exists (prevent duplicates)
       const existingIndex = transactions.findIndex(t => t.id === transaction.id);
       
@@ -88,6 +102,8 @@ export async function POST(request: NextRequest) {
         `Successfully processed ${transactionsToAdd.length} transactions` : 
         'Transaction received successfully',
       transactionCount: transactions.length
+    }, {
+      headers: { 'Accept-Post': ACCEPT_POST }
     });
 
   } catch (error) {
@@ -131,11 +147,12 @@ function validateTransaction(transaction: any): { valid: boolean; error?: string
     return { valid: false, error: 'Amount must be a positive number' };
   }
 
-  if (!transaction.phoneNumber || typeof transaction.phoneNumber !== 'string') {
-    return { valid: false, error: 'Phone number is required and must be a string' };
+  // Optional: cash-out, bill and merchant payments have no counterparty number
+  if (transaction.phoneNumber !== undefined && typeof transaction.phoneNumber !== 'string') {
+    return { valid: false, error: 'Phone number must be a string' };
   }
 
-  if (!transaction.date) {
+  if (!transaction.date || (typeof transaction.date !== 'string' && typeof transaction.date !== 'number')) {
     return { valid: false, error: 'Date is required' };
   }
 
@@ -155,10 +172,27 @@ function validateTransaction(transaction: any): { valid: boolean; error?: string
 
   // Validate phone number format (Egyptian mobile numbers)
   const phoneRegex = /^01[0-9]{9}$/;
-  if (!phoneRegex.test(transaction.phoneNumber)) {
+  if (transaction.phoneNumber !== undefined && !phoneRegex.test(transaction.phoneNumber)) {
     console.warn(`Phone number format warning: ${transaction.phoneNumber}`);
     // Don't fail validation, just warn
   }
 
   return { valid: true };
 }
+
+// The app sends epoch millis in JSON and older builds sent date strings;
+// the binary decoder already yields ISO strings. Stored rows always hold the
+// ISO form so readers of `date` see a string. Call after validation.
+function toStoredDate(date: string | number): string {
+  return new Date(date).toISOString();
+}
+
+async function readWireFormat(request: NextRequest): Promise<any> {
+  try {
+    const decoded = decodeTransactions(await request.arrayBuffer());
+    return decoded.length === 1 ? decoded[0] : decoded;
+  } catch (error) {
+    console.error('Error decoding binary transactions:', error);
+    return null;
+  }
+}
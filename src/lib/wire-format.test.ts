@@ -0,0 +1,54 @@
+// Checks decodeTransactions against the payload in wire-format.fixture.json,
+// which TransactionWireFormatTest in the Android app checks the encoder
+// produces. Together they pin both sides of the format to the same bytes.
+//
+// Run with `npm test`.
+
+import { test } from 'node:test';
+import assert from 'node:assert/strict';
+import { readFileSync } from 'node:fs';
+import { join } from 'node:path';
+import { decodeTransactions, isWireFormat, WireTransaction } from './wire-format';
+
+interface Fixture {
+  hex: string;
+  transactions: WireTransaction[];
+}
+
+const fixture: Fixture = JSON.parse(
+  readFileSync(join(process.cwd(), 'src/lib/wire-format.fixture.json'), 'utf8')
+);
+
+function payload(hex: string): ArrayBuffer {
+  const bytes = Uint8Array.from(Buffer.from(hex, 'hex'));
+  return bytes.buffer;
+}
+
+// What the routes store and return: absent fields stay absent
+function asJson(transactions: WireTransaction[]): unknown {
+  return JSON.parse(JSON.stringify(transactions));
+}
+
+test('decodes the payload the Android encoder produces', () => {
+  assert.deepEqual(asJson(decodeTransactions(payload(fixture.hex))), fixture.transactions);
+});
+
+test('rejects truncated payloads', () => {
+  const bytes = Buffer.from(fixture.hex, 'hex');
+  for (let length = 0; length < bytes.length; length++) {
+    assert.throws(() => decodeTransactions(payload(bytes.subarray(0, length).toString('hex'))));
+  }
+});
+
+test('rejects other versions', () => {
+  const bytes = Buffer.from(fixture.hex, 'hex');
+  bytes[2] = 2;
+  assert.throws(() => decodeTransactions(payload(bytes.toString('hex'))), /Unsupported wire format version/);
+});
+
+test('recognises the media type with parameters', () => {
+  assert.equal(isWireFormat('application/x-vfcash-transactions'), true);
+  assert.equal(isWireFormat('application/x-vfcash-transactions; charset=binary'), true);
+  assert.equal(isWireFormat('application/json'), false);
+  assert.equal(isWireFormat(null), false);
+});
@@ -0,0 +1,143 @@
+// Decoder for the compact binary transaction payload sent by the Android app.
+// The layout is defined by TransactionWireFormat.java and must stay in sync:
+//
+//   magic 'V' 'F', version byte
+//   string table: count, then (byteLength, UTF-8 bytes) per entry
+//   transaction count, then per transaction:
+//     id, type byte (0 = transfer, 1 = received),
+//     date as zigzag delta from the previous transaction's epoch millis,
+//     amount, balanceBefore, balanceAfter, serviceFees as zigzag piasters,
+//     phoneNumber and senderName as string table index + 1 (0 = null),
+//     transactionNumber as byteLength + 1 followed by UTF-8 (0 = null)
+//
+// Integers are unsigned LEB128 varints. Values are accumulated with
+// multiplication rather than bit shifts so epoch millis survive past 32 bits.
+//
+// wire-format.fixture.json holds a payload from the Java encoder and the rows
+// it decodes to; wire-format.test.ts and the app's TransactionWireFormatTest
+// both check against it.
+
+export const WIRE_FORMAT_MEDIA_TYPE = 'application/x-vfcash-transactions';
+
+// Advertised on transaction endpoints so the app can switch to the binary format
+export const ACCEPT_POST = `${WIRE_FORMAT_MEDIA_TYPE}, application/json`;
+
+const VERSION = 1;
+
+export interface WireTransaction {
+  id: string;
+  type: 'transfer' | 'received';
+  amount: number;
+  // Missing for cash-out, bill and merchant payments, which have no counterparty number
+  phoneNumber?: string;
+  date: string;
+  balanceBefore: number;
+  balanceAfter: number;
+  senderName?: string;
+  transactionNumber?: string;
+  serviceFees?: number;
+}
+
+export function isWireFormat(contentType: string | null): boolean {
+  return !!contentType && contentType.split(';')[0].trim() === WIRE_FORMAT_MEDIA_TYPE;
+}
+
+export function decodeTransactions(buffer: ArrayBuffer): WireTransaction[] {
+  const bytes = new Uint8Array(buffer);
+  const decoder = new TextDecoder();
+  let position = 0;
+
+  const readByte = (): number => {
+    if (position >= bytes.length) {
+      throw new Error('Unexpected end of payload');
+    }
+    return bytes[position++];
+  };
+
+  const readVarint = (): number => {
+    let result = 0;
+    let multiplier = 1;
+    for (let i = 0; i < 10; i++) {
+      const b = readByte();
+      result += (b & 0x7f) * multiplier;
+      if ((b & 0x80) === 0) {
+        return result;
+      }
+      multiplier *= 128;
+    }
+    throw new Error('Malformed varint');
+  };
+
+  const readSignedVarint = (): number => {
+    const raw = readVarint();
+    return raw % 2 === 0 ? raw / 2 : -(raw + 1) / 2;
+  };
+
+  const readUtf8 = (length: number): string => {
+    if (length > bytes.length - position) {
+      throw new Error('Unexpected end of payload');
+    }
+    const value = decoder.decode(bytes.subarray(position, position + length));
+    position += length;
+    return value;
+  };
+
+  if (readByte() !== 0x56 || readByte() !== 0x46) {
+    throw new Error('Not a VF-Cash transaction payload');
+  }
+  const version = readByte();
+  if (version !== VERSION) {
+    throw new Error(`Unsupported wire format version: ${version}`);
+  }
+
+  const table: string[] = [];
+  const tableSize = readVarint();
+  for (let i = 0; i < tableSize; i++) {
+    table.push(readUtf8(readVarint()));
+  }
+
+  const lookup = (reference: number): string | undefined => {
+    if (reference === 0) return undefined;
+    if (reference > table.length) {
+      throw new Error(`String table reference out of range: ${reference}`);
+    }
+    return table[reference - 1];
+  };
+
+  const transactions: WireTransaction[] = [];
+  const count = readVarint();
+  let previousTime = 0;
+
+  for (let i = 0; i < count; i++) {
+    const id = readUtf8(readVarint());
+    const type = readByte() === 1 ? 'received' : 'transfer';
+
+    previousTime += readSignedVarint();
+
+    const amount = readSignedVarint() / 100;
+    const balanceBefore = readSignedVarint() / 100;
+    const balanceAfter = readSignedVarint() / 100;
+    const serviceFees = readSignedVarint() / 100;
+
+    const phoneNumber = lookup(readVarint());
+    const senderName = lookup(readVarint());
+    const transactionNumberLength = readVarint();
+    const transactionNumber = transactionNumberLength === 0 ?
+      undefined : readUtf8(transactionNumberLength - 1);
+
+    transactions.push({
+      id,
+      type,
+      amount,
+      phoneNumber,
+      date: new Date(previousTime).toISOString(),
+      balanceBefore,
+      balanceAfter,
+      senderName,
+      transactionNumber,
+      serviceFees
+    });
+  }
+
+  return transactions;
+}